@@ -0,0 +1,81 @@
+#!/usr/bin/env bash
+#
+# Varias instancias del backend en esta máquina compartiendo una base H2
+# en fichero, para probar la coherencia de cachés entre nodos
+#
+# Uso:
+#   scripts/local-cluster.sh [instancias]
+#
+# Arranca el jar (mvn package) en los puertos ASIST_CLUSTER_PORT (8081),
+# ASIST_CLUSTER_PORT + 1... con la base target/cluster/asist (modo AUTO_SERVER
+# de H2: la primera instancia la sirve por TCP a las demás). Cada nodo tiene
+# su identificador (node-1, node-2...) y sus propios ficheros en
+# target/cluster/node-N: journal de refresh tokens, journal de auditoría y
+# exportaciones (los trabajos de exportación viven en el nodo que los crea).
+# Los adjuntos se guardan en target/cluster/attachments, compartido: sus
+# filas están en la base común y cualquier nodo debe poder servirlos.
+# La primera instancia crea el esquema; las demás arrancan cuando está lista.
+#
+# Ejemplo: crear un reporte en el puerto 8081 y pedir el mapa de densidad al
+# 8082; el cambio aparece cuando el consumidor del outbox del 8082 lee el
+# evento (asist.outbox.poll-interval-ms, 1 s por defecto). El estado del bus
+# de cada nodo está en GET /api/admin/cache-bus.
+#
+# Sin balanceador delante, cada cliente debe hablar siempre con el mismo
+# puerto: las familias de refresh tokens son de cada nodo y un refresh en
+# otro se rechaza (ver RefreshTokenStore).
+#
+# Los registros quedan en target/cluster/node-N.log. Ctrl+C para todas las instancias.
+
+set -euo pipefail
+
+INSTANCES="${1:-3}"
+BASE_PORT="${ASIST_CLUSTER_PORT:-8081}"
+
+cd "$(dirname "$0")/.."
+
+JAR="$(ls target/asist-backend-*.jar | grep -v -- '-exec.jar$' | head -n 1)"
+VERSION="$(basename "$JAR" .jar)"
+VERSION="${VERSION#asist-backend-}"
+EXEC_JAR="target/asist-backend-${VERSION}-exec.jar"
+[[ -f "$EXEC_JAR" ]] || EXEC_JAR="$JAR"
+
+OUT="target/cluster"
+mkdir -p "$OUT"
+DB_URL="jdbc:h2:file:./${OUT}/asist;AUTO_SERVER=TRUE"
+
+PIDS=()
+trap 'kill "${PIDS[@]}" 2>/dev/null || true' EXIT
+
+wait_ready() {
+    local port=$1
+    local deadline=$(( $(date +%s) + 120 ))
+    until [[ "$(curl -s -o /dev/null -w '%{http_code}' "http://localhost:${port}/api/reports" || true)" != "000" ]]; do
+        if (( $(date +%s) > deadline )); then
+            echo "La instancia del puerto ${port} no ha arrancado en 120 s" >&2
+            exit 1
+        fi
+        sleep 1
+    done
+}
+
+for n in $(seq 1 "$INSTANCES"); do
+    port=$(( BASE_PORT + n - 1 ))
+    java -jar "$EXEC_JAR" \
+        --server.port="$port" \
+        --spring.datasource.url="$DB_URL" \
+        --spring.datasource.username=sa \
+        --spring.jpa.hibernate.ddl-auto=update \
+        --asist.cache-bus.node-id="node-${n}" \
+        --asist.refresh-tokens.journal="${OUT}/node-${n}/refresh-tokens.journal" \
+        --asist.audit.dir="${OUT}/node-${n}/audit" \
+        --asist.exports.dir="${OUT}/node-${n}/exports" \
+        --asist.attachments.dir="${OUT}/attachments" \
+        > "${OUT}/node-${n}.log" 2>&1 &
+    PIDS+=($!)
+    wait_ready "$port"
+    echo "node-${n}: http://localhost:${port}"
+done
+
+echo "${INSTANCES} instancias en marcha (Ctrl+C para pararlas)"
+wait
@@ -0,0 +1,293 @@
+#!/usr/bin/env bash
+#
+# Prueba de resistencia (soak): carga mixta sostenida durante horas sobre H2
+# para detectar fugas de memoria y degradación progresiva
+#
+# Uso:
+#   scripts/soak-test.sh [duración_segundos]
+#
+# Arranca el jar (mvn package) con la base H2 en memoria por defecto y un heap
+# acotado, da de alta ASIST_SOAK_USERS usuarios y lanza dos tipos de carga hasta
+# agotar la duración (7200 s por defecto):
+#
+#   - autenticación: login y renovación del token a ASIST_SOAK_AUTH_RATE peticiones/s
+#   - reportes: alta, lectura, consulta, autocompletado, modificación y baja a
+#     ASIST_SOAK_REPORT_RATE peticiones/s repartidas en ASIST_SOAK_WORKERS procesos
+#
+# Las altas y las bajas están equilibradas y los títulos y ubicaciones salen de
+# un vocabulario fijo, de modo que el volumen de datos es estable: con una carga
+# constante, cualquier crecimiento sostenido de memoria es una fuga (cachés,
+# índices o colas en memoria sin límite).
+#
+# La aplicación escribe cada ASIST_SOAK_SAMPLE_INTERVAL segundos una muestra
+# (asist.runtime.sample-file, ver RuntimeMetrics) con el heap retenido tras la
+# GC, hilos, pausas de GC y estado de los pools Hikari; el script registra la
+# latencia de cada petición. Al terminar, descartado el calentamiento
+# (ASIST_SOAK_WARMUP), calcula la tendencia por regresión lineal y falla si:
+#
+#   - el heap retenido crece más de ASIST_SOAK_MAX_HEAP_GROWTH_MB_PER_HOUR (16)
+#   - el p99 (por ventanas de ASIST_SOAK_WINDOW segundos) crece más de
+#     ASIST_SOAK_MAX_P99_GROWTH_PCT_PER_HOUR (20) % del p99 inicial por hora
+#   - el número de hilos crece más de ASIST_SOAK_MAX_THREAD_GROWTH (10)
+#   - más de ASIST_SOAK_MAX_ERROR_RATE_PCT (1) % de las peticiones tras el
+#     calentamiento acaban en error de red o 5xx
+#
+# Los ficheros de la ejecución quedan en target/soak/ y el resumen se añade a
+# target/soak-history.csv junto a la versión del proyecto.
+
+set -euo pipefail
+
+DURATION="${1:-${ASIST_SOAK_DURATION:-7200}}"
+WARMUP="${ASIST_SOAK_WARMUP:-600}"
+AUTH_RATE="${ASIST_SOAK_AUTH_RATE:-2}"
+REPORT_RATE="${ASIST_SOAK_REPORT_RATE:-20}"
+WORKERS="${ASIST_SOAK_WORKERS:-4}"
+USERS="${ASIST_SOAK_USERS:-20}"
+SAMPLE_INTERVAL="${ASIST_SOAK_SAMPLE_INTERVAL:-30}"
+WINDOW="${ASIST_SOAK_WINDOW:-300}"
+HEAP="${ASIST_SOAK_HEAP:-512m}"
+MAX_HEAP_GROWTH="${ASIST_SOAK_MAX_HEAP_GROWTH_MB_PER_HOUR:-16}"
+MAX_P99_GROWTH="${ASIST_SOAK_MAX_P99_GROWTH_PCT_PER_HOUR:-20}"
+MAX_THREAD_GROWTH="${ASIST_SOAK_MAX_THREAD_GROWTH:-10}"
+MAX_ERROR_RATE="${ASIST_SOAK_MAX_ERROR_RATE_PCT:-1}"
+PORT="${ASIST_SOAK_PORT:-8080}"
+BASE_URL="http://localhost:${PORT}"
+PASSWORD="SoakTest123!"
+
+cd "$(dirname "$0")/.."
+
+JAR="$(ls target/asist-backend-*.jar | grep -v -- '-exec.jar$' | head -n 1)"
+VERSION="$(basename "$JAR" .jar)"
+VERSION="${VERSION#asist-backend-}"
+EXEC_JAR="target/asist-backend-${VERSION}-exec.jar"
+[[ -f "$EXEC_JAR" ]] || EXEC_JAR="$JAR"
+
+OUT="target/soak"
+rm -rf "$OUT"
+mkdir -p "$OUT"
+SAMPLES="${OUT}/runtime.csv"
+HISTORY="target/soak-history.csv"
+
+LOCATIONS=("Aula 1" "Aula 2" "Aula 3" "Biblioteca" "Cafetería" "Gimnasio" "Laboratorio A"
+           "Laboratorio B" "Secretaría" "Patio" "Salón de actos" "Conserjería")
+TITLES=("Luz fundida" "Fuga de agua" "Puerta rota" "Proyector averiado" "Calefacción apagada"
+        "Ventana rota" "Enchufe sin corriente" "Wifi caído" "Silla rota" "Grifo que gotea")
+
+now_ms() {
+    date +%s%3N
+}
+
+# Espera hasta que pasen interval_ms desde start_ms
+pace() {
+    local start_ms=$1 interval_ms=$2
+    local left=$(( start_ms + interval_ms - $(now_ms) ))
+    if (( left > 0 )); then
+        sleep "$(printf '%d.%03d' $(( left / 1000 )) $(( left % 1000 )))"
+    fi
+}
+
+# Petición con registro de latencia: request <fichero> <tipo> <argumentos de curl...>
+# Deja el cuerpo de la respuesta en BODY
+request() {
+    local log=$1 kind=$2
+    shift 2
+    local response
+    response="$(curl -s -w '\n%{http_code} %{time_total}' "$@" || printf '\n000 0')"
+    BODY="${response%$'\n'*}"
+    local tail="${response##*$'\n'}"
+    echo "$(date +%s),${kind},${tail% *},${tail#* }" >> "$log"
+}
+
+json_field() {
+    sed -n "s/.*\"$1\":\"\{0,1\}\([^\",}]*\).*/\1/p" <<< "$BODY" | head -n 1
+}
+
+java -Xmx"$HEAP" -Xlog:gc*:file="${OUT}/gc.log" -jar "$EXEC_JAR" \
+    --server.port="$PORT" \
+    --asist.runtime.sample-file="$SAMPLES" \
+    --asist.runtime.sample-interval-ms=$(( SAMPLE_INTERVAL * 1000 )) \
+    > "${OUT}/app.log" 2>&1 &
+APP_PID=$!
+PIDS=()
+trap 'kill "${PIDS[@]}" "$APP_PID" 2>/dev/null || true' EXIT
+
+deadline=$(( $(date +%s) + 120 ))
+until [[ "$(curl -s -o /dev/null -w '%{http_code}' "${BASE_URL}/api/reports" || true)" != "000" ]]; do
+    if (( $(date +%s) > deadline )); then
+        echo "La aplicación no ha arrancado en 120 s (ver ${OUT}/app.log)" >&2
+        exit 1
+    fi
+    sleep 1
+done
+
+# Usuarios de la prueba: email, id y token de cada uno
+for i in $(seq 1 "$USERS"); do
+    request "${OUT}/setup.log" register -X POST "${BASE_URL}/api/auth/register" \
+        -H "Content-Type: application/json" \
+        -d "{\"username\":\"soak${i}\",\"email\":\"soak${i}@asist.test\",\"password\":\"${PASSWORD}\"}"
+    echo "soak${i}@asist.test $(json_field id) $(json_field accessToken)" >> "${OUT}/users.txt"
+done
+mapfile -t ACCOUNTS < "${OUT}/users.txt"
+
+END=$(( $(date +%s) + DURATION ))
+
+auth_worker() {
+    local log="${OUT}/latency-auth.log"
+    local interval_ms=$(( 1000 / AUTH_RATE ))
+    local n=0
+    while (( $(date +%s) < END )); do
+        local start
+        start=$(now_ms)
+        local account=(${ACCOUNTS[$(( n % ${#ACCOUNTS[@]} ))]})
+        if (( n % 2 == 0 )); then
+            request "$log" login -X POST "${BASE_URL}/api/auth/login" \
+                -H "Content-Type: application/json" \
+                -d "{\"email\":\"${account[0]}\",\"password\":\"${PASSWORD}\"}"
+            REFRESH="$(json_field refreshToken)"
+        elif [[ -n "${REFRESH:-}" ]]; then
+            request "$log" refresh -X POST "${BASE_URL}/api/auth/refresh-token" \
+                -H "Content-Type: application/json" \
+                -d "{\"refreshToken\":\"${REFRESH}\"}"
+        fi
+        n=$(( n + 1 ))
+        pace "$start" "$interval_ms"
+    done
+}
+
+report_worker() {
+    local worker=$1
+    local log="${OUT}/latency-reports-${worker}.log"
+    local interval_ms=$(( 1000 * WORKERS / REPORT_RATE ))
+    local ids=()
+    local n=0
+    while (( $(date +%s) < END )); do
+        local start
+        start=$(now_ms)
+        local account=(${ACCOUNTS[$(( (n + worker) % ${#ACCOUNTS[@]} ))]})
+        local auth=(-H "Authorization: Bearer ${account[2]}")
+        local location="${LOCATIONS[$(( RANDOM % ${#LOCATIONS[@]} ))]}"
+        local title="${TITLES[$(( RANDOM % ${#TITLES[@]} ))]}"
+        # Mezcla de 10 operaciones: 2 altas, 2 bajas, 2 listados, consulta, autocompletado, lectura y modificación
+        case $(( n % 10 )) in
+            0|5)
+                request "$log" create -X POST "${BASE_URL}/api/reports" "${auth[@]}" \
+                    -H "Content-Type: application/json" \
+                    -d "{\"title\":\"${title}\",\"description\":\"Prueba de resistencia\",\"location\":\"${location}\",\"date\":\"$(date +%Y-%m-%dT%H:%M:%S)\",\"userId\":${account[1]:-1}}"
+                local id
+                id="$(json_field id)"
+                [[ -z "$id" ]] || ids+=("$id")
+                ;;
+            1|6)
+                if (( ${#ids[@]} > 0 )); then
+                    request "$log" delete -X DELETE "${BASE_URL}/api/reports/${ids[0]}" "${auth[@]}"
+                    ids=("${ids[@]:1}")
+                fi
+                ;;
+            2|7)
+                request "$log" list "${BASE_URL}/api/reports?page=0&size=50" "${auth[@]}"
+                ;;
+            3)
+                request "$log" query -G "${BASE_URL}/api/reports/query" "${auth[@]}" \
+                    --data-urlencode "location=${location}" --data-urlencode "limit=50"
+                ;;
+            4)
+                request "$log" suggest -G "${BASE_URL}/api/reports/suggest" "${auth[@]}" \
+                    --data-urlencode "field=title" --data-urlencode "prefix=${title:0:3}"
+                ;;
+            8)
+                if (( ${#ids[@]} > 0 )); then
+                    request "$log" get "${BASE_URL}/api/reports/${ids[-1]}" "${auth[@]}"
+                fi
+                ;;
+            9)
+                if (( ${#ids[@]} > 0 )); then
+                    request "$log" update -X PUT "${BASE_URL}/api/reports/${ids[-1]}" "${auth[@]}" \
+                        -H "Content-Type: application/json" \
+                        -d "{\"title\":\"${title}\",\"location\":\"${location}\"}"
+                fi
+                ;;
+        esac
+        n=$(( n + 1 ))
+        pace "$start" "$interval_ms"
+    done
+}
+
+echo "Prueba de resistencia: ${DURATION} s, ${AUTH_RATE} autenticaciones/s, ${REPORT_RATE} peticiones de reportes/s"
+auth_worker &
+PIDS+=($!)
+for w in $(seq 1 "$WORKERS"); do
+    report_worker "$w" &
+    PIDS+=($!)
+done
+wait "${PIDS[@]}"
+sleep "$SAMPLE_INTERVAL"
+
+START=$(( END - DURATION ))
+FROM=$(( START + WARMUP ))
+
+# Pendiente por hora de una serie "segundos valor" (mínimos cuadrados)
+slope_per_hour() {
+    awk '{ x = $1 / 3600; n++; sx += x; sy += $2; sxx += x * x; sxy += x * $2 }
+         END { d = n * sxx - sx * sx; if (n < 3 || d == 0) { print "nan" } else { printf "%.2f", (n * sxy - sx * sy) / d } }'
+}
+
+heap_series="$(awk -F, -v from="$FROM" 'NR > 1 && $1 >= from { print $1 - from, $3 }' "$SAMPLES")"
+thread_series="$(awk -F, -v from="$FROM" 'NR > 1 && $1 >= from { print $1 - from, $5 }' "$SAMPLES")"
+
+# p99 de latencia (ms) por ventana tras el calentamiento: "segundos_mitad_ventana p99"
+p99_series="$(cat "${OUT}"/latency-*.log \
+    | awk -F, -v from="$FROM" -v w="$WINDOW" '$1 >= from && $3 ~ /^[0-9]+$/ && $3 != "000" { print int(($1 - from) / w), $4 * 1000 }' \
+    | sort -k1,1n -k2,2g \
+    | awk -v w="$WINDOW" '
+        function flush() { if (n > 0) { i = int(n * 0.99); if (i < n * 0.99) i++; print win * w + w / 2, vals[i] } }
+        $1 != win { flush(); win = $1; n = 0 }
+        { vals[++n] = $2 }
+        END { flush() }')"
+
+requests="$(cat "${OUT}"/latency-*.log | wc -l)"
+errors="$(cat "${OUT}"/latency-*.log | awk -F, '$3 == "000" || $3 >= 500' | wc -l)"
+# Tasa de errores tras el calentamiento (%)
+error_rate="$(cat "${OUT}"/latency-*.log \
+    | awk -F, -v from="$FROM" '$1 >= from { n++; if ($3 == "000" || $3 >= 500) e++ }
+        END { if (n == 0) print "nan"; else printf "%.2f", 100 * e / n }')"
+heap_slope="$(slope_per_hour <<< "$heap_series")"
+p99_slope="$(slope_per_hour <<< "$p99_series")"
+p99_first="$(head -n 1 <<< "$p99_series" | awk '{ print $2 }')"
+p99_slope_pct="$(awk -v s="$p99_slope" -v f="${p99_first:-0}" 'BEGIN { if (s == "nan" || f <= 0) print "nan"; else printf "%.1f", 100 * s / f }')"
+thread_growth="$(awk 'NR == 1 { first = $2 } { last = $2 } END { print (NR > 0 ? last - first : "nan") }' <<< "$thread_series")"
+max_pause="$(awk -F, 'NR > 1 && $8 > max { max = $8 } END { print max + 0 }' "$SAMPLES")"
+max_waiting="$(awk -F, 'NR > 1 && $12 > max { max = $12 } END { print max + 0 }' "$SAMPLES")"
+
+{
+    echo "Peticiones: ${requests} (errores de red o 5xx: ${errors}); tras el calentamiento ${error_rate} % de errores (máximo ${MAX_ERROR_RATE})"
+    echo "Heap retenido tras la GC: ${heap_slope} MB/h (máximo ${MAX_HEAP_GROWTH})"
+    echo "p99: inicial ${p99_first:-nan} ms, tendencia ${p99_slope} ms/h = ${p99_slope_pct} %/h (máximo ${MAX_P99_GROWTH})"
+    echo "Hilos: ${thread_growth} más que tras el calentamiento (máximo ${MAX_THREAD_GROWTH})"
+    echo "Pausa máxima de GC: ${max_pause} ms; máximo de hilos esperando conexión: ${max_waiting}"
+} | tee "${OUT}/summary.txt"
+
+[[ -f "$HISTORY" ]] || echo "timestamp,version,duration_s,requests,errors,heap_mb_per_h,p99_pct_per_h,thread_growth,max_gc_pause_ms" > "$HISTORY"
+echo "$(date -u +%Y-%m-%dT%H:%M:%SZ),${VERSION},${DURATION},${requests},${errors},${heap_slope},${p99_slope_pct},${thread_growth},${max_pause}" >> "$HISTORY"
+
+failed=0
+if [[ "$heap_slope" == "nan" || "$p99_slope_pct" == "nan" || "$error_rate" == "nan" ]]; then
+    echo "No hay muestras suficientes tras el calentamiento: alargar la duración o reducir ASIST_SOAK_WARMUP" >&2
+    failed=1
+fi
+if awk -v v="$heap_slope" -v max="$MAX_HEAP_GROWTH" 'BEGIN { exit !(v != "nan" && v > max) }'; then
+    echo "FALLO: el heap retenido crece ${heap_slope} MB/h" >&2
+    failed=1
+fi
+if awk -v v="$p99_slope_pct" -v max="$MAX_P99_GROWTH" 'BEGIN { exit !(v != "nan" && v > max) }'; then
+    echo "FALLO: el p99 crece ${p99_slope_pct} %/h" >&2
+    failed=1
+fi
+if awk -v v="$thread_growth" -v max="$MAX_THREAD_GROWTH" 'BEGIN { exit !(v != "nan" && v > max) }'; then
+    echo "FALLO: el número de hilos ha crecido en ${thread_growth}" >&2
+    failed=1
+fi
+if awk -v v="$error_rate" -v max="$MAX_ERROR_RATE" 'BEGIN { exit !(v != "nan" && v > max) }'; then
+    echo "FALLO: ${error_rate} % de las peticiones acaban en error de red o 5xx" >&2
+    failed=1
+fi
+exit "$failed"
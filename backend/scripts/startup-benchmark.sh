@@ -0,0 +1,107 @@
+#!/usr/bin/env bash
+#
+# Benchmark de arranque: tiempo hasta la primera respuesta correcta de /api/reports
+#
+# Uso:
+#   scripts/startup-benchmark.sh [jar|fast] [repeticiones]
+#
+#   jar  -> jar ejecutable estándar (mvn package)
+#   fast -> perfil fast-startup (mvn -Pfast-startup package): AOT + AppCDS
+#
+# Si se definen ASIST_BENCH_EMAIL y ASIST_BENCH_PASSWORD se hace login y se
+# mide hasta obtener un 2xx autenticado; si no, hasta que /api/reports responde
+# (un 401 indica que la cadena de seguridad y los controladores ya están listos).
+#
+# Los resultados se añaden a target/startup-benchmark.csv junto a la versión
+# del proyecto para seguir la evolución entre releases.
+
+set -euo pipefail
+
+MODE="${1:-jar}"
+RUNS="${2:-5}"
+PORT="${ASIST_BENCH_PORT:-8080}"
+BASE_URL="http://localhost:${PORT}"
+TIMEOUT_SECONDS="${ASIST_BENCH_TIMEOUT:-120}"
+
+cd "$(dirname "$0")/.."
+
+JAR="$(ls target/asist-backend-*.jar | grep -v -- '-exec.jar$' | head -n 1)"
+VERSION="$(basename "$JAR" .jar)"
+VERSION="${VERSION#asist-backend-}"
+RESULTS="target/startup-benchmark.csv"
+
+case "$MODE" in
+    jar)
+        # Con el perfil fast-startup el jar ejecutable lleva el clasificador -exec
+        EXEC_JAR="target/asist-backend-${VERSION}-exec.jar"
+        [[ -f "$EXEC_JAR" ]] || EXEC_JAR="$JAR"
+        CMD=(java -jar "$EXEC_JAR" --server.port="$PORT")
+        ;;
+    fast)
+        CMD=(java -XX:SharedArchiveFile=target/application.jsa -Dspring.aot.enabled=true
+             -cp "${JAR}:target/lib/*" com.asist.AsistApplication --server.port="$PORT")
+        ;;
+    *)
+        echo "Modo desconocido: $MODE (usar jar o fast)" >&2
+        exit 1
+        ;;
+esac
+
+now_ms() {
+    date +%s%3N
+}
+
+# Devuelve el código HTTP de /api/reports (000 si el servidor aún no escucha)
+reports_status() {
+    local auth=()
+    if [[ -n "${TOKEN:-}" ]]; then
+        auth=(-H "Authorization: Bearer ${TOKEN}")
+    fi
+    curl -s -o /dev/null -w '%{http_code}' "${auth[@]}" "${BASE_URL}/api/reports" || true
+}
+
+login() {
+    curl -s -X POST "${BASE_URL}/api/auth/login" \
+        -H "Content-Type: application/json" \
+        -d "{\"email\":\"${ASIST_BENCH_EMAIL}\",\"password\":\"${ASIST_BENCH_PASSWORD}\"}" \
+        | sed -n 's/.*"accessToken":"\([^"]*\)".*/\1/p'
+}
+
+[[ -f "$RESULTS" ]] || echo "timestamp,version,mode,run,first_response_ms,first_success_ms" > "$RESULTS"
+
+for run in $(seq 1 "$RUNS"); do
+    TOKEN=""
+    start=$(now_ms)
+    "${CMD[@]}" > "target/startup-benchmark-${MODE}-${run}.log" 2>&1 &
+    pid=$!
+    trap 'kill $pid 2>/dev/null || true' EXIT
+
+    first_response=""
+    first_success=""
+    deadline=$(( start + TIMEOUT_SECONDS * 1000 ))
+    while [[ -z "$first_success" ]]; do
+        if (( $(now_ms) > deadline )); then
+            echo "Tiempo de espera agotado en la ejecución $run" >&2
+            kill "$pid" 2>/dev/null || true
+            exit 1
+        fi
+        status=$(reports_status)
+        if [[ "$status" != "000" ]]; then
+            [[ -n "$first_response" ]] || first_response=$(( $(now_ms) - start ))
+            if [[ "$status" == 2* ]]; then
+                first_success=$(( $(now_ms) - start ))
+            elif [[ "$status" == "401" && -n "${ASIST_BENCH_EMAIL:-}" && -z "$TOKEN" ]]; then
+                TOKEN="$(login)"
+            elif [[ -z "${ASIST_BENCH_EMAIL:-}" ]]; then
+                first_success="$first_response"
+            fi
+        fi
+        [[ -n "$first_success" ]] || sleep 0.05
+    done
+
+    kill "$pid" 2>/dev/null || true
+    wait "$pid" 2>/dev/null || true
+
+    echo "Ejecución $run ($MODE): primera respuesta ${first_response} ms, primera respuesta correcta ${first_success} ms"
+    echo "$(date -u +%Y-%m-%dT%H:%M:%SZ),${VERSION},${MODE},${run},${first_response},${first_success}" >> "$RESULTS"
+done
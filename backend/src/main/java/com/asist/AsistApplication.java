@@ -2,6 +2,7 @@ package com.asist;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Clase principal de la aplicación Spring Boot AsisT.
@@ -15,6 +16,7 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
  * @since 2025-09-22
  */
 @SpringBootApplication
+@EnableScheduling
 public class AsistApplication {
 
     /**
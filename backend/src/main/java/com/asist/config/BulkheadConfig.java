@@ -0,0 +1,166 @@
+package com.asist.config;
+
+import com.asist.service.Bulkhead;
+import com.asist.service.BulkheadRegistry;
+import com.asist.service.BulkheadRegistry.Group;
+import com.asist.service.BulkheadRegistry.RequestSlot;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Configuración de los compartimentos (bulkheads) por grupo de rutas
+ *
+ * Un filtro, anterior a Spring Security para que la validación del token
+ * también cuente, reserva un hueco en el compartimento del grupo de la
+ * petición o responde 503 de inmediato. El DataSource principal se envuelve
+ * para que cada grupo no use más conexiones que su cupo.
+ */
+@Configuration
+public class BulkheadConfig {
+
+    @Bean
+    public FilterRegistrationBean<BulkheadFilter> bulkheadFilter(BulkheadRegistry registry) {
+        FilterRegistrationBean<BulkheadFilter> registration = new FilterRegistrationBean<>(new BulkheadFilter(registry));
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 1);
+        registration.addUrlPatterns("/api/*");
+        return registration;
+    }
+
+    @Bean
+    public static BeanPostProcessor bulkheadDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if ("dataSource".equals(beanName) && bean instanceof DataSource dataSource) {
+                    return new BulkheadDataSource(dataSource);
+                }
+                return bean;
+            }
+        };
+    }
+
+    /**
+     * Filtro que ejecuta cada petición dentro del compartimento de su grupo
+     */
+    static class BulkheadFilter extends OncePerRequestFilter {
+
+        private final BulkheadRegistry registry;
+
+        BulkheadFilter(BulkheadRegistry registry) {
+            this.registry = registry;
+        }
+
+        @Override
+        protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+                throws ServletException, IOException {
+            String path = request.getRequestURI().substring(request.getContextPath().length());
+            Group group = registry.classify(request.getMethod(), path);
+            if (group == null) {
+                chain.doFilter(request, response);
+                return;
+            }
+            Bulkhead bulkhead = registry.get(group);
+            if (!bulkhead.tryEnter()) {
+                reject(response, bulkhead);
+                return;
+            }
+            RequestSlot slot = new RequestSlot(bulkhead);
+            BulkheadRegistry.bind(slot);
+            long start = System.nanoTime();
+            try {
+                chain.doFilter(request, response);
+            } finally {
+                BulkheadRegistry.unbind();
+                bulkhead.exit(System.nanoTime() - start);
+            }
+            // Sin conexión disponible en el cupo: el controlador habrá respondido 500, se cambia por 503
+            if (slot.isConnectionRejected() && !response.isCommitted()) {
+                response.reset();
+                reject(response, bulkhead);
+            }
+        }
+
+        private static void reject(HttpServletResponse response, Bulkhead bulkhead) throws IOException {
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader("Retry-After", "1");
+            response.setContentType("application/json");
+            response.getWriter().write("{\"message\":\"Servicio saturado (" + bulkhead.getName() + "), reintente en unos segundos\"}");
+        }
+    }
+
+    /**
+     * DataSource que limita las conexiones abiertas a la vez por el compartimento del hilo actual
+     */
+    static class BulkheadDataSource extends DelegatingDataSource {
+
+        BulkheadDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return withQuota(() -> super.getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return withQuota(() -> super.getConnection(username, password));
+        }
+
+        private Connection withQuota(ConnectionSupplier supplier) throws SQLException {
+            RequestSlot slot = BulkheadRegistry.current();
+            if (slot == null) {
+                return supplier.get();
+            }
+            Bulkhead bulkhead = slot.getBulkhead();
+            if (!bulkhead.acquireConnection()) {
+                slot.markConnectionRejected();
+                throw new SQLTransientConnectionException("Cupo de conexiones agotado en " + bulkhead.getName());
+            }
+            try {
+                return releasingOnClose(supplier.get(), bulkhead);
+            } catch (SQLException | RuntimeException e) {
+                bulkhead.releaseConnection();
+                throw e;
+            }
+        }
+
+        private static Connection releasingOnClose(Connection connection, Bulkhead bulkhead) {
+            AtomicBoolean released = new AtomicBoolean();
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                        if ("close".equals(method.getName()) && released.compareAndSet(false, true)) {
+                            bulkhead.releaseConnection();
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getTargetException();
+                        }
+                    });
+        }
+
+        @FunctionalInterface
+        private interface ConnectionSupplier {
+            Connection get() throws SQLException;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.asist.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Enrutado de lecturas a réplica y escrituras a primaria
+ *
+ * Las transacciones @Transactional(readOnly = true) (entre ellas todas las
+ * consultas de los repositorios Spring Data) usan el pool de la réplica; el
+ * resto usa el pool de la primaria. Si la réplica no responde o su retraso
+ * supera asist.datasource.replica.max-lag-seconds, las lecturas vuelven a la
+ * primaria hasta que se recupere.
+ *
+ * Se activa con asist.datasource.routing.enabled=true. Cada pool se configura
+ * bajo asist.datasource.primary.* y asist.datasource.replica.* con las
+ * propiedades de Hikari (jdbc-url, username, password, maximum-pool-size...).
+ * La primaria usa por defecto una base H2 en memoria; la réplica no tiene
+ * valor por defecto y asist.datasource.replica.jdbc-url es obligatoria. Para
+ * pruebas locales puede ser la misma URL que la primaria. Si es otra base H2,
+ * al arrancar recibe el esquema que Hibernate ha creado en la primaria
+ * (asist.datasource.replica.copy-h2-schema), pero no sus datos.
+ *
+ * Requiere spring.jpa.open-in-view=false (application.properties): con
+ * open-in-view el EntityManager de la petición conserva la primera conexión
+ * y las transacciones de solo lectura posteriores no pasarían a la réplica.
+ */
+@Configuration
+@ConditionalOnProperty(name = "asist.datasource.routing.enabled", havingValue = "true")
+public class DataSourceRoutingConfig {
+
+    private static final String DEFAULT_H2_URL = "jdbc:h2:mem:asist;DB_CLOSE_DELAY=-1";
+
+    @Value("${asist.datasource.replica.max-lag-seconds:5}")
+    private long maxLagSeconds;
+
+    // Consulta que devuelve el retraso de la réplica en segundos; vacía = solo comprobar conectividad
+    // Ej. PostgreSQL: SELECT EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp())
+    @Value("${asist.datasource.replica.lag-query:}")
+    private String lagQuery;
+
+    // Crear en una réplica H2 vacía el esquema de la primaria (solo H2, para pruebas locales)
+    @Value("${asist.datasource.replica.copy-h2-schema:true}")
+    private boolean copyH2Schema;
+
+    @Value("${spring.jpa.open-in-view:true}")
+    private boolean openInView;
+
+    @Bean
+    @ConfigurationProperties("asist.datasource.primary")
+    public HikariDataSource primaryDataSource() {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("asist-primary");
+        dataSource.setJdbcUrl(DEFAULT_H2_URL);
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("asist.datasource.replica")
+    public HikariDataSource replicaDataSource() {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("asist-replica");
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    public ReadWriteRoutingDataSource routingDataSource(
+            @Qualifier("primaryDataSource") DataSource primary,
+            @Qualifier("replicaDataSource") HikariDataSource replica) {
+        if (openInView) {
+            throw new IllegalStateException("asist.datasource.routing.enabled requiere spring.jpa.open-in-view=false");
+        }
+        if (replica.getJdbcUrl() == null || replica.getJdbcUrl().isBlank()) {
+            throw new IllegalStateException("asist.datasource.routing.enabled requiere asist.datasource.replica.jdbc-url");
+        }
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource();
+        routing.setTargetDataSources(Map.of(
+                ReadWriteRoutingDataSource.PRIMARY, primary,
+                ReadWriteRoutingDataSource.REPLICA, replica
+        ));
+        routing.setDefaultTargetDataSource(primary);
+        return routing;
+    }
+
+    /**
+     * DataSource usado por JPA. El proxy perezoso retrasa la obtención de la
+     * conexión hasta la primera sentencia, cuando ya se conoce si la
+     * transacción es de solo lectura.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReadWriteRoutingDataSource routingDataSource) {
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    /**
+     * Crea el esquema en una réplica H2 distinta de la primaria cuando JPA ya
+     * lo ha creado en la primaria
+     */
+    @Bean
+    public SmartInitializingSingleton replicaSchemaInitializer(
+            @Qualifier("primaryDataSource") HikariDataSource primary,
+            @Qualifier("replicaDataSource") HikariDataSource replica) {
+        return () -> {
+            if (!copyH2Schema || replica.getJdbcUrl().equals(primary.getJdbcUrl())) {
+                return;
+            }
+            try {
+                List<String> ddl = H2Schema.read(primary);
+                if (!ddl.isEmpty() && !H2Schema.hasTable(replica, "reports")) {
+                    H2Schema.apply(replica, ddl);
+                    System.out.println("Esquema de la primaria copiado a la réplica H2: " + ddl.size() + " sentencias");
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException("No se pudo crear el esquema en la réplica", e);
+            }
+        };
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(
+            ReadWriteRoutingDataSource routingDataSource,
+            @Qualifier("replicaDataSource") DataSource replica) {
+        return new ReplicaLagMonitor(routingDataSource, replica, lagQuery, maxLagSeconds);
+    }
+
+    /**
+     * DataSource de enrutado: elige réplica o primaria según la transacción en curso
+     */
+    public static class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+        static final String PRIMARY = "primary";
+        static final String REPLICA = "replica";
+
+        private volatile boolean replicaAvailable = true;
+
+        @Override
+        protected Object determineCurrentLookupKey() {
+            if (replicaAvailable && TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+                return REPLICA;
+            }
+            return PRIMARY;
+        }
+
+        public boolean isReplicaAvailable() {
+            return replicaAvailable;
+        }
+
+        void setReplicaAvailable(boolean replicaAvailable) {
+            this.replicaAvailable = replicaAvailable;
+        }
+    }
+
+    /**
+     * Comprueba periódicamente la réplica y desvía las lecturas a la primaria
+     * mientras esté caída o retrasada
+     */
+    public static class ReplicaLagMonitor {
+
+        private final ReadWriteRoutingDataSource routingDataSource;
+        private final DataSource replica;
+        private final String lagQuery;
+        private final long maxLagSeconds;
+
+        public ReplicaLagMonitor(ReadWriteRoutingDataSource routingDataSource, DataSource replica,
+                                 String lagQuery, long maxLagSeconds) {
+            this.routingDataSource = routingDataSource;
+            this.replica = replica;
+            this.lagQuery = lagQuery;
+            this.maxLagSeconds = maxLagSeconds;
+        }
+
+        @Scheduled(fixedDelayString = "${asist.datasource.replica.lag-check-interval-ms:5000}")
+        public void check() {
+            boolean healthy = isReplicaHealthy();
+            if (healthy != routingDataSource.isReplicaAvailable()) {
+                System.err.println(healthy
+                        ? "Réplica disponible: las lecturas vuelven a la réplica"
+                        : "Réplica no disponible o retrasada: las lecturas se envían a la primaria");
+            }
+            routingDataSource.setReplicaAvailable(healthy);
+        }
+
+        private boolean isReplicaHealthy() {
+            try (Connection connection = replica.getConnection()) {
+                if (lagQuery == null || lagQuery.isBlank()) {
+                    return connection.isValid(1);
+                }
+                try (Statement statement = connection.createStatement();
+                     ResultSet rs = statement.executeQuery(lagQuery)) {
+                    if (!rs.next()) {
+                        return false;
+                    }
+                    double lagSeconds = rs.getDouble(1);
+                    // NULL indica que la réplica no está replicando
+                    return !rs.wasNull() && lagSeconds <= maxLagSeconds;
+                }
+            } catch (Exception e) {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.asist.config;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Copia del esquema entre bases H2 para pruebas locales (shards, réplica)
+ *
+ * Hibernate solo crea el esquema en la base principal; las demás bases H2
+ * reciben las sentencias CREATE y ALTER TABLE de SCRIPT NODATA.
+ */
+final class H2Schema {
+
+    private H2Schema() {
+    }
+
+    /**
+     * DDL de la base, o lista vacía si no es H2
+     */
+    static List<String> read(DataSource source) throws SQLException {
+        List<String> ddl = new ArrayList<>();
+        try (Connection connection = source.getConnection();
+             Statement statement = connection.createStatement()) {
+            if (!connection.getMetaData().getDatabaseProductName().startsWith("H2")) {
+                return ddl;
+            }
+            try (ResultSet rs = statement.executeQuery("SCRIPT NODATA NOSETTINGS")) {
+                while (rs.next()) {
+                    String sql = rs.getString(1);
+                    if ((sql.startsWith("CREATE ") && !sql.startsWith("CREATE USER")) || sql.startsWith("ALTER TABLE")) {
+                        ddl.add(sql);
+                    }
+                }
+            }
+        }
+        return ddl;
+    }
+
+    static boolean hasTable(DataSource target, String table) throws SQLException {
+        try (Connection connection = target.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            for (String name : new String[]{table.toLowerCase(), table.toUpperCase()}) {
+                try (ResultSet rs = metaData.getTables(null, null, name, null)) {
+                    if (rs.next()) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Ejecuta el DDL; la conexión se abre en escritura aunque el pool sea de solo lectura
+     */
+    static void apply(DataSource target, List<String> ddl) throws SQLException {
+        try (Connection connection = target.getConnection()) {
+            connection.setReadOnly(false);
+            try (Statement statement = connection.createStatement()) {
+                for (String sql : ddl) {
+                    statement.execute(sql);
+                }
+            }
+        }
+    }
+}
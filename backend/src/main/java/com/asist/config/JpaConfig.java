@@ -0,0 +1,50 @@
+package com.asist.config;
+
+import com.asist.service.SqlStatistics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.hibernate5.SpringBeanContainer;
+
+/**
+ * Ajustes de Hibernate para reutilizar sentencias preparadas y planes de
+ * consulta, para medir las sentencias SQL que se ejecutan y para que los
+ * entity listeners sean beans de Spring
+ */
+@Configuration
+public class JpaConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer statementReuseCustomizer() {
+        return properties -> {
+            // Las listas IN se rellenan hasta la siguiente potencia de 2: findAllById con
+            // 5, 6, 7 u 8 IDs genera la misma sentencia en lugar de cuatro distintas
+            properties.putIfAbsent("hibernate.query.in_clause_parameter_padding", "true");
+            properties.putIfAbsent("hibernate.query.plan_cache_max_size", "2048");
+        };
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer statisticsCustomizer(
+            @Value("${asist.sql-stats.enabled:true}") boolean enabled,
+            @Value("${asist.sql-stats.slow-query-ms:200}") long slowQueryMs) {
+        return properties -> {
+            properties.putIfAbsent("hibernate.generate_statistics", Boolean.toString(enabled));
+            // Hibernate escribe en el log cada consulta más lenta que el umbral
+            properties.putIfAbsent("hibernate.log_slow_query", Long.toString(slowQueryMs));
+            if (enabled) {
+                properties.putIfAbsent("hibernate.session_factory.statement_inspector",
+                        new SqlStatistics.StatementCounter());
+            }
+        };
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer beanContainerCustomizer(ConfigurableListableBeanFactory beanFactory) {
+        // Los @EntityListeners (p. ej. LocationDictionary.ReportListener) se piden a Spring con sus dependencias
+        return properties -> properties.putIfAbsent("hibernate.resource.beans.container",
+                new SpringBeanContainer(beanFactory));
+    }
+}
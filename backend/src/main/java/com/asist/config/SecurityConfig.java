@@ -9,6 +9,7 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
@@ -58,10 +59,11 @@ public class SecurityConfig {
 
     /**
      * Bean para el encoder de contraseñas usando BCrypt
-     * BCrypt es un algoritmo de hashing seguro con salt automático
+     * BCrypt es un algoritmo de hashing seguro con salt automático.
+     * Estático para que UserService pueda usarlo sin crear antes esta configuración.
      */
     @Bean
-    public PasswordEncoder passwordEncoder() {
+    public static PasswordEncoder passwordEncoder() {
         return new BCryptPasswordEncoder(12); // Fuerza 12 para mayor seguridad
     }
 
@@ -130,12 +132,22 @@ public class SecurityConfig {
             "Accept",
             "Origin",
             "Access-Control-Request-Method",
-            "Access-Control-Request-Headers"
+            "Access-Control-Request-Headers",
+            "Idempotency-Key",
+            "Range",
+            "If-None-Match",
+            "If-Range"
         ));
         
         configuration.setExposedHeaders(Arrays.asList(
             "Access-Control-Allow-Origin",
-            "Access-Control-Allow-Credentials"
+            "Access-Control-Allow-Credentials",
+            "Idempotent-Replayed",
+            "Accept-Ranges",
+            "Content-Range",
+            "Content-Disposition",
+            "ETag",
+            "Retry-After"
         ));
         
         configuration.setAllowCredentials(true);
@@ -253,7 +265,9 @@ public class SecurityConfig {
         @Autowired
         private JwtService jwtService;
 
+        // Perezoso: lo define SecurityConfig, que a su vez depende de este filtro
         @Autowired
+        @Lazy
         private UserDetailsService userDetailsService;
 
         @Override
@@ -0,0 +1,182 @@
+package com.asist.config;
+
+import com.asist.service.ReportShardRouter;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Configuración de shards de reportes
+ *
+ * Con asist.sharding.enabled=true se crean asist.sharding.count pools Hikari,
+ * uno por shard, a partir de asist.sharding.url-template ({index} se
+ * sustituye por el número de shard). JPA usa un DataSource de enrutado que
+ * elige el shard fijado por ReportShardRouter en el hilo actual; fuera de una
+ * operación enrutada (usuarios, contadores globales) se usa el shard 0.
+ *
+ * Requiere spring.jpa.open-in-view=false (application.properties): con
+ * open-in-view el EntityManager de la petición conserva la conexión del
+ * primer shard que usa y las escrituras de otros shards irían a él.
+ *
+ * Los reportes se buscan por id mod N y por el shard de su usuario, así que
+ * no arranca si algún shard tiene reportes que no cumplen ambas reglas (por
+ * ejemplo, creados antes de activar el sharding o con otro número de
+ * shards): hay que repartirlos y renumerarlos antes.
+ *
+ * No es compatible con asist.datasource.routing.enabled (réplica de lectura).
+ */
+@Configuration
+@ConditionalOnProperty(name = "asist.sharding.enabled", havingValue = "true")
+public class ShardingConfig {
+
+    @Value("${asist.sharding.count:1}")
+    private int shardCount;
+
+    @Value("${asist.sharding.url-template:jdbc:h2:mem:asist_shard{index};DB_CLOSE_DELAY=-1}")
+    private String urlTemplate;
+
+    @Value("${asist.sharding.username:sa}")
+    private String username;
+
+    @Value("${asist.sharding.password:}")
+    private String password;
+
+    @Value("${asist.sharding.maximum-pool-size:10}")
+    private int maximumPoolSize;
+
+    @Value("${spring.jpa.open-in-view:true}")
+    private boolean openInView;
+
+    // Copiar el esquema del shard 0 a los demás (solo H2, para pruebas locales)
+    @Value("${asist.sharding.copy-h2-schema:true}")
+    private boolean copyH2Schema;
+
+    // Reparte los IDs de reporte por módulo; sintaxis estándar SQL (H2, PostgreSQL)
+    @Value("${asist.sharding.id-sequence-sql:ALTER TABLE reports ALTER COLUMN id SET INCREMENT BY {count} RESTART WITH {start}}")
+    private String idSequenceSql;
+
+    @Bean
+    public ShardRoutingDataSource shardRoutingDataSource() {
+        if (openInView) {
+            throw new IllegalStateException("asist.sharding.enabled requiere spring.jpa.open-in-view=false");
+        }
+        Map<Object, Object> targets = new HashMap<>();
+        for (int i = 0; i < shardCount; i++) {
+            HikariDataSource shard = new HikariDataSource();
+            shard.setPoolName("asist-shard-" + i);
+            shard.setJdbcUrl(urlTemplate.replace("{index}", Integer.toString(i)));
+            shard.setUsername(username);
+            shard.setPassword(password);
+            shard.setMaximumPoolSize(maximumPoolSize);
+            targets.put(i, shard);
+        }
+        ShardRoutingDataSource routing = new ShardRoutingDataSource();
+        routing.setTargetDataSources(targets);
+        routing.setDefaultTargetDataSource(targets.get(0));
+        return routing;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+
+    /**
+     * Prepara los shards cuando JPA ya ha creado el esquema en el shard 0
+     */
+    @Bean
+    public SmartInitializingSingleton shardSchemaInitializer(ShardRoutingDataSource routing,
+                                                             ReportShardRouter shardRouter) {
+        return () -> {
+            try {
+                List<String> ddl = copyH2Schema ? H2Schema.read(routing.shard(0)) : List.of();
+                for (int i = 0; i < shardCount; i++) {
+                    DataSource shard = routing.shard(i);
+                    if (i > 0 && !ddl.isEmpty() && !H2Schema.hasTable(shard, "reports")) {
+                        H2Schema.apply(shard, ddl);
+                    }
+                    checkPlacement(shard, i, shardRouter);
+                    alignIdSequence(shard, i);
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException("No se pudieron preparar los shards de reportes", e);
+            }
+        };
+    }
+
+    /**
+     * Comprueba que los reportes del shard i tienen id mod N = i y usuarios del shard i
+     */
+    private void checkPlacement(DataSource shard, int index, ReportShardRouter shardRouter) throws SQLException {
+        try (Connection connection = shard.getConnection();
+             Statement statement = connection.createStatement()) {
+            try (ResultSet rs = statement.executeQuery(
+                    "SELECT COUNT(*) FROM reports WHERE MOD(id, " + shardCount + ") <> " + index)) {
+                if (rs.next() && rs.getLong(1) > 0) {
+                    throw new IllegalStateException("El shard " + index + " tiene " + rs.getLong(1)
+                            + " reportes con IDs de otro shard; hay que migrarlos antes de activar el sharding");
+                }
+            }
+            try (ResultSet rs = statement.executeQuery("SELECT DISTINCT user_id FROM reports")) {
+                while (rs.next()) {
+                    long userId = rs.getLong(1);
+                    if (shardRouter.shardForUser(userId) != index) {
+                        throw new IllegalStateException("El shard " + index + " tiene reportes del usuario " + userId
+                                + ", que corresponde al shard " + shardRouter.shardForUser(userId)
+                                + "; hay que migrarlos antes de activar el sharding");
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Ajusta la columna identidad para que el shard i solo genere IDs con id mod N = i
+     */
+    private void alignIdSequence(DataSource shard, int index) throws SQLException {
+        try (Connection connection = shard.getConnection();
+             Statement statement = connection.createStatement()) {
+            long maxId = 0;
+            try (ResultSet rs = statement.executeQuery("SELECT MAX(id) FROM reports")) {
+                if (rs.next()) {
+                    maxId = rs.getLong(1);
+                }
+            }
+            long start = maxId + 1 + Math.floorMod(index - (maxId + 1), (long) shardCount);
+            statement.execute(idSequenceSql
+                    .replace("{count}", Integer.toString(shardCount))
+                    .replace("{start}", Long.toString(start)));
+        }
+    }
+
+    /**
+     * DataSource que elige el shard fijado en el hilo actual
+     */
+    public static class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+        @Override
+        protected Object determineCurrentLookupKey() {
+            return ReportShardRouter.currentShard();
+        }
+
+        DataSource shard(int index) {
+            return getResolvedDataSources().get(index);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.asist.config;
+
+import com.asist.service.SqlStatistics;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Recuento de sentencias SQL por petición
+ *
+ * Un filtro, el primero de la cadena para incluir también las consultas de
+ * autenticación, cuenta las sentencias de cada petición a /api y las
+ * acumula en el endpoint que la ha atendido (método y patrón de ruta).
+ * Las peticiones que no llegan a un controlador comparten una sola entrada.
+ */
+@Configuration
+@ConditionalOnProperty(name = "asist.sql-stats.enabled", havingValue = "true", matchIfMissing = true)
+public class SqlStatisticsConfig {
+
+    @Bean
+    public FilterRegistrationBean<StatementCountFilter> statementCountFilter(SqlStatistics sqlStatistics) {
+        FilterRegistrationBean<StatementCountFilter> registration =
+                new FilterRegistrationBean<>(new StatementCountFilter(sqlStatistics));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        registration.addUrlPatterns("/api/*");
+        return registration;
+    }
+
+    /**
+     * Filtro que cuenta las sentencias de cada petición
+     */
+    static class StatementCountFilter extends OncePerRequestFilter {
+
+        static final String UNMATCHED = "(sin controlador)";
+
+        private final SqlStatistics sqlStatistics;
+
+        StatementCountFilter(SqlStatistics sqlStatistics) {
+            this.sqlStatistics = sqlStatistics;
+        }
+
+        @Override
+        protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+                throws ServletException, IOException {
+            AtomicInteger statements = SqlStatistics.begin();
+            try {
+                chain.doFilter(request, response);
+            } finally {
+                SqlStatistics.end();
+                Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+                // Sin controlador (401, 404...) la ruta y el método los elige el cliente:
+                // se agrupan en una sola clave para no crear una entrada por URI
+                String endpoint = pattern != null ? request.getMethod() + " " + pattern : UNMATCHED;
+                sqlStatistics.record(endpoint, statements.get());
+            }
+        }
+    }
+}
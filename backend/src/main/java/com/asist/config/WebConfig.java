@@ -0,0 +1,38 @@
+package com.asist.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * Configuración de la capa web: formatos de respuesta
+ *
+ * Además de JSON, los controladores REST pueden responder en CBOR
+ * (Accept: application/cbor) y Smile (Accept: application/x-jackson-smile),
+ * pensados para clientes móviles con conexiones lentas. La compresión de
+ * respuestas se configura con server.compression.* (application.properties).
+ */
+@Configuration
+public class WebConfig {
+
+    /**
+     * Conversor CBOR que reutiliza la configuración Jackson de Spring Boot
+     * (módulos de fechas, inclusión de nulos, etc.)
+     */
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    /**
+     * Conversor Smile que reutiliza la configuración Jackson de Spring Boot
+     */
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+}
@@ -0,0 +1,136 @@
+package com.asist.controller;
+
+import com.asist.model.Attachment;
+import com.asist.service.AttachmentService;
+import com.asist.service.ReportQueryService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * AttachmentController - Controlador REST para los adjuntos de un reporte
+ *
+ * - POST /api/reports/{reportId}/attachments?fileName=foto.jpg - Subir un adjunto
+ *   (el cuerpo de la petición es el contenido del fichero, con su Content-Type)
+ * - GET /api/reports/{reportId}/attachments - Listar los adjuntos del reporte
+ * - GET /api/reports/{reportId}/attachments/{id} - Descargar un adjunto (admite Range)
+ * - DELETE /api/reports/{reportId}/attachments/{id} - Eliminar un adjunto
+ *
+ * Ni la subida ni la descarga cargan el fichero completo en memoria (ver
+ * FileDownload).
+ */
+@RestController
+@RequestMapping("/api/reports/{reportId}/attachments")
+@CrossOrigin(origins = "*")
+public class AttachmentController {
+
+    @Autowired
+    private AttachmentService attachmentService;
+
+    @Autowired
+    private ReportQueryService reportQueryService;
+
+    /**
+     * POST /api/reports/{reportId}/attachments?fileName=...
+     * Sube un adjunto leyendo el cuerpo de la petición en streaming
+     *
+     * @param reportId ID del reporte
+     * @param fileName nombre original del fichero
+     * @return ResponseEntity con el adjunto creado y código 201 (CREATED),
+     *         404 (NOT_FOUND) si el reporte no existe,
+     *         o 413 (PAYLOAD_TOO_LARGE) si supera el tamaño máximo
+     */
+    @PostMapping
+    public ResponseEntity<Attachment> upload(@PathVariable("reportId") Long reportId,
+                                             @RequestParam("fileName") String fileName,
+                                             HttpServletRequest request) {
+        try {
+            if (fileName.isBlank() || fileName.length() > 255) {
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+            if (reportQueryService.findById(reportId).isEmpty()) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            String contentType = request.getContentType() != null
+                    ? request.getContentType()
+                    : MediaType.APPLICATION_OCTET_STREAM_VALUE;
+            Optional<Attachment> attachment = attachmentService.store(
+                    reportId, fileName, contentType, request.getInputStream());
+            if (attachment.isEmpty()) {
+                return new ResponseEntity<>(HttpStatus.PAYLOAD_TOO_LARGE);
+            }
+            return new ResponseEntity<>(attachment.get(), HttpStatus.CREATED);
+        } catch (Exception e) {
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * GET /api/reports/{reportId}/attachments
+     * Lista los adjuntos de un reporte
+     */
+    @GetMapping
+    public ResponseEntity<List<Attachment>> list(@PathVariable("reportId") Long reportId) {
+        try {
+            List<Attachment> attachments = attachmentService.findByReport(reportId);
+            if (attachments.isEmpty()) {
+                return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+            }
+            return new ResponseEntity<>(attachments, HttpStatus.OK);
+        } catch (Exception e) {
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * GET /api/reports/{reportId}/attachments/{id}
+     * Descarga un adjunto. Admite un único rango (Range: bytes=inicio-fin) y
+     * If-None-Match con el hash del contenido como ETag.
+     */
+    @GetMapping("/{id}")
+    public void download(@PathVariable("reportId") Long reportId,
+                         @PathVariable("id") Long id,
+                         HttpServletRequest request,
+                         HttpServletResponse response) throws IOException {
+        Optional<Attachment> attachmentData = attachmentService.find(reportId, id);
+        if (attachmentData.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        Attachment attachment = attachmentData.get();
+        Path file = attachmentService.contentPath(attachment);
+        if (!Files.exists(file)) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        FileDownload.send(request, response, file, attachment.getSize(), attachment.getContentType(),
+                attachment.getFileName(), attachment.getSha256());
+    }
+
+    /**
+     * DELETE /api/reports/{reportId}/attachments/{id}
+     * Elimina un adjunto
+     */
+    @DeleteMapping("/{id}")
+    public ResponseEntity<HttpStatus> delete(@PathVariable("reportId") Long reportId, @PathVariable("id") Long id) {
+        try {
+            if (attachmentService.delete(reportId, id)) {
+                return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+            }
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        } catch (Exception e) {
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+}
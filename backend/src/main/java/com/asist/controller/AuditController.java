@@ -0,0 +1,48 @@
+package com.asist.controller;
+
+import com.asist.service.AuditJournal;
+import com.asist.service.AuditJournal.AuditEntry;
+import com.asist.service.AuditJournal.EntityType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * AuditController - Consulta del diario de auditoría (solo administradores)
+ *
+ * - GET /api/admin/audit?from=2025-01-01T00:00:00&to=...&entityType=REPORT&entityId=42&limit=100
+ *   Registros en orden cronológico; todos los filtros son opcionales
+ */
+@RestController
+@RequestMapping("/api/admin/audit")
+@CrossOrigin(origins = "*")
+public class AuditController {
+
+    private static final int MAX_LIMIT = 1000;
+
+    @Autowired
+    private AuditJournal auditJournal;
+
+    @GetMapping
+    public ResponseEntity<List<AuditEntry>> query(
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(value = "entityType", required = false) EntityType entityType,
+            @RequestParam(value = "entityId", required = false) Long entityId,
+            @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        try {
+            if (limit <= 0 || (from != null && to != null && from.isAfter(to))) {
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+            List<AuditEntry> entries = auditJournal.query(from, to, entityType, entityId, Math.min(limit, MAX_LIMIT));
+            return new ResponseEntity<>(entries, HttpStatus.OK);
+        } catch (Exception e) {
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+}
@@ -3,19 +3,20 @@ package com.asist.controller;
 import com.asist.model.User;
 import com.asist.repository.UserRepository;
 import com.asist.service.JwtService;
+import com.asist.service.RefreshTokenStore;
 import com.asist.service.UserService;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
@@ -39,10 +40,10 @@ public class AuthController {
     private UserRepository userRepository;
 
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private JwtService jwtService;
 
     @Autowired
-    private JwtService jwtService;
+    private RefreshTokenStore refreshTokenStore;
 
     @PostMapping("/register")
     public ResponseEntity<?> register(@Valid @RequestBody RegisterRequest request) {
@@ -52,12 +53,16 @@ public class AuthController {
                 return ResponseEntity.status(HttpStatus.CONFLICT)
                         .body(new MessageResponse("El email ya está registrado"));
             }
+            if (userService.existsByUsername(request.getUsername())) {
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body(new MessageResponse("El nombre de usuario ya está en uso"));
+            }
 
-            // Crear usuario y hashear contraseña
+            // Crear usuario (UserService hashea la contraseña)
             User user = new User();
             user.setEmail(request.getEmail());
             user.setUsername(request.getUsername());
-            user.setPassword(passwordEncoder.encode(request.getPassword()));
+            user.setPassword(request.getPassword());
 
             User saved = userService.registerUser(user);
 
@@ -74,15 +79,14 @@ public class AuthController {
                             .authorities("ROLE_USER")
                             .build()
             );
-            String refresh = jwtService.generateRefreshToken(
-                    org.springframework.security.core.userdetails.User.withUsername(saved.getEmail())
-                            .password(saved.getPassword())
-                            .authorities("ROLE_USER")
-                            .build()
-            );
+            String refresh = issueRefreshToken(refreshTokenStore.startFamily(saved.getEmail()));
 
             return ResponseEntity.status(HttpStatus.CREATED)
                     .body(JwtResponse.of(jwt, refresh, saved));
+        } catch (DataIntegrityViolationException e) {
+            // Registro simultáneo con el mismo email o nombre: lo detecta la restricción unique
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(new MessageResponse("El email o el nombre de usuario ya están registrados"));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(new MessageResponse("Error en registro: " + e.getMessage()));
@@ -110,7 +114,7 @@ public class AuthController {
             var principal = org.springframework.security.core.userdetails.User.withUsername(user.getEmail())
                     .password(user.getPassword()).authorities("ROLE_USER").build();
             String jwt = jwtService.generateToken(principal);
-            String refresh = jwtService.generateRefreshToken(principal);
+            String refresh = issueRefreshToken(refreshTokenStore.startFamily(user.getEmail()));
 
             return ResponseEntity.ok(JwtResponse.of(jwt, refresh, user));
         } catch (Exception e) {
@@ -129,18 +133,36 @@ public class AuthController {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(new MessageResponse("Refresh token inválido"));
         }
-        String email = jwtService.extractUsername(refreshToken);
-        var userOpt = userService.findByEmail(email);
-        if (userOpt.isEmpty()) {
+        // La rotación se resuelve en memoria: no se consulta la base de datos.
+        // Al eliminar un usuario se revocan sus familias en todos los nodos (bus de cachés)
+        String familyId = jwtService.extractFamilyId(refreshToken);
+        Optional<RefreshTokenStore.Rotation> rotation = familyId == null
+                ? Optional.empty()
+                : refreshTokenStore.rotate(familyId, jwtService.extractTokenId(refreshToken));
+        if (rotation.isEmpty()) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body(new MessageResponse("Usuario no encontrado"));
+                    .body(new MessageResponse("Refresh token inválido o ya utilizado"));
         }
-        var principal = org.springframework.security.core.userdetails.User.withUsername(email)
-                .password(userOpt.get().getPassword()).authorities("ROLE_USER").build();
+        var principal = tokenPrincipal(rotation.get().getEmail());
         String newAccess = jwtService.generateToken(principal);
-        return ResponseEntity.ok(new HashMap<>() {{
-            put("accessToken", newAccess);
-        }});
+        String newRefresh = issueRefreshToken(rotation.get());
+        Map<String, String> body = new HashMap<>();
+        body.put("accessToken", newAccess);
+        body.put("refreshToken", newRefresh);
+        return ResponseEntity.ok(body);
+    }
+
+    /**
+     * Principal mínimo para firmar tokens (solo se usan email y roles)
+     */
+    private org.springframework.security.core.userdetails.UserDetails tokenPrincipal(String email) {
+        return org.springframework.security.core.userdetails.User.withUsername(email)
+                .password("").authorities("ROLE_USER").build();
+    }
+
+    private String issueRefreshToken(RefreshTokenStore.Rotation rotation) {
+        return jwtService.generateRefreshToken(
+                tokenPrincipal(rotation.getEmail()), rotation.getFamilyId(), rotation.getTokenId());
     }
 
     // DTOs con validaciones avanzadas
@@ -0,0 +1,30 @@
+package com.asist.controller;
+
+import com.asist.service.Bulkhead;
+import com.asist.service.BulkheadRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Collection;
+
+/**
+ * BulkheadController - Métricas de los compartimentos por grupo de rutas (solo administradores)
+ *
+ * - GET /api/admin/bulkheads - Límites, peticiones en curso y en cola,
+ *   aceptadas, rechazadas, esperas agotadas, conexiones en uso y latencia media
+ */
+@RestController
+@RequestMapping("/api/admin/bulkheads")
+@CrossOrigin(origins = "*")
+public class BulkheadController {
+
+    @Autowired
+    private BulkheadRegistry bulkheadRegistry;
+
+    @GetMapping
+    public ResponseEntity<Collection<Bulkhead>> getBulkheads() {
+        return new ResponseEntity<>(bulkheadRegistry.getAll(), HttpStatus.OK);
+    }
+}
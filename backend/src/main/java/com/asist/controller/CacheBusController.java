@@ -0,0 +1,34 @@
+package com.asist.controller;
+
+import com.asist.service.CacheInvalidationBus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * CacheBusController - Estado del bus de invalidación de cachés de este nodo (solo administradores)
+ *
+ * - GET /api/admin/cache-bus - Identificador del nodo, cachés suscritas, última
+ *   invalidación aplicada, huecos pendientes y saltados, invalidaciones
+ *   publicadas y recibidas y tiempo desde la última lectura
+ */
+@RestController
+@RequestMapping("/api/admin/cache-bus")
+@CrossOrigin(origins = "*")
+public class CacheBusController {
+
+    @Autowired
+    private CacheInvalidationBus cacheBus;
+
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getStatus() {
+        try {
+            return new ResponseEntity<>(cacheBus.getStatus(), HttpStatus.OK);
+        } catch (Exception e) {
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.asist.controller;
+
+import com.asist.service.ReportExportService;
+import com.asist.service.ReportExportService.ExportJob;
+import com.asist.service.ReportExportService.ExportRequest;
+import com.asist.service.ReportExportService.Format;
+import com.asist.service.ReportExportService.Status;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.Principal;
+import java.util.Optional;
+
+/**
+ * ExportController - Controlador REST para exportaciones de reportes
+ *
+ * - POST /api/exports - Lanzar una exportación (CSV o XLSX) con filtros
+ *   opcionales userId, location, startDate y endDate; responde 202 con el trabajo
+ * - GET /api/exports/{id} - Consultar el estado y el progreso del trabajo
+ * - GET /api/exports/{id}/file - Descargar el fichero terminado (admite Range
+ *   para reanudar descargas interrumpidas)
+ * - DELETE /api/exports/{id} - Cancelar el trabajo o eliminar el fichero
+ *
+ * Cada usuario solo ve sus propias exportaciones.
+ */
+@RestController
+@RequestMapping("/api/exports")
+@CrossOrigin(origins = "*")
+public class ExportController {
+
+    private static final String CSV_TYPE = "text/csv; charset=UTF-8";
+    private static final String XLSX_TYPE = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+
+    @Autowired
+    private ReportExportService reportExportService;
+
+    /**
+     * POST /api/exports
+     * Encola una exportación
+     *
+     * @return ResponseEntity con el trabajo y código 202 (ACCEPTED),
+     *         400 (BAD_REQUEST) si el rango de fechas no es válido,
+     *         o 429 (TOO_MANY_REQUESTS) si hay demasiadas exportaciones en curso
+     */
+    @PostMapping
+    public ResponseEntity<ExportJob> createExport(@RequestBody ExportRequest request, Principal principal) {
+        try {
+            if (request.getFormat() == null
+                    || (request.getStartDate() != null && request.getEndDate() != null
+                        && request.getStartDate().isAfter(request.getEndDate()))) {
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+            Optional<ExportJob> job = reportExportService.submit(principal.getName(), request);
+            if (job.isEmpty()) {
+                return new ResponseEntity<>(HttpStatus.TOO_MANY_REQUESTS);
+            }
+            return new ResponseEntity<>(job.get(), HttpStatus.ACCEPTED);
+        } catch (Exception e) {
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * GET /api/exports/{id}
+     * Estado y progreso de una exportación
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<ExportJob> getExport(@PathVariable("id") String id, Principal principal) {
+        Optional<ExportJob> job = reportExportService.find(principal.getName(), id);
+        if (job.isPresent()) {
+            return new ResponseEntity<>(job.get(), HttpStatus.OK);
+        } else {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+    }
+
+    /**
+     * GET /api/exports/{id}/file
+     * Descarga el fichero de una exportación terminada (409 si aún no lo está)
+     */
+    @GetMapping("/{id}/file")
+    public void downloadExport(@PathVariable("id") String id,
+                               Principal principal,
+                               HttpServletRequest request,
+                               HttpServletResponse response) throws IOException {
+        Optional<ExportJob> jobData = reportExportService.find(principal.getName(), id);
+        if (jobData.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        ExportJob job = jobData.get();
+        if (job.getStatus() != Status.COMPLETED) {
+            response.setStatus(HttpServletResponse.SC_CONFLICT);
+            return;
+        }
+        Path file = reportExportService.filePath(job);
+        if (!Files.exists(file)) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        boolean xlsx = job.getFormat() == Format.XLSX;
+        FileDownload.send(request, response, file, job.getFileSize(), xlsx ? XLSX_TYPE : CSV_TYPE,
+                "reportes-" + job.getId() + (xlsx ? ".xlsx" : ".csv"), job.getId());
+    }
+
+    /**
+     * DELETE /api/exports/{id}
+     * Cancela una exportación en curso o elimina una terminada
+     */
+    @DeleteMapping("/{id}")
+    public ResponseEntity<HttpStatus> deleteExport(@PathVariable("id") String id, Principal principal) {
+        if (reportExportService.cancel(principal.getName(), id)) {
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+        return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    }
+}
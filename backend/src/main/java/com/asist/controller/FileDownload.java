@@ -0,0 +1,156 @@
+package com.asist.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Envío de ficheros del disco con soporte de Range e If-None-Match
+ *
+ * Usa sendfile de Tomcat cuando está disponible: el contenido va del fichero
+ * al socket sin pasar por el heap. Si no lo está (conector sin sendfile,
+ * respuesta comprimida o envuelta por un filtro) se copia con
+ * FileChannel.transferTo hacia el OutputStream de la respuesta, lo que sí
+ * pasa por búferes del heap. Estos envíos se cuentan y se registran en el
+ * log (el primero y después cada FALLBACK_LOG_EVERY) con los bytes copiados.
+ */
+final class FileDownload {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final long FALLBACK_LOG_EVERY = 1000;
+
+    // Envíos sin sendfile y bytes copiados por el heap en ellos
+    private static final AtomicLong FALLBACKS = new AtomicLong();
+    private static final LongAdder FALLBACK_BYTES = new LongAdder();
+
+    private FileDownload() {
+    }
+
+    /**
+     * Envía el fichero completo o el único rango pedido (Range: bytes=inicio-fin)
+     *
+     * @param etag identificador del contenido (sin comillas); el fichero no debe cambiar mientras exista
+     */
+    static void send(HttpServletRequest request, HttpServletResponse response, Path file, long length,
+                     String contentType, String fileName, String etag) throws IOException {
+        String quotedEtag = "\"" + etag + "\"";
+        response.setHeader(HttpHeaders.ETAG, quotedEtag);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, max-age=31536000, immutable");
+        if (quotedEtag.equals(request.getHeader(HttpHeaders.IF_NONE_MATCH))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long start = 0;
+        long end = length - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        // If-Range distinto del ETag actual: se envía el fichero completo
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        boolean rangeApplies = ifRange == null || ifRange.equals(quotedEtag);
+        if (range != null && rangeApplies && range.startsWith("bytes=") && !range.contains(",")) {
+            long[] bounds = parseRange(range.substring(6).trim(), length);
+            if (bounds == null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            start = bounds[0];
+            end = bounds[1];
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        } else {
+            response.setStatus(HttpServletResponse.SC_OK);
+        }
+
+        long count = end - start + 1;
+        response.setContentType(contentType);
+        response.setContentLengthLong(count);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(fileName, StandardCharsets.UTF_8)
+                .build()
+                .toString());
+        if (count <= 0) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat envía el fichero con sendfile tras salir del controlador (copia cero)
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            OutputStream out = response.getOutputStream();
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, target);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+            }
+            out.flush();
+            FALLBACK_BYTES.add(count - remaining);
+        }
+        long fallbacks = FALLBACKS.incrementAndGet();
+        if (fallbacks == 1 || fallbacks % FALLBACK_LOG_EVERY == 0) {
+            System.out.println("Descargas sin sendfile: " + fallbacks + ", "
+                    + FALLBACK_BYTES.sum() / (1024 * 1024) + " MB copiados por el heap");
+        }
+    }
+
+    /**
+     * Interpreta "inicio-fin", "inicio-" o "-sufijo"; devuelve null si no es satisfacible
+     */
+    private static long[] parseRange(String spec, long length) {
+        try {
+            int dash = spec.indexOf('-');
+            if (dash < 0 || length == 0) {
+                return null;
+            }
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) {
+                    return null;
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(first);
+                end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+            }
+            if (start < 0 || start > end || start >= length) {
+                return null;
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
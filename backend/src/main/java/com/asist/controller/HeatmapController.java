@@ -0,0 +1,46 @@
+package com.asist.controller;
+
+import com.asist.service.ReportHeatmapService;
+import com.asist.service.ReportHeatmapService.Resolution;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.Locale;
+
+/**
+ * HeatmapController - Mapa de densidad de reportes por ubicación y tiempo
+ *
+ * - GET /api/reports/heatmap?resolution=hour|day&from=&to= - Teselas que cubren
+ *   el rango: con hour una por día (24 franjas horarias) y con day una por mes
+ *   (una franja por día). Cada tesela trae, por ubicación, el array de recuentos
+ *   de cada franja. Las teselas son completas aunque el rango empiece o acabe
+ *   en mitad de una, para que la misma tesela sirva a todas las peticiones.
+ */
+@RestController
+@RequestMapping("/api/reports/heatmap")
+@CrossOrigin(origins = "*")
+public class HeatmapController {
+
+    @Autowired
+    private ReportHeatmapService heatmapService;
+
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getHeatmap(
+            @RequestParam(value = "resolution", defaultValue = "hour") String resolution,
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        try {
+            byte[] tiles = heatmapService.getTiles(Resolution.valueOf(resolution.toUpperCase(Locale.ROOT)), from, to);
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(tiles);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+}
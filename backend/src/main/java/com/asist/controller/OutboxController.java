@@ -0,0 +1,34 @@
+package com.asist.controller;
+
+import com.asist.service.OutboxService;
+import com.asist.service.OutboxService.ConsumerStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * OutboxController - Estado de los consumidores del outbox de reportes (solo administradores)
+ *
+ * - GET /api/admin/outbox - Posición por shard, eventos pendientes, entregados,
+ *   fallos, espera actual de reintento y último error de cada consumidor
+ */
+@RestController
+@RequestMapping("/api/admin/outbox")
+@CrossOrigin(origins = "*")
+public class OutboxController {
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @GetMapping
+    public ResponseEntity<List<ConsumerStatus>> getStatus() {
+        try {
+            return new ResponseEntity<>(outboxService.getStatus(), HttpStatus.OK);
+        } catch (Exception e) {
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+}
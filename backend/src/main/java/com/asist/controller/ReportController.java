@@ -1,24 +1,52 @@
 package com.asist.controller;
 
 import com.asist.model.Report;
-import com.asist.repository.ReportRepository;
+import com.asist.service.AuditJournal;
+import com.asist.service.AuditJournal.Action;
+import com.asist.service.AuditJournal.EntityType;
+import com.asist.service.IdempotencyService;
+import com.asist.service.ReportFilterService;
+import com.asist.service.ReportFilterService.ReportFilter;
+import com.asist.service.ReportFilterService.ReportPage;
+import com.asist.service.ReportFilterService.SortOrder;
+import com.asist.service.ReportQueryService;
+import com.asist.service.ReportService;
+import com.asist.service.ReportShardRouter;
+import com.asist.service.ReportSyncService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.security.Principal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * ReportController - Controlador REST para la gestión de reportes
  * 
  * Este controlador proporciona los endpoints básicos CRUD para la entidad Report:
- * - GET /api/reports - Listar todos los reportes
+ * - GET /api/reports - Listar todos los reportes (paginado con ?page=&size=)
  * - GET /api/reports/{id} - Obtener un reporte por ID
+ * - GET /api/reports?ids=1,2,3 - Obtener varios reportes por ID en una sola consulta
+ * - POST /api/reports/batch - Igual que el anterior, para conjuntos grandes de IDs
+ * - GET /api/reports/query?userId=&location=&title=&from=&to=&sort=-date&limit=&cursor= -
+ *   Consulta combinando cualquier subconjunto de filtros, con paginación por cursor
+ * - GET /api/reports/changes?since=cursor - Cambios posteriores a un cursor (sincronización delta)
  * - POST /api/reports - Crear un nuevo reporte
  * - PUT /api/reports/{id} - Actualizar un reporte existente
- * - DELETE /api/reports/{id} - Eliminar un reporte
+ * - DELETE /api/reports/{id} - Eliminar un reporte (y sus adjuntos)
+ * 
+ * Los adjuntos de cada reporte se gestionan en AttachmentController.
+ * El mapa de densidad (GET /api/reports/heatmap) se sirve en HeatmapController y el
+ * autocompletado de ubicaciones y títulos (GET /api/reports/suggest) en SuggestController.
  * 
  * @author AsisT Development Team
  * @version 1.0
@@ -29,23 +57,66 @@ import java.util.Optional;
 @CrossOrigin(origins = "*")
 public class ReportController {
 
+    // Máximo de IDs aceptados en una consulta por lotes
+    private static final int MAX_BATCH_IDS = 1000;
+
+    // Tamaño máximo de un lote de sincronización
+    private static final int MAX_CHANGES_LIMIT = 1000;
+
+    // Longitud máxima aceptada para la cabecera Idempotency-Key
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
+    // Tamaño máximo de página en el listado general
+    private static final int MAX_PAGE_SIZE = 500;
+
+    @Autowired
+    private ReportQueryService reportQueryService;
+
+    @Autowired
+    private ReportService reportService;
+
+    @Autowired
+    private ReportSyncService reportSyncService;
+
+    @Autowired
+    private ReportShardRouter shardRouter;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
     @Autowired
-    private ReportRepository reportRepository;
+    private AuditJournal auditJournal;
+
+    @Autowired
+    private ReportFilterService reportFilterService;
 
     /**
      * GET /api/reports
-     * Obtiene la lista de todos los reportes del sistema
+     * Obtiene la lista de todos los reportes del sistema, ordenados por ID.
+     * Con el parámetro page devuelve solo esa página (size elementos).
      * 
-     * @return ResponseEntity con la lista de reportes y código 200 (OK)
+     * @param page número de página opcional (empezando en 0)
+     * @param size tamaño de página (máximo 500)
+     * @return ResponseEntity con la lista de reportes y código 200 (OK), o 400
+     *         (BAD_REQUEST) si con varios shards la página es demasiado profunda
      */
     @GetMapping
-    public ResponseEntity<List<Report>> getAllReports() {
+    public ResponseEntity<List<Report>> getAllReports(
+            @RequestParam(value = "page", required = false) Integer page,
+            @RequestParam(value = "size", defaultValue = "50") int size) {
         try {
-            List<Report> reports = reportRepository.findAll();
+            if (page != null && (page < 0 || size < 1)) {
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+            List<Report> reports = page == null
+                    ? reportQueryService.findAll()
+                    : reportQueryService.findPage(page, Math.min(size, MAX_PAGE_SIZE));
             if (reports.isEmpty()) {
                 return new ResponseEntity<>(HttpStatus.NO_CONTENT);
             }
             return new ResponseEntity<>(reports, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         } catch (Exception e) {
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
@@ -62,7 +133,7 @@ public class ReportController {
     @GetMapping("/{id}")
     public ResponseEntity<Report> getReportById(@PathVariable("id") Long id) {
         try {
-            Optional<Report> reportData = reportRepository.findById(id);
+            Optional<Report> reportData = reportQueryService.findById(id);
             if (reportData.isPresent()) {
                 return new ResponseEntity<>(reportData.get(), HttpStatus.OK);
             } else {
@@ -73,16 +144,156 @@ public class ReportController {
         }
     }
 
+    /**
+     * GET /api/reports/query
+     * Filtra reportes por cualquier combinación de usuario, ubicación, texto
+     * del título y rango de fechas, ordenados por fecha o ID. Para la página
+     * siguiente se repite la consulta con cursor=nextCursor.
+     * 
+     * @param sort orden: date, -date (por defecto), id o -id
+     * @param limit tamaño de página (máximo 500)
+     * @param cursor cursor devuelto por la página anterior
+     * @return ResponseEntity con la página de reportes, o 400 (BAD_REQUEST)
+     *         si el orden, el cursor o el rango de fechas no son válidos
+     */
+    @GetMapping("/query")
+    public ResponseEntity<ReportPage> queryReports(
+            @RequestParam(value = "userId", required = false) Long userId,
+            @RequestParam(value = "location", required = false) String location,
+            @RequestParam(value = "title", required = false) String title,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(value = "sort", defaultValue = "-date") String sort,
+            @RequestParam(value = "limit", defaultValue = "50") int limit,
+            @RequestParam(value = "cursor", required = false) String cursor) {
+        try {
+            if (limit < 1 || (from != null && to != null && from.isAfter(to))) {
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+            ReportPage page = reportFilterService.query(new ReportFilter(userId, location, title, from, to),
+                    SortOrder.parse(sort), cursor, Math.min(limit, MAX_PAGE_SIZE));
+            return new ResponseEntity<>(page, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * GET /api/reports/changes?since=0&limit=500
+     * Obtiene los reportes creados, modificados o eliminados después del cursor.
+     * Un cliente sin datos usa since=0; después repite con nextCursor mientras hasMore sea true.
+     * Si la respuesta trae reset=true, el cliente debe descartar sus datos y volver a empezar desde 0.
+     * 
+     * @param since cursor devuelto por la llamada anterior
+     * @param limit tamaño máximo del lote (máximo 1000)
+     * @return ResponseEntity con el lote de cambios
+     */
+    @GetMapping("/changes")
+    public ResponseEntity<ReportSyncService.ChangeBatch> getChanges(
+            @RequestParam(value = "since", defaultValue = "0") long since,
+            @RequestParam(value = "limit", defaultValue = "500") int limit) {
+        try {
+            if (since < 0 || limit < 1) {
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+            // Cada shard tiene su propia secuencia de cambios
+            if (shardRouter.isSharded()) {
+                return new ResponseEntity<>(HttpStatus.NOT_IMPLEMENTED);
+            }
+            return new ResponseEntity<>(
+                    reportSyncService.changesSince(since, Math.min(limit, MAX_CHANGES_LIMIT)), HttpStatus.OK);
+        } catch (Exception e) {
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * GET /api/reports?ids=1,2,3
+     * Obtiene varios reportes por ID con una única consulta IN
+     * 
+     * @param ids lista de IDs separados por comas
+     * @return ResponseEntity con los reportes en el orden solicitado y los IDs no encontrados,
+     *         o código 400 (BAD_REQUEST) si la lista está vacía o supera el máximo
+     */
+    @GetMapping(params = "ids")
+    public ResponseEntity<BatchResponse> getReportsByIds(@RequestParam("ids") List<Long> ids) {
+        return findBatch(ids);
+    }
+
+    /**
+     * POST /api/reports/batch
+     * Variante de la consulta por lotes para listas de IDs que no caben en la URL
+     * 
+     * @param request cuerpo con la lista de IDs
+     * @return ResponseEntity con los reportes en el orden solicitado y los IDs no encontrados
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<BatchResponse> getReportsByIdsBatch(@RequestBody BatchRequest request) {
+        return findBatch(request.getIds());
+    }
+
+    private ResponseEntity<BatchResponse> findBatch(List<Long> ids) {
+        try {
+            if (ids == null || ids.isEmpty() || ids.size() > MAX_BATCH_IDS) {
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+            // Eliminar duplicados y nulos conservando el orden de la petición
+            LinkedHashSet<Long> requested = new LinkedHashSet<>();
+            for (Long id : ids) {
+                if (id != null) {
+                    requested.add(id);
+                }
+            }
+            Map<Long, Report> found = reportQueryService.findAllById(requested).stream()
+                    .collect(Collectors.toMap(Report::getId, Function.identity()));
+
+            List<Report> reports = new ArrayList<>(found.size());
+            List<Long> missingIds = new ArrayList<>();
+            for (Long id : requested) {
+                Report report = found.get(id);
+                if (report != null) {
+                    reports.add(report);
+                } else {
+                    missingIds.add(id);
+                }
+            }
+            return new ResponseEntity<>(new BatchResponse(reports, missingIds), HttpStatus.OK);
+        } catch (Exception e) {
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
     /**
      * POST /api/reports
      * Crea un nuevo reporte en el sistema
      * 
+     * Si la petición incluye la cabecera Idempotency-Key, los reintentos con la
+     * misma clave devuelven la respuesta original sin crear un reporte duplicado.
+     * 
      * @param report Objeto Report con los datos del nuevo reporte
+     * @param idempotencyKey clave de idempotencia opcional
+     * @param principal usuario autenticado (acota la clave de idempotencia)
      * @return ResponseEntity con el reporte creado y código 201 (CREATED),
-     *         o código 400 (BAD_REQUEST) si los datos son inválidos
+     *         o código 400 (BAD_REQUEST) si los datos son inválidos,
+     *         o código 422 (UNPROCESSABLE_ENTITY) si la clave se reutiliza con otros datos
      */
     @PostMapping
-    public ResponseEntity<Report> createReport(@RequestBody Report report) {
+    public ResponseEntity<Report> createReport(@RequestBody Report report,
+                                               @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+                                               Principal principal) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return doCreateReport(report);
+        }
+        if (idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        String scopedKey = (principal != null ? principal.getName() : "") + ":" + idempotencyKey;
+        return idempotencyService.execute(scopedKey, fingerprint(report), () -> doCreateReport(report));
+    }
+
+    private ResponseEntity<Report> doCreateReport(Report report) {
         try {
             // Validaciones básicas
             if (report.getTitle() == null || report.getTitle().trim().isEmpty()) {
@@ -95,19 +306,30 @@ public class ReportController {
                 return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
             }
             
-            Report savedReport = reportRepository.save(new Report(
+            Report savedReport = reportService.createReport(new Report(
                 report.getTitle().trim(),
                 report.getDescription(),
                 report.getLocation().trim(),
                 report.getDate(),
                 report.getUserId()
             ));
+            auditJournal.record(EntityType.REPORT, savedReport.getId(), Action.CREATE, null);
             return new ResponseEntity<>(savedReport, HttpStatus.CREATED);
         } catch (Exception e) {
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
 
+    private static String fingerprint(Report report) {
+        return String.valueOf(List.of(
+                String.valueOf(report.getTitle()),
+                String.valueOf(report.getDescription()),
+                String.valueOf(report.getLocation()),
+                String.valueOf(report.getDate()),
+                String.valueOf(report.getUserId())
+        ));
+    }
+
     /**
      * PUT /api/reports/{id}
      * Actualiza un reporte existente
@@ -120,37 +342,43 @@ public class ReportController {
     @PutMapping("/{id}")
     public ResponseEntity<Report> updateReport(@PathVariable("id") Long id, @RequestBody Report report) {
         try {
-            Optional<Report> reportData = reportRepository.findById(id);
-            if (reportData.isPresent()) {
-                Report existingReport = reportData.get();
-                
-                // Validaciones básicas
-                if (report.getTitle() != null && !report.getTitle().trim().isEmpty()) {
-                    existingReport.setTitle(report.getTitle().trim());
-                }
-                if (report.getDescription() != null) {
-                    existingReport.setDescription(report.getDescription());
-                }
-                if (report.getLocation() != null && !report.getLocation().trim().isEmpty()) {
-                    existingReport.setLocation(report.getLocation().trim());
-                }
-                if (report.getDate() != null) {
-                    existingReport.setDate(report.getDate());
-                }
-                if (report.getUserId() != null) {
-                    existingReport.setUserId(report.getUserId());
-                }
-                
-                Report updatedReport = reportRepository.save(existingReport);
-                return new ResponseEntity<>(updatedReport, HttpStatus.OK);
+            Optional<Report> updatedReport = reportService.updateReport(id, report);
+            if (updatedReport.isPresent()) {
+                auditJournal.record(EntityType.REPORT, id, Action.UPDATE, changedFields(report));
+                return new ResponseEntity<>(updatedReport.get(), HttpStatus.OK);
             } else {
                 return new ResponseEntity<>(HttpStatus.NOT_FOUND);
             }
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         } catch (Exception e) {
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
 
+    /**
+     * Campos enviados en una modificación, para el diario de auditoría
+     */
+    private static String changedFields(Report changes) {
+        List<String> fields = new ArrayList<>();
+        if (changes.getTitle() != null) {
+            fields.add("title");
+        }
+        if (changes.getDescription() != null) {
+            fields.add("description");
+        }
+        if (changes.getLocation() != null) {
+            fields.add("location");
+        }
+        if (changes.getDate() != null) {
+            fields.add("date");
+        }
+        if (changes.getUserId() != null) {
+            fields.add("userId");
+        }
+        return String.join(",", fields);
+    }
+
     /**
      * DELETE /api/reports/{id}
      * Elimina un reporte del sistema
@@ -162,9 +390,8 @@ public class ReportController {
     @DeleteMapping("/{id}")
     public ResponseEntity<HttpStatus> deleteReport(@PathVariable("id") Long id) {
         try {
-            Optional<Report> reportData = reportRepository.findById(id);
-            if (reportData.isPresent()) {
-                reportRepository.deleteById(id);
+            if (reportService.deleteReport(id)) {
+                auditJournal.record(EntityType.REPORT, id, Action.DELETE, null);
                 return new ResponseEntity<>(HttpStatus.NO_CONTENT);
             } else {
                 return new ResponseEntity<>(HttpStatus.NOT_FOUND);
@@ -183,10 +410,29 @@ public class ReportController {
     @DeleteMapping
     public ResponseEntity<HttpStatus> deleteAllReports() {
         try {
-            reportRepository.deleteAll();
+            reportService.deleteAllReports();
+            auditJournal.record(EntityType.REPORT, null, Action.DELETE_ALL, null);
             return new ResponseEntity<>(HttpStatus.NO_CONTENT);
         } catch (Exception e) {
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
+
+    // DTOs para consultas por lotes
+    public static class BatchRequest {
+        private List<Long> ids;
+        public List<Long> getIds() { return ids; }
+        public void setIds(List<Long> ids) { this.ids = ids; }
+    }
+
+    public static class BatchResponse {
+        private final List<Report> reports;
+        private final List<Long> missingIds;
+        public BatchResponse(List<Report> reports, List<Long> missingIds) {
+            this.reports = reports;
+            this.missingIds = missingIds;
+        }
+        public List<Report> getReports() { return reports; }
+        public List<Long> getMissingIds() { return missingIds; }
+    }
 }
@@ -0,0 +1,33 @@
+package com.asist.controller;
+
+import com.asist.service.RuntimeMetrics;
+import com.asist.service.RuntimeMetrics.Snapshot;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * RuntimeController - Estado de la JVM y de los pools de conexiones (solo administradores)
+ *
+ * - GET /api/admin/runtime - Heap usado y retenido tras la GC, hilos, número y
+ *   tiempo de recolecciones, pausa máxima de GC desde la muestra anterior y
+ *   conexiones activas, libres y en espera de cada pool
+ */
+@RestController
+@RequestMapping("/api/admin/runtime")
+@CrossOrigin(origins = "*")
+public class RuntimeController {
+
+    @Autowired
+    private RuntimeMetrics runtimeMetrics;
+
+    @GetMapping
+    public ResponseEntity<Snapshot> getRuntime() {
+        try {
+            return new ResponseEntity<>(runtimeMetrics.sample(), HttpStatus.OK);
+        } catch (Exception e) {
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+}
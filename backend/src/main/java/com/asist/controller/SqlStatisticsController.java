@@ -0,0 +1,46 @@
+package com.asist.controller;
+
+import com.asist.service.SqlStatistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * SqlStatisticsController - Estadísticas de SQL (solo administradores)
+ *
+ * - GET /api/admin/sql-stats - Contadores de Hibernate, cargas por colección,
+ *   consultas lentas y sentencias por llamada a cada endpoint (total, media y máximo)
+ * - DELETE /api/admin/sql-stats - Pone a cero las estadísticas
+ */
+@RestController
+@RequestMapping("/api/admin/sql-stats")
+@CrossOrigin(origins = "*")
+public class SqlStatisticsController {
+
+    @Autowired
+    private SqlStatistics sqlStatistics;
+
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getStatistics() {
+        try {
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("hibernate", sqlStatistics.getSummary());
+            body.put("collections", sqlStatistics.getCollections());
+            body.put("slowQueries", sqlStatistics.getSlowQueries());
+            body.put("endpoints", sqlStatistics.getEndpoints());
+            return new ResponseEntity<>(body, HttpStatus.OK);
+        } catch (Exception e) {
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @DeleteMapping
+    public ResponseEntity<HttpStatus> resetStatistics() {
+        sqlStatistics.reset();
+        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    }
+}
@@ -0,0 +1,46 @@
+package com.asist.controller;
+
+import com.asist.service.ReportSuggestService;
+import com.asist.service.ReportSuggestService.Field;
+import com.asist.service.ReportSuggestService.Suggestion;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * SuggestController - Autocompletado de los formularios y el buscador de reportes
+ *
+ * - GET /api/reports/suggest?field=location|title&prefix=&limit=10 - Valores
+ *   existentes del campo que empiezan por el prefijo, del más usado al menos
+ *   usado, sin distinguir mayúsculas ni tildes (limit como máximo 20)
+ */
+@RestController
+@RequestMapping("/api/reports/suggest")
+@CrossOrigin(origins = "*")
+public class SuggestController {
+
+    @Autowired
+    private ReportSuggestService suggestService;
+
+    @GetMapping
+    public ResponseEntity<List<Suggestion>> suggest(
+            @RequestParam("field") String field,
+            @RequestParam(value = "prefix", defaultValue = "") String prefix,
+            @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        try {
+            if (limit < 1 || limit > ReportSuggestService.MAX_LIMIT) {
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+            Field selected = Field.valueOf(field.toUpperCase(Locale.ROOT));
+            return new ResponseEntity<>(suggestService.suggest(selected, prefix, limit), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+}
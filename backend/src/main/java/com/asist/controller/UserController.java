@@ -2,42 +2,78 @@ package com.asist.controller;
 
 import com.asist.model.User;
 import com.asist.repository.UserRepository;
+import com.asist.service.AuditJournal;
+import com.asist.service.AuditJournal.Action;
+import com.asist.service.AuditJournal.EntityType;
+import com.asist.service.RefreshTokenStore;
+import com.asist.service.ReportStatsService;
+import com.asist.service.UserService;
+import com.asist.service.UserUniquenessFilter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 /**
  * UserController - REST Controller para la gestión de usuarios
  * 
  * Proporciona endpoints REST para operaciones CRUD sobre usuarios:
- * - GET /api/users - Obtener todos los usuarios
+ * - GET /api/users?page=0&size=20 - Obtener usuarios paginados
  * - GET /api/users/{id} - Obtener usuario por ID
  * - POST /api/users - Registrar nuevo usuario
  * - PUT /api/users/{id} - Actualizar usuario existente
  * - DELETE /api/users/{id} - Eliminar usuario
+ * - GET /api/users/{id}/reports/summary - Resumen de reportes del usuario
  */
 @RestController
 @RequestMapping("/api/users")
 @CrossOrigin(origins = "*", maxAge = 3600)
 public class UserController {
 
+    // Debe coincidir con el @BatchSize de User.roles para cargar los roles de una página en una sola consulta
+    private static final int MAX_PAGE_SIZE = 100;
+
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ReportStatsService reportStatsService;
+
+    @Autowired
+    private AuditJournal auditJournal;
+
+    @Autowired
+    private UserUniquenessFilter uniquenessFilter;
+
+    @Autowired
+    private RefreshTokenStore refreshTokenStore;
+
     /**
-     * Obtener todos los usuarios
-     * GET /api/users
+     * Obtener usuarios paginados
+     * GET /api/users?page=0&size=20
      * 
-     * @return ResponseEntity con lista de todos los usuarios
+     * @param page número de página (empezando en 0)
+     * @param size tamaño de página (máximo 100)
+     * @return ResponseEntity con la página de usuarios
      */
     @GetMapping
-    public ResponseEntity<List<User>> getAllUsers() {
+    public ResponseEntity<Page<User>> getAllUsers(@RequestParam(value = "page", defaultValue = "0") int page,
+                                                  @RequestParam(value = "size", defaultValue = "20") int size) {
         try {
-            List<User> users = userRepository.findAll();
+            if (page < 0 || size < 1) {
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+            Page<User> users = userService.findPage(
+                    PageRequest.of(page, Math.min(size, MAX_PAGE_SIZE), Sort.by("id")));
             if (users.isEmpty()) {
                 return new ResponseEntity<>(HttpStatus.NO_CONTENT);
             }
@@ -57,7 +93,7 @@ public class UserController {
     @GetMapping("/{id}")
     public ResponseEntity<User> getUserById(@PathVariable("id") Long id) {
         try {
-            Optional<User> userData = userRepository.findById(id);
+            Optional<User> userData = userService.findByIdWithRoles(id);
             if (userData.isPresent()) {
                 return new ResponseEntity<>(userData.get(), HttpStatus.OK);
             } else {
@@ -78,7 +114,9 @@ public class UserController {
     @PostMapping
     public ResponseEntity<User> createUser(@RequestBody User user) {
         try {
-            User newUser = userRepository.save(new User(user.getName(), user.getEmail(), user.getPassword()));
+            User newUser = userRepository.save(new User(user.getUsername(), user.getPassword(), user.getEmail(), user.getRoles()));
+            uniquenessFilter.add(newUser.getEmail(), newUser.getUsername());
+            auditJournal.record(EntityType.USER, newUser.getId(), Action.CREATE, null);
             return new ResponseEntity<>(newUser, HttpStatus.CREATED);
         } catch (Exception e) {
             return new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR);
@@ -96,13 +134,24 @@ public class UserController {
     @PutMapping("/{id}")
     public ResponseEntity<User> updateUser(@PathVariable("id") Long id, @RequestBody User user) {
         try {
-            Optional<User> userData = userRepository.findById(id);
+            Optional<User> userData = userService.findByIdWithRoles(id);
             if (userData.isPresent()) {
                 User existingUser = userData.get();
-                existingUser.setName(user.getName());
+                String oldEmail = existingUser.getEmail();
+                String oldPassword = existingUser.getPassword();
+                existingUser.setUsername(user.getUsername());
                 existingUser.setEmail(user.getEmail());
                 existingUser.setPassword(user.getPassword());
-                return new ResponseEntity<>(userRepository.save(existingUser), HttpStatus.OK);
+                User updatedUser = userRepository.save(existingUser);
+                // Los valores anteriores quedan en el filtro como falsos positivos
+                uniquenessFilter.add(updatedUser.getEmail(), updatedUser.getUsername());
+                if (!oldEmail.equals(updatedUser.getEmail()) || !Objects.equals(oldPassword, updatedUser.getPassword())) {
+                    // Las sesiones abiertas con el email o la contraseña anteriores dejan de poder refrescarse
+                    refreshTokenStore.revokeAllForUser(oldEmail);
+                }
+                auditJournal.record(EntityType.USER, id, Action.UPDATE, null);
+                // Se devuelve la instancia ya cargada: la copia de save() puede tener los roles sin cargar
+                return new ResponseEntity<>(existingUser, HttpStatus.OK);
             } else {
                 return new ResponseEntity<>(HttpStatus.NOT_FOUND);
             }
@@ -121,8 +170,11 @@ public class UserController {
     @DeleteMapping("/{id}")
     public ResponseEntity<HttpStatus> deleteUser(@PathVariable("id") Long id) {
         try {
-            if (userRepository.existsById(id)) {
+            Optional<User> userData = userRepository.findById(id);
+            if (userData.isPresent()) {
                 userRepository.deleteById(id);
+                refreshTokenStore.revokeAllForUser(userData.get().getEmail());
+                auditJournal.record(EntityType.USER, id, Action.DELETE, null);
                 return new ResponseEntity<>(HttpStatus.NO_CONTENT);
             } else {
                 return new ResponseEntity<>(HttpStatus.NOT_FOUND);
@@ -131,4 +183,21 @@ public class UserController {
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
+
+    /**
+     * Resumen de reportes de un usuario: total, fecha del último reporte y
+     * conteos por mes y por ubicación, leídos de agregados precalculados
+     * GET /api/users/{id}/reports/summary
+     * 
+     * @param id ID del usuario
+     * @return ResponseEntity con el resumen (vacío si el usuario no tiene reportes)
+     */
+    @GetMapping("/{id}/reports/summary")
+    public ResponseEntity<ReportStatsService.ReportSummary> getReportSummary(@PathVariable("id") Long id) {
+        try {
+            return new ResponseEntity<>(reportStatsService.getSummary(id), HttpStatus.OK);
+        } catch (Exception e) {
+            return new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
 }
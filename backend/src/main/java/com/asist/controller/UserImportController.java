@@ -0,0 +1,51 @@
+package com.asist.controller;
+
+import com.asist.service.UserImportService;
+import com.asist.service.UserImportService.Format;
+import com.asist.service.UserImportService.ImportResult;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Locale;
+
+/**
+ * UserImportController - Alta masiva de usuarios (solo administradores)
+ *
+ * - POST /api/admin/users/import?format=csv|ndjson - El cuerpo es el fichero
+ *   (CSV con cabecera username,email,password[,roles] o un objeto JSON por
+ *   línea). Sin format se deduce del Content-Type (text/csv o
+ *   application/x-ndjson). Devuelve los totales y el resultado de cada fila:
+ *   CREATED con su ID, o INVALID, DUPLICATE o FAILED con el motivo.
+ */
+@RestController
+@RequestMapping("/api/admin/users")
+@CrossOrigin(origins = "*")
+public class UserImportController {
+
+    @Autowired
+    private UserImportService userImportService;
+
+    @PostMapping("/import")
+    public ResponseEntity<ImportResult> importUsers(@RequestParam(value = "format", required = false) String format,
+                                                    HttpServletRequest request) {
+        try {
+            ImportResult result = userImportService.importUsers(request.getInputStream(),
+                    formatOf(format, request.getContentType()));
+            return new ResponseEntity<>(result, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    private static Format formatOf(String format, String contentType) {
+        if (format != null) {
+            return Format.valueOf(format.toUpperCase(Locale.ROOT));
+        }
+        return contentType != null && contentType.toLowerCase(Locale.ROOT).contains("ndjson") ? Format.NDJSON : Format.CSV;
+    }
+}
@@ -0,0 +1,81 @@
+package com.asist.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Fichero adjunto a un reporte. El contenido se guarda fuera de la base de
+ * datos, direccionado por su hash SHA-256 (ficheros idénticos se guardan una vez).
+ */
+@Entity
+@Table(name = "attachments", indexes = {
+        @Index(name = "idx_attachments_report", columnList = "report_id"),
+        @Index(name = "idx_attachments_sha256", columnList = "sha256")
+})
+public class Attachment {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "report_id", nullable = false)
+    private Long reportId;
+
+    @Column(nullable = false)
+    private String fileName;
+
+    @Column(nullable = false)
+    private String contentType;
+
+    @Column(nullable = false)
+    private long size;
+
+    @Column(nullable = false, length = 64)
+    private String sha256;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    // Default constructor
+    public Attachment() {
+    }
+
+    // Constructor with parameters
+    public Attachment(Long reportId, String fileName, String contentType, long size, String sha256) {
+        this.reportId = reportId;
+        this.fileName = fileName;
+        this.contentType = contentType;
+        this.size = size;
+        this.sha256 = sha256;
+        this.createdAt = LocalDateTime.now();
+    }
+
+    // Getters
+    public Long getId() {
+        return id;
+    }
+
+    public Long getReportId() {
+        return reportId;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+}
@@ -0,0 +1,67 @@
+package com.asist.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Invalidación de una caché en memoria publicada por un nodo para los demás (en el shard 0)
+ */
+@Entity
+@Table(name = "cache_invalidations", indexes = {
+    @Index(name = "idx_cache_invalidations_created", columnList = "created_at")
+})
+public class CacheInvalidation {
+
+    // Longitud máxima de una clave; las más largas invalidan la caché entera
+    public static final int MAX_KEY_LENGTH = 255;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "node_id", nullable = false, length = 36)
+    private String nodeId;
+
+    @Column(name = "cache_name", nullable = false, length = 64)
+    private String cacheName;
+
+    // Null = toda la caché
+    @Column(name = "cache_key", length = MAX_KEY_LENGTH)
+    private String cacheKey;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    // Default constructor
+    public CacheInvalidation() {
+    }
+
+    // Constructor with parameters
+    public CacheInvalidation(String nodeId, String cacheName, String cacheKey, LocalDateTime createdAt) {
+        this.nodeId = nodeId;
+        this.cacheName = cacheName;
+        this.cacheKey = cacheKey;
+        this.createdAt = createdAt;
+    }
+
+    // Getters
+    public Long getId() {
+        return id;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public String getCacheName() {
+        return cacheName;
+    }
+
+    public String getCacheKey() {
+        return cacheKey;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+}
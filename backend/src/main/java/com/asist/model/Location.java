@@ -0,0 +1,48 @@
+package com.asist.model;
+
+import jakarta.persistence.*;
+
+/**
+ * Ubicación del diccionario de ubicaciones de reportes
+ *
+ * Cada ubicación distinta se guarda una sola vez; los reportes solo guardan su ID.
+ */
+@Entity
+@Table(name = "locations", uniqueConstraints = @UniqueConstraint(name = "uk_locations_key", columnNames = "canonical_key"))
+public class Location {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Forma normalizada (sin mayúsculas, tildes ni puntuación) usada para unificar variantes
+    @Column(name = "canonical_key", nullable = false)
+    private String canonicalKey;
+
+    // Nombre que se muestra: la primera variante registrada
+    @Column(nullable = false)
+    private String name;
+
+    // Default constructor
+    public Location() {
+    }
+
+    // Constructor with parameters
+    public Location(String canonicalKey, String name) {
+        this.canonicalKey = canonicalKey;
+        this.name = name;
+    }
+
+    // Getters
+    public Long getId() {
+        return id;
+    }
+
+    public String getCanonicalKey() {
+        return canonicalKey;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
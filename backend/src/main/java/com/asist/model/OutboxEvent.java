@@ -0,0 +1,132 @@
+package com.asist.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Evento de cambio de reportes guardado en la misma transacción que el cambio (outbox)
+ */
+@Entity
+@Table(name = "outbox_events")
+public class OutboxEvent {
+
+    public enum EventType {
+        REPORT_CREATED, REPORT_UPDATED, REPORT_DELETED, REPORTS_DELETED_ALL
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "event_type", nullable = false, length = 32)
+    private EventType eventType;
+
+    // Null en REPORTS_DELETED_ALL
+    @Column(name = "report_id")
+    private Long reportId;
+
+    @Column(name = "user_id")
+    private Long userId;
+
+    // Valores del reporte tras el cambio (los del reporte borrado en REPORT_DELETED)
+    private String title;
+
+    @Column(name = "location_id")
+    private Long locationId;
+
+    @Column(name = "report_date")
+    private LocalDateTime reportDate;
+
+    // Valores anteriores, solo en REPORT_UPDATED
+    @Column(name = "previous_user_id")
+    private Long previousUserId;
+
+    @Column(name = "previous_title")
+    private String previousTitle;
+
+    @Column(name = "previous_location_id")
+    private Long previousLocationId;
+
+    @Column(name = "previous_report_date")
+    private LocalDateTime previousReportDate;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    // Default constructor
+    public OutboxEvent() {
+    }
+
+    // Constructor with parameters
+    public OutboxEvent(EventType eventType, Long reportId, Long userId, LocalDateTime createdAt) {
+        this.eventType = eventType;
+        this.reportId = reportId;
+        this.userId = userId;
+        this.createdAt = createdAt;
+    }
+
+    public OutboxEvent(EventType eventType, Report report, LocalDateTime createdAt) {
+        this(eventType, report.getId(), report.getUserId(), createdAt);
+        this.title = report.getTitle();
+        this.locationId = report.getLocationId();
+        this.reportDate = report.getDate();
+    }
+
+    // Getters
+    public Long getId() {
+        return id;
+    }
+
+    public EventType getEventType() {
+        return eventType;
+    }
+
+    public Long getReportId() {
+        return reportId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public Long getLocationId() {
+        return locationId;
+    }
+
+    public LocalDateTime getReportDate() {
+        return reportDate;
+    }
+
+    public Long getPreviousUserId() {
+        return previousUserId;
+    }
+
+    public String getPreviousTitle() {
+        return previousTitle;
+    }
+
+    public Long getPreviousLocationId() {
+        return previousLocationId;
+    }
+
+    public LocalDateTime getPreviousReportDate() {
+        return previousReportDate;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    // Setters
+    public void setPrevious(Long userId, String title, Long locationId, LocalDateTime reportDate) {
+        this.previousUserId = userId;
+        this.previousTitle = title;
+        this.previousLocationId = locationId;
+        this.previousReportDate = reportDate;
+    }
+}
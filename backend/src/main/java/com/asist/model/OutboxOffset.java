@@ -0,0 +1,50 @@
+package com.asist.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Último evento del outbox procesado por un consumidor (en el shard de la tabla)
+ */
+@Entity
+@Table(name = "outbox_offsets")
+public class OutboxOffset {
+
+    @Id
+    @Column(length = 64)
+    private String consumer;
+
+    @Column(name = "last_event_id", nullable = false)
+    private long lastEventId;
+
+    private LocalDateTime updatedAt;
+
+    // Default constructor
+    public OutboxOffset() {
+    }
+
+    // Constructor with parameters
+    public OutboxOffset(String consumer, long lastEventId) {
+        this.consumer = consumer;
+        this.lastEventId = lastEventId;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    // Getters and Setters
+    public String getConsumer() {
+        return consumer;
+    }
+
+    public long getLastEventId() {
+        return lastEventId;
+    }
+
+    public void setLastEventId(long lastEventId) {
+        this.lastEventId = lastEventId;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+}
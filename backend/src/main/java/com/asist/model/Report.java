@@ -1,10 +1,16 @@
 package com.asist.model;
 
+import com.asist.service.LocationDictionary;
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "reports")
+@Table(name = "reports", indexes = {
+        @Index(name = "idx_reports_change_seq", columnList = "change_seq"),
+        @Index(name = "idx_reports_location_date", columnList = "location_id, date"),
+        @Index(name = "idx_reports_title", columnList = "title")
+})
+@EntityListeners(LocationDictionary.ReportListener.class)
 public class Report {
     
     @Id
@@ -17,7 +23,12 @@ public class Report {
     @Column(columnDefinition = "TEXT")
     private String description;
     
-    @Column(nullable = false)
+    // ID en el diccionario de ubicaciones (tabla locations)
+    @Column(name = "location_id")
+    private Long locationId;
+    
+    // Nombre de la ubicación; se resuelve con el diccionario y no se guarda en la tabla
+    @Transient
     private String location;
     
     @Column(nullable = false)
@@ -26,6 +37,17 @@ public class Report {
     @Column(nullable = false)
     private Long userId;
     
+    // Fecha de la última modificación
+    private LocalDateTime updatedAt;
+    
+    // Posición de la última modificación en la secuencia de cambios (sincronización delta)
+    @Column(name = "change_seq")
+    private Long changeSeq;
+    
+    // Reporte anterior del que este parece un duplicado (detectado al crearlo)
+    @Column(name = "duplicate_of")
+    private Long duplicateOf;
+    
     // Default constructor
     public Report() {
     }
@@ -72,6 +94,14 @@ public class Report {
         this.location = location;
     }
     
+    public Long getLocationId() {
+        return locationId;
+    }
+    
+    public void setLocationId(Long locationId) {
+        this.locationId = locationId;
+    }
+    
     public LocalDateTime getDate() {
         return date;
     }
@@ -88,15 +118,43 @@ public class Report {
         this.userId = userId;
     }
     
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+    
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+    
+    public Long getChangeSeq() {
+        return changeSeq;
+    }
+    
+    public void setChangeSeq(Long changeSeq) {
+        this.changeSeq = changeSeq;
+    }
+    
+    public Long getDuplicateOf() {
+        return duplicateOf;
+    }
+    
+    public void setDuplicateOf(Long duplicateOf) {
+        this.duplicateOf = duplicateOf;
+    }
+    
     @Override
     public String toString() {
         return "Report{" +
                 "id=" + id +
                 ", title='" + title + '\'' +
                 ", description='" + description + '\'' +
+                ", locationId=" + locationId +
                 ", location='" + location + '\'' +
                 ", date=" + date +
                 ", userId=" + userId +
+                ", updatedAt=" + updatedAt +
+                ", changeSeq=" + changeSeq +
+                ", duplicateOf=" + duplicateOf +
                 '}';
     }
 }
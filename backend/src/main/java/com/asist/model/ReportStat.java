@@ -0,0 +1,82 @@
+package com.asist.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Agregado de reportes por usuario, mantenido en cada escritura de reportes.
+ * Una fila TOTAL por usuario y una fila por mes (yyyy-MM) y por ubicación.
+ */
+@Entity
+@Table(name = "report_stats",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"user_id", "dimension", "bucket"}))
+public class ReportStat {
+
+    public enum Dimension {
+        TOTAL, MONTH, LOCATION
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Dimension dimension;
+
+    @Column(nullable = false)
+    private String bucket;
+
+    @Column(nullable = false)
+    private long reportCount;
+
+    // Solo en la fila TOTAL
+    private LocalDateTime lastReportDate;
+
+    // Default constructor
+    public ReportStat() {
+    }
+
+    // Constructor with parameters
+    public ReportStat(Long userId, Dimension dimension, String bucket) {
+        this.userId = userId;
+        this.dimension = dimension;
+        this.bucket = bucket;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public Dimension getDimension() {
+        return dimension;
+    }
+
+    public String getBucket() {
+        return bucket;
+    }
+
+    public long getReportCount() {
+        return reportCount;
+    }
+
+    public void setReportCount(long reportCount) {
+        this.reportCount = reportCount;
+    }
+
+    public LocalDateTime getLastReportDate() {
+        return lastReportDate;
+    }
+
+    public void setLastReportDate(LocalDateTime lastReportDate) {
+        this.lastReportDate = lastReportDate;
+    }
+}
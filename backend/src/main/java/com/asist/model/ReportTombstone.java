@@ -0,0 +1,45 @@
+package com.asist.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Marca de borrado de un reporte para la sincronización delta
+ */
+@Entity
+@Table(name = "report_tombstones", indexes = @Index(name = "idx_tombstones_change_seq", columnList = "change_seq"))
+public class ReportTombstone {
+
+    @Id
+    private Long reportId;
+
+    @Column(name = "change_seq", nullable = false)
+    private Long changeSeq;
+
+    @Column(nullable = false)
+    private LocalDateTime deletedAt;
+
+    // Default constructor
+    public ReportTombstone() {
+    }
+
+    // Constructor with parameters
+    public ReportTombstone(Long reportId, Long changeSeq, LocalDateTime deletedAt) {
+        this.reportId = reportId;
+        this.changeSeq = changeSeq;
+        this.deletedAt = deletedAt;
+    }
+
+    // Getters
+    public Long getReportId() {
+        return reportId;
+    }
+
+    public Long getChangeSeq() {
+        return changeSeq;
+    }
+
+    public LocalDateTime getDeletedAt() {
+        return deletedAt;
+    }
+}
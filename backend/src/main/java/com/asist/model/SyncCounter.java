@@ -0,0 +1,41 @@
+package com.asist.model;
+
+import jakarta.persistence.*;
+
+/**
+ * Contador con nombre persistido en base de datos (secuencia de cambios y marcas de sincronización)
+ */
+@Entity
+@Table(name = "sync_counters")
+public class SyncCounter {
+
+    @Id
+    @Column(length = 64)
+    private String name;
+
+    @Column(name = "counter_value", nullable = false)
+    private long value;
+
+    // Default constructor
+    public SyncCounter() {
+    }
+
+    // Constructor with parameters
+    public SyncCounter(String name, long value) {
+        this.name = name;
+        this.value = value;
+    }
+
+    // Getters and Setters
+    public String getName() {
+        return name;
+    }
+
+    public long getValue() {
+        return value;
+    }
+
+    public void setValue(long value) {
+        this.value = value;
+    }
+}
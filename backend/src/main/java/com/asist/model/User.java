@@ -1,6 +1,8 @@
 package com.asist.model;
 
-import javax.persistence.*;
+import jakarta.persistence.*;
+import org.hibernate.annotations.BatchSize;
+
 import java.util.Set;
 
 @Entity
@@ -20,8 +22,12 @@ public class User {
     @Column(unique = true, nullable = false)
     private String email;
 
+    // Los roles de una página de usuarios se cargan en lote (una consulta IN)
+    // en lugar de una consulta por usuario
     @ElementCollection
-    @Enumerated(EnumType.STRING)
+    @CollectionTable(name = "user_roles", joinColumns = @JoinColumn(name = "user_id"))
+    @Column(name = "role")
+    @BatchSize(size = 100)
     private Set<String> roles;
 
     // Default constructor
@@ -0,0 +1,21 @@
+package com.asist.repository;
+
+import com.asist.model.Attachment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface AttachmentRepository extends JpaRepository<Attachment, Long> {
+
+    // Find attachments of a report
+    List<Attachment> findByReportIdOrderByIdAsc(Long reportId);
+
+    // Find an attachment of a specific report
+    Optional<Attachment> findByIdAndReportId(Long id, Long reportId);
+
+    // Count attachments that share the same stored content
+    long countBySha256(String sha256);
+}
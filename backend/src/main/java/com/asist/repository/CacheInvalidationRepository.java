@@ -0,0 +1,32 @@
+package com.asist.repository;
+
+import com.asist.model.CacheInvalidation;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface CacheInvalidationRepository extends JpaRepository<CacheInvalidation, Long> {
+
+    // Find the invalidations after an ID, in ID order
+    List<CacheInvalidation> findByIdGreaterThanOrderByIdAsc(Long afterId, Pageable pageable);
+
+    // Highest invalidation ID (null when the table is empty)
+    @Query("select max(i.id) from CacheInvalidation i")
+    Long findMaxId();
+
+    // Highest ID among the invalidations older than the retention period (null when there are none)
+    @Query("select max(i.id) from CacheInvalidation i where i.createdAt < :before")
+    Long findMaxIdCreatedBefore(@Param("before") LocalDateTime before);
+
+    // Delete the invalidations up to an ID
+    @Modifying
+    @Query("delete from CacheInvalidation i where i.id <= :upToId")
+    int deleteUpTo(@Param("upToId") Long upToId);
+}
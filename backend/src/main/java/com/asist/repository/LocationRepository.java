@@ -0,0 +1,18 @@
+package com.asist.repository;
+
+import com.asist.model.Location;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface LocationRepository extends JpaRepository<Location, Long> {
+
+    // Find a location by its normalized key
+    Optional<Location> findByCanonicalKey(String canonicalKey);
+
+    // Find the locations registered after an ID
+    List<Location> findByIdGreaterThan(Long id);
+}
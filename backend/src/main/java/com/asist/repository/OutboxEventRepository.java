@@ -0,0 +1,27 @@
+package com.asist.repository;
+
+import com.asist.model.OutboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    // Find the events after an ID, in ID order
+    List<OutboxEvent> findByIdGreaterThanOrderByIdAsc(Long afterId, Pageable pageable);
+
+    // Highest event ID (null when the table is empty)
+    @Query("select max(e.id) from OutboxEvent e")
+    Long findMaxId();
+
+    // Delete the events already processed by every consumer
+    @Modifying
+    @Query("delete from OutboxEvent e where e.id <= :upToId")
+    int deleteUpTo(@Param("upToId") Long upToId);
+}
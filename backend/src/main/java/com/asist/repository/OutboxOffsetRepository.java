@@ -0,0 +1,24 @@
+package com.asist.repository;
+
+import com.asist.model.OutboxOffset;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface OutboxOffsetRepository extends JpaRepository<OutboxOffset, String> {
+
+    // Per-node offsets of a node-local consumer (keys "consumer@node")
+    List<OutboxOffset> findByConsumerStartingWith(String prefix);
+
+    // Lock an offset until the end of the transaction; serializes the nodes delivering to a shared consumer
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select o from OutboxOffset o where o.consumer = :consumer")
+    Optional<OutboxOffset> findForUpdate(@Param("consumer") String consumer);
+}
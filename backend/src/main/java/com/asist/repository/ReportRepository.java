@@ -1,11 +1,18 @@
 package com.asist.repository;
 
 import com.asist.model.Report;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ReportRepository extends JpaRepository<Report, Long> {
@@ -13,8 +20,8 @@ public interface ReportRepository extends JpaRepository<Report, Long> {
     // Find reports by user ID
     List<Report> findByUserId(Long userId);
     
-    // Find reports by location
-    List<Report> findByLocation(String location);
+    // Find reports by location ID
+    List<Report> findByLocationId(Long locationId);
     
     // Find reports by title containing specific text (case insensitive)
     List<Report> findByTitleContainingIgnoreCase(String title);
@@ -25,6 +32,95 @@ public interface ReportRepository extends JpaRepository<Report, Long> {
     // Find reports by user ID and date range
     List<Report> findByUserIdAndDateBetween(Long userId, LocalDateTime startDate, LocalDateTime endDate);
     
-    // Find reports by location and date range
-    List<Report> findByLocationAndDateBetween(String location, LocalDateTime startDate, LocalDateTime endDate);
+    // Find reports by location ID and date range
+    List<Report> findByLocationIdAndDateBetween(Long locationId, LocalDateTime startDate, LocalDateTime endDate);
+    
+    // Sorted variants, used to merge results from several shards
+    List<Report> findByLocationId(Long locationId, Sort sort);
+    
+    List<Report> findByTitleContainingIgnoreCase(String title, Sort sort);
+    
+    List<Report> findByDateBetween(LocalDateTime startDate, LocalDateTime endDate, Sort sort);
+    
+    List<Report> findByLocationIdAndDateBetween(Long locationId, LocalDateTime startDate, LocalDateTime endDate, Sort sort);
+    
+    // One page, without the count query of findAll(Pageable)
+    List<Report> findAllBy(Pageable pageable);
+    
+    // Find the most recent report of a user
+    Optional<Report> findTopByUserIdOrderByDateDesc(Long userId);
+    
+    // Report counts per user: [userId, count, max(date)]
+    @Query("select r.userId, count(r), max(r.date) from Report r group by r.userId")
+    List<Object[]> countByUser();
+    
+    // Report counts per user and month: [userId, year, month, count]
+    @Query("select r.userId, year(r.date), month(r.date), count(r) from Report r group by r.userId, year(r.date), month(r.date)")
+    List<Object[]> countByUserAndMonth();
+    
+    // Report counts per user and location: [userId, locationId, count]
+    @Query("select r.userId, r.locationId, count(r) from Report r group by r.userId, r.locationId")
+    List<Object[]> countByUserAndLocation();
+    
+    // Report counts per location and hour: [locationId, year, month, day, hour, count]
+    @Query("select r.locationId, year(r.date), month(r.date), day(r.date), hour(r.date), count(r) from Report r"
+            + " group by r.locationId, year(r.date), month(r.date), day(r.date), hour(r.date)")
+    List<Object[]> countByLocationAndHour();
+    
+    // Report counts of some locations per hour in a date range (uses idx_reports_location_date):
+    // [locationId, year, month, day, hour, count]
+    @Query("select r.locationId, year(r.date), month(r.date), day(r.date), hour(r.date), count(r) from Report r"
+            + " where r.locationId in :ids and r.date >= :from and r.date < :to"
+            + " group by r.locationId, year(r.date), month(r.date), day(r.date), hour(r.date)")
+    List<Object[]> countByLocationAndHourBetween(@Param("ids") Collection<Long> ids,
+                                                 @Param("from") LocalDateTime from,
+                                                 @Param("to") LocalDateTime to);
+    
+    // Report counts per location: [locationId, count]
+    @Query("select r.locationId, count(r) from Report r group by r.locationId")
+    List<Object[]> countByLocation();
+    
+    // Most frequent titles first: [title, count]
+    @Query("select r.title, count(r) from Report r group by r.title order by count(r) desc")
+    List<Object[]> countByTitle(Pageable pageable);
+    
+    // Report counts of the given titles: [title, count]
+    @Query("select r.title, count(r) from Report r where r.title in :titles group by r.title")
+    List<Object[]> countByTitleIn(@Param("titles") Collection<String> titles);
+    
+    // Report counts of the given locations: [locationId, count]
+    @Query("select r.locationId, count(r) from Report r where r.locationId in :ids group by r.locationId")
+    List<Object[]> countByLocationIdIn(@Param("ids") Collection<Long> ids);
+    
+    // Next chunk of reports after an ID matching the export filters (null filters match everything)
+    @Query("select r from Report r where r.id > :afterId"
+            + " and (:userId is null or r.userId = :userId)"
+            + " and (:locationId is null or r.locationId = :locationId)"
+            + " and (:startDate is null or r.date >= :startDate)"
+            + " and (:endDate is null or r.date <= :endDate)"
+            + " order by r.id")
+    List<Report> findExportChunk(@Param("afterId") Long afterId,
+                                 @Param("userId") Long userId,
+                                 @Param("locationId") Long locationId,
+                                 @Param("startDate") LocalDateTime startDate,
+                                 @Param("endDate") LocalDateTime endDate,
+                                 Pageable pageable);
+    
+    // Count reports matching the export filters (null filters match everything)
+    @Query("select count(r) from Report r where (:userId is null or r.userId = :userId)"
+            + " and (:locationId is null or r.locationId = :locationId)"
+            + " and (:startDate is null or r.date >= :startDate)"
+            + " and (:endDate is null or r.date <= :endDate)")
+    long countForExport(@Param("userId") Long userId,
+                        @Param("locationId") Long locationId,
+                        @Param("startDate") LocalDateTime startDate,
+                        @Param("endDate") LocalDateTime endDate);
+    
+    // Find reports changed after a change sequence position, in sequence order
+    List<Report> findByChangeSeqGreaterThanOrderByChangeSeqAsc(Long changeSeq, Pageable pageable);
+    
+    // Assign a change sequence position to reports that have none (created before delta sync)
+    @Modifying
+    @Query("update Report r set r.changeSeq = :changeSeq where r.changeSeq is null")
+    int assignMissingChangeSeq(@Param("changeSeq") Long changeSeq);
 }
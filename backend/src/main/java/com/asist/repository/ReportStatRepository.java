@@ -0,0 +1,29 @@
+package com.asist.repository;
+
+import com.asist.model.ReportStat;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ReportStatRepository extends JpaRepository<ReportStat, Long> {
+
+    // Find all aggregate rows of a user
+    List<ReportStat> findByUserId(Long userId);
+
+    // Find one aggregate row
+    Optional<ReportStat> findByUserIdAndDimensionAndBucket(Long userId, ReportStat.Dimension dimension, String bucket);
+
+    // Lock one aggregate row; locking the TOTAL row serializes stats updates per user
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from ReportStat s where s.userId = :userId and s.dimension = :dimension and s.bucket = :bucket")
+    Optional<ReportStat> findForUpdate(@Param("userId") Long userId,
+                                       @Param("dimension") ReportStat.Dimension dimension,
+                                       @Param("bucket") String bucket);
+}
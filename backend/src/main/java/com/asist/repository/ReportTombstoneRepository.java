@@ -0,0 +1,28 @@
+package com.asist.repository;
+
+import com.asist.model.ReportTombstone;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ReportTombstoneRepository extends JpaRepository<ReportTombstone, Long> {
+
+    // Find tombstones after a change sequence position, in sequence order
+    List<ReportTombstone> findByChangeSeqGreaterThanOrderByChangeSeqAsc(Long changeSeq, Pageable pageable);
+
+    // Highest change sequence among tombstones older than the cutoff
+    @Query("select max(t.changeSeq) from ReportTombstone t where t.deletedAt < :cutoff")
+    Long findMaxChangeSeqDeletedBefore(@Param("cutoff") LocalDateTime cutoff);
+
+    // Delete tombstones up to a change sequence position
+    @Modifying
+    @Query("delete from ReportTombstone t where t.changeSeq <= :changeSeq")
+    int deleteUpTo(@Param("changeSeq") Long changeSeq);
+}
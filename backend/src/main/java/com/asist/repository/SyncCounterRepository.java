@@ -0,0 +1,20 @@
+package com.asist.repository;
+
+import com.asist.model.SyncCounter;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface SyncCounterRepository extends JpaRepository<SyncCounter, String> {
+
+    // Lock a counter until the end of the transaction
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from SyncCounter c where c.name = :name")
+    Optional<SyncCounter> findForUpdate(@Param("name") String name);
+}
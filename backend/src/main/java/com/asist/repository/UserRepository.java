@@ -1,9 +1,13 @@
 package com.asist.repository;
 
 import com.asist.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -36,4 +40,13 @@ public interface UserRepository extends JpaRepository<User, Long> {
      * @return true if user exists, false otherwise
      */
     boolean existsByEmail(String email);
+
+    /**
+     * Find the identities of users after a given ID, in ID order
+     * @param afterId the last ID already read (0 to start)
+     * @param pageable page size (page 0)
+     * @return rows of [id, email, username]
+     */
+    @Query("select u.id, u.email, u.username from User u where u.id > :afterId order by u.id")
+    List<Object[]> findIdentities(@Param("afterId") Long afterId, Pageable pageable);
 }
@@ -0,0 +1,45 @@
+package com.asist.service;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Acciones que deben ejecutarse solo si la transacción en curso se confirma
+ *
+ * Sin transacción activa la acción se ejecuta en el momento.
+ */
+final class AfterCommit {
+
+    private AfterCommit() {
+    }
+
+    /**
+     * Ejecuta la acción tras el commit, en el hilo de la transacción
+     */
+    static void run(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * Ejecuta la acción tras el commit en otro hilo, para no retener el de
+     * la transacción ya confirmada; sin transacción, en el hilo actual
+     */
+    static void runAsync(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        run(() -> CompletableFuture.runAsync(action));
+    }
+}
@@ -0,0 +1,231 @@
+package com.asist.service;
+
+import com.asist.model.Attachment;
+import com.asist.repository.AttachmentRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Servicio de adjuntos de reportes
+ *
+ * El contenido se escribe en disco en streaming (sin cargarlo en memoria),
+ * calculando su SHA-256 durante la copia, y se guarda en
+ * {base}/ab/cd/{sha256}. Un mismo contenido subido varias veces ocupa un único
+ * fichero; se borra cuando ya ningún adjunto lo referencia.
+ */
+@Service
+public class AttachmentService {
+
+    // Bloqueos por hash para que publicar y borrar un mismo fichero no se solapen
+    private static final int LOCK_STRIPES = 64;
+
+    @Value("${asist.attachments.dir:data/attachments}")
+    private String baseDir;
+
+    @Value("${asist.attachments.max-size:52428800}") // 50 MB por defecto
+    private long maxSize;
+
+    @Autowired
+    private AttachmentRepository attachmentRepository;
+
+    @Autowired
+    private ReportShardRouter shardRouter;
+
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private Path base;
+    private Path tmp;
+
+    @PostConstruct
+    public void init() throws IOException {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        base = Paths.get(baseDir).toAbsolutePath();
+        tmp = base.resolve("tmp");
+        Files.createDirectories(tmp);
+    }
+
+    /**
+     * Guarda un adjunto leyendo el contenido en streaming
+     *
+     * @return el adjunto creado, o vacío si supera el tamaño máximo
+     */
+    public Optional<Attachment> store(Long reportId, String fileName, String contentType, InputStream content)
+            throws IOException {
+        Path upload = Files.createTempFile(tmp, "upload-", ".part");
+        try {
+            MessageDigest digest = sha256();
+            long size;
+            try (OutputStream out = new DigestOutputStream(Files.newOutputStream(upload), digest)) {
+                size = copyLimited(content, out);
+            }
+            if (size < 0) {
+                return Optional.empty();
+            }
+            String sha256 = HexFormat.of().formatHex(digest.digest());
+            synchronized (lockFor(sha256)) {
+                Path target = blobPath(sha256);
+                if (!Files.exists(target)) {
+                    Files.createDirectories(target.getParent());
+                    try {
+                        Files.move(upload, target, StandardCopyOption.ATOMIC_MOVE);
+                    } catch (FileAlreadyExistsException e) {
+                        // Otro nodo o proceso ya lo publicó: se reutiliza
+                    }
+                }
+                Attachment attachment = new Attachment(reportId, fileName, contentType, size, sha256);
+                return Optional.of(shardRouter.onShard(shardRouter.shardForReport(reportId),
+                        () -> attachmentRepository.save(attachment)));
+            }
+        } finally {
+            Files.deleteIfExists(upload);
+        }
+    }
+
+    public List<Attachment> findByReport(Long reportId) {
+        return shardRouter.onShard(shardRouter.shardForReport(reportId),
+                () -> attachmentRepository.findByReportIdOrderByIdAsc(reportId));
+    }
+
+    public Optional<Attachment> find(Long reportId, Long attachmentId) {
+        return shardRouter.onShard(shardRouter.shardForReport(reportId),
+                () -> attachmentRepository.findByIdAndReportId(attachmentId, reportId));
+    }
+
+    /**
+     * Ruta del fichero con el contenido de un adjunto
+     */
+    public Path contentPath(Attachment attachment) {
+        return blobPath(attachment.getSha256());
+    }
+
+    /**
+     * Elimina un adjunto y su contenido si ya no se usa
+     *
+     * @return true si existía
+     */
+    public boolean delete(Long reportId, Long attachmentId) {
+        Optional<Attachment> attachment = find(reportId, attachmentId);
+        if (attachment.isEmpty()) {
+            return false;
+        }
+        String sha256 = attachment.get().getSha256();
+        synchronized (lockFor(sha256)) {
+            shardRouter.onShard(shardRouter.shardForReport(reportId), () -> {
+                attachmentRepository.delete(attachment.get());
+                return null;
+            });
+            releaseIfUnreferenced(sha256);
+        }
+        return true;
+    }
+
+    /**
+     * Elimina los adjuntos de un reporte. Llamar dentro de la transacción de
+     * borrado del reporte; los ficheros se liberan tras el commit.
+     */
+    public void deleteForReport(Long reportId) {
+        List<Attachment> attachments = attachmentRepository.findByReportIdOrderByIdAsc(reportId);
+        if (attachments.isEmpty()) {
+            return;
+        }
+        attachmentRepository.deleteAllInBatch(attachments);
+        AfterCommit.runAsync(() -> attachments.stream()
+                .map(Attachment::getSha256)
+                .distinct()
+                .forEach(sha256 -> {
+                    synchronized (lockFor(sha256)) {
+                        releaseIfUnreferenced(sha256);
+                    }
+                }));
+    }
+
+    /**
+     * Elimina todos los adjuntos del shard actual. Llamar dentro de la transacción de borrado total.
+     */
+    public void deleteAllInShard() {
+        attachmentRepository.deleteAllInBatch();
+    }
+
+    /**
+     * Borra del disco el contenido que ya no referencia ningún adjunto (tras un borrado total)
+     */
+    public void releaseUnreferenced() {
+        try (Stream<Path> files = Files.walk(base)) {
+            files.filter(Files::isRegularFile)
+                    .filter(path -> !path.startsWith(tmp))
+                    .map(path -> path.getFileName().toString())
+                    .forEach(sha256 -> {
+                        synchronized (lockFor(sha256)) {
+                            releaseIfUnreferenced(sha256);
+                        }
+                    });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void releaseIfUnreferenced(String sha256) {
+        long references = shardRouter.scatter(shard -> attachmentRepository.countBySha256(sha256))
+                .stream().mapToLong(Long::longValue).sum();
+        if (references == 0) {
+            try {
+                Files.deleteIfExists(blobPath(sha256));
+            } catch (IOException e) {
+                System.err.println("No se pudo borrar el adjunto " + sha256 + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Copia hasta maxSize bytes; devuelve -1 si el contenido es más grande
+     */
+    private long copyLimited(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long total = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            total += read;
+            if (total > maxSize) {
+                return -1;
+            }
+            out.write(buffer, 0, read);
+        }
+        return total;
+    }
+
+    private Path blobPath(String sha256) {
+        return base.resolve(sha256.substring(0, 2)).resolve(sha256.substring(2, 4)).resolve(sha256);
+    }
+
+    private Object lockFor(String sha256) {
+        return locks[Math.floorMod(sha256.hashCode(), LOCK_STRIPES)];
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
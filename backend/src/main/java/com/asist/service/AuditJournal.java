@@ -0,0 +1,357 @@
+package com.asist.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Diario de auditoría de altas, modificaciones y bajas de reportes y usuarios
+ *
+ * Los registros se añaden a un fichero de segmento proyectado en memoria
+ * (una copia en el mapeo, sin llamada al sistema por registro). Un hilo en
+ * segundo plano fuerza los cambios a disco cada asist.audit.flush-interval-ms
+ * agrupando todos los registros escritos en ese intervalo. Al llenarse un
+ * segmento se abre otro; los segmentos no se borran.
+ *
+ * Formato de cada registro: longitud (int) seguida de fecha (long, ms),
+ * tipo de entidad (byte), acción (byte), ID de la entidad (long), usuario y
+ * detalle (short + UTF-8) y CRC32C del contenido. Una longitud 0 marca el
+ * final de los datos del segmento.
+ */
+@Service
+public class AuditJournal {
+
+    public enum EntityType { REPORT, USER }
+
+    public enum Action { CREATE, UPDATE, DELETE, DELETE_ALL, PASSWORD_CHANGE }
+
+    private static final String SUFFIX = ".audit";
+    private static final long NO_ID = Long.MIN_VALUE;
+    private static final int MAX_TEXT_BYTES = 1024;
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    @Value("${asist.audit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${asist.audit.dir:data/audit}")
+    private String auditDir;
+
+    @Value("${asist.audit.segment-size:16777216}") // 16 MB por defecto
+    private int segmentSize;
+
+    @Value("${asist.audit.flush-interval-ms:50}")
+    private long flushIntervalMs;
+
+    private final Object lock = new Object();
+    private Path dir;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long segmentSeq;
+    // Fecha del último registro escrito: las fechas no retroceden dentro del diario
+    private long lastTimestampMs;
+    private volatile boolean dirty;
+    private ScheduledExecutorService flusher;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        dir = Paths.get(auditDir).toAbsolutePath();
+        Files.createDirectories(dir);
+        List<Path> segments = listSegments();
+        if (segments.isEmpty()) {
+            openSegment(1, System.currentTimeMillis());
+        } else {
+            recover(segments.get(segments.size() - 1));
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "audit-journal-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        synchronized (lock) {
+            buffer.force();
+            channel.close();
+        }
+    }
+
+    /**
+     * Registra una operación hecha por el usuario autenticado en el hilo actual
+     *
+     * @param entityId ID de la entidad, o null si afecta a todas
+     * @param detail información adicional opcional (se recorta a 1 KB)
+     */
+    public void record(EntityType entityType, Long entityId, Action action, String detail) {
+        if (!enabled) {
+            return;
+        }
+        byte[] actor = truncate(currentActor());
+        byte[] text = truncate(detail != null ? detail : "");
+        int payloadLength = 8 + 1 + 1 + 8 + 2 + actor.length + 2 + text.length + 4;
+        ByteBuffer payload = ByteBuffer.allocate(4 + payloadLength);
+        payload.putInt(0); // la longitud se escribe al final, en el mapeo
+        payload.putLong(0); // la fecha se toma dentro del cerrojo
+        payload.put((byte) entityType.ordinal());
+        payload.put((byte) action.ordinal());
+        payload.putLong(entityId != null ? entityId : NO_ID);
+        payload.putShort((short) actor.length);
+        payload.put(actor);
+        payload.putShort((short) text.length);
+        payload.put(text);
+
+        synchronized (lock) {
+            try {
+                // Se deja sitio para el marcador de fin (longitud 0)
+                if (buffer.remaining() < payload.capacity() + 4) {
+                    roll();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            // Fecha y CRC dentro del cerrojo: los registros quedan en orden de fecha, como espera query
+            lastTimestampMs = Math.max(lastTimestampMs, System.currentTimeMillis());
+            payload.putLong(4, lastTimestampMs);
+            CRC32C crc = new CRC32C();
+            crc.update(payload.array(), 4, payloadLength - 4);
+            payload.putInt(payloadLength, (int) crc.getValue());
+            int position = buffer.position();
+            buffer.put(position + 4, payload.array(), 4, payloadLength);
+            // La longitud va la última: un lector nunca ve un registro a medias
+            buffer.putInt(position, payloadLength);
+            buffer.position(position + 4 + payloadLength);
+            dirty = true;
+        }
+    }
+
+    /**
+     * Busca registros por rango de fechas y, opcionalmente, por entidad
+     *
+     * @param entityType tipo de entidad, o null para todas
+     * @param entityId ID de la entidad, o null para todas
+     * @return registros en orden cronológico, como máximo limit
+     */
+    public List<AuditEntry> query(LocalDateTime from, LocalDateTime to, EntityType entityType, Long entityId, int limit)
+            throws IOException {
+        List<AuditEntry> result = new ArrayList<>();
+        if (!enabled) {
+            return result;
+        }
+        long fromMs = from != null ? from.atZone(ZONE).toInstant().toEpochMilli() : Long.MIN_VALUE;
+        long toMs = to != null ? to.atZone(ZONE).toInstant().toEpochMilli() : Long.MAX_VALUE;
+        List<Path> segments = listSegments();
+        for (int i = 0; i < segments.size() && result.size() < limit; i++) {
+            // Cada segmento empieza en la fecha de su nombre y acaba donde empieza el siguiente
+            if (startOf(segments.get(i)) > toMs) {
+                break;
+            }
+            if (i + 1 < segments.size() && startOf(segments.get(i + 1)) < fromMs) {
+                continue;
+            }
+            try (FileChannel reader = FileChannel.open(segments.get(i), StandardOpenOption.READ)) {
+                ByteBuffer data = reader.map(FileChannel.MapMode.READ_ONLY, 0, reader.size());
+                int position = 0;
+                while (result.size() < limit) {
+                    AuditEntry entry = readRecord(data, position);
+                    if (entry == null) {
+                        break;
+                    }
+                    position += 4 + data.getInt(position);
+                    long timestamp = entry.timestampMs;
+                    if (timestamp > toMs) {
+                        return result;
+                    }
+                    if (timestamp >= fromMs
+                            && (entityType == null || entityType == entry.entityType)
+                            && (entityId == null || entityId.equals(entry.entityId))) {
+                        result.add(entry);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private void flush() {
+        if (!dirty) {
+            return;
+        }
+        MappedByteBuffer current;
+        synchronized (lock) {
+            dirty = false;
+            current = buffer;
+        }
+        try {
+            current.force();
+        } catch (RuntimeException e) {
+            dirty = true;
+            System.err.println("No se pudo sincronizar el diario de auditoría: " + e.getMessage());
+        }
+    }
+
+    private void roll() throws IOException {
+        buffer.force();
+        channel.close();
+        openSegment(segmentSeq + 1, Math.max(lastTimestampMs, System.currentTimeMillis()));
+    }
+
+    private void openSegment(long seq, long startMs) throws IOException {
+        Path file = dir.resolve(String.format("%012d-%d%s", seq, startMs, SUFFIX));
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        segmentSeq = seq;
+    }
+
+    /**
+     * Reabre el último segmento y se sitúa tras el último registro válido
+     */
+    private void recover(Path last) throws IOException {
+        String name = last.getFileName().toString();
+        long seq = Long.parseLong(name.substring(0, name.indexOf('-')));
+        channel = FileChannel.open(last, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = Math.max(channel.size(), segmentSize);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        segmentSeq = seq;
+        lastTimestampMs = startOf(last);
+        int position = 0;
+        AuditEntry entry;
+        while ((entry = readRecord(buffer, position)) != null) {
+            lastTimestampMs = Math.max(lastTimestampMs, entry.timestampMs);
+            position += 4 + buffer.getInt(position);
+        }
+        if (position + 4 <= buffer.capacity() && buffer.getInt(position) != 0) {
+            // Registro incompleto tras una caída: se limpia el resto del segmento
+            for (int i = position; i < buffer.capacity(); i++) {
+                buffer.put(i, (byte) 0);
+            }
+            buffer.force();
+        }
+        buffer.position(position);
+    }
+
+    /**
+     * Lee el registro en la posición dada; null si no hay uno válido
+     */
+    private static AuditEntry readRecord(ByteBuffer data, int position) {
+        if (position + 4 > data.capacity()) {
+            return null;
+        }
+        int length = data.getInt(position);
+        int start = position + 4;
+        if (length < 26 || start + length > data.capacity()) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        data.get(start, bytes);
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, 0, length - 4);
+        ByteBuffer record = ByteBuffer.wrap(bytes);
+        if (record.getInt(length - 4) != (int) crc.getValue()) {
+            return null;
+        }
+        long timestamp = record.getLong();
+        EntityType entityType = EntityType.values()[record.get()];
+        Action action = Action.values()[record.get()];
+        long entityId = record.getLong();
+        byte[] actor = new byte[record.getShort()];
+        record.get(actor);
+        byte[] detail = new byte[record.getShort()];
+        record.get(detail);
+        return new AuditEntry(timestamp, entityType, entityId != NO_ID ? entityId : null, action,
+                new String(actor, StandardCharsets.UTF_8), new String(detail, StandardCharsets.UTF_8));
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long startOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(name.indexOf('-') + 1, name.length() - SUFFIX.length()));
+    }
+
+    private static String currentActor() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.isAuthenticated() ? authentication.getName() : "anonymous";
+    }
+
+    private static byte[] truncate(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= MAX_TEXT_BYTES) {
+            return bytes;
+        }
+        // Se recorta sin partir un carácter UTF-8
+        int end = MAX_TEXT_BYTES;
+        while (end > 0 && (bytes[end] & 0xC0) == 0x80) {
+            end--;
+        }
+        byte[] truncated = new byte[end];
+        System.arraycopy(bytes, 0, truncated, 0, end);
+        return truncated;
+    }
+
+    /**
+     * Registro del diario de auditoría
+     */
+    public static class AuditEntry {
+        private final long timestampMs;
+        private final EntityType entityType;
+        private final Long entityId;
+        private final Action action;
+        private final String actor;
+        private final String detail;
+
+        AuditEntry(long timestampMs, EntityType entityType, Long entityId, Action action, String actor, String detail) {
+            this.timestampMs = timestampMs;
+            this.entityType = entityType;
+            this.entityId = entityId;
+            this.action = action;
+            this.actor = actor;
+            this.detail = detail;
+        }
+
+        public LocalDateTime getTimestamp() { return LocalDateTime.ofInstant(Instant.ofEpochMilli(timestampMs), ZONE); }
+        public EntityType getEntityType() { return entityType; }
+        public Long getEntityId() { return entityId; }
+        public Action getAction() { return action; }
+        public String getActor() { return actor; }
+        public String getDetail() { return detail; }
+    }
+}
@@ -0,0 +1,117 @@
+package com.asist.service;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compartimento de un grupo de peticiones: límite de peticiones en curso,
+ * cola de espera acotada, tiempo máximo de espera y cupo de conexiones a la
+ * base de datos, con sus contadores.
+ */
+public class Bulkhead {
+
+    private final String name;
+    private final int maxConcurrent;
+    private final int maxQueue;
+    private final long timeoutMs;
+    private final int dbConnections;
+
+    private final Semaphore executions;
+    private final Semaphore connections;
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder connectionRejections = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+
+    public Bulkhead(String name, int maxConcurrent, int maxQueue, long timeoutMs, int dbConnections) {
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueue = maxQueue;
+        this.timeoutMs = timeoutMs;
+        this.dbConnections = dbConnections;
+        this.executions = new Semaphore(maxConcurrent, true);
+        this.connections = new Semaphore(dbConnections, true);
+    }
+
+    /**
+     * Reserva un hueco de ejecución; si no hay, espera en la cola como mucho timeoutMs
+     *
+     * @return false si la cola está llena o se agota la espera (la petición debe rechazarse)
+     */
+    public boolean tryEnter() {
+        if (executions.tryAcquire()) {
+            accepted.increment();
+            return true;
+        }
+        if (queued.incrementAndGet() > maxQueue) {
+            queued.decrementAndGet();
+            rejected.increment();
+            return false;
+        }
+        try {
+            if (executions.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS)) {
+                accepted.increment();
+                return true;
+            }
+            timedOut.increment();
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejected.increment();
+            return false;
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+    /**
+     * Libera el hueco de ejecución
+     */
+    public void exit(long elapsedNanos) {
+        completed.increment();
+        totalNanos.add(elapsedNanos);
+        executions.release();
+    }
+
+    /**
+     * Reserva una conexión del cupo del grupo, esperando como mucho timeoutMs
+     */
+    public boolean acquireConnection() {
+        try {
+            if (connections.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        connectionRejections.increment();
+        return false;
+    }
+
+    public void releaseConnection() {
+        connections.release();
+    }
+
+    public String getName() { return name; }
+    public int getMaxConcurrent() { return maxConcurrent; }
+    public int getMaxQueue() { return maxQueue; }
+    public long getTimeoutMs() { return timeoutMs; }
+    public int getDbConnections() { return dbConnections; }
+    public int getActive() { return maxConcurrent - executions.availablePermits(); }
+    public int getQueued() { return queued.get(); }
+    public int getDbConnectionsInUse() { return dbConnections - connections.availablePermits(); }
+    public long getAccepted() { return accepted.sum(); }
+    public long getRejected() { return rejected.sum(); }
+    public long getTimedOut() { return timedOut.sum(); }
+    public long getConnectionRejections() { return connectionRejections.sum(); }
+    public double getAverageLatencyMs() {
+        long count = completed.sum();
+        return count == 0 ? 0 : totalNanos.sum() / 1_000_000.0 / count;
+    }
+}
@@ -0,0 +1,131 @@
+package com.asist.service;
+
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Compartimentos (bulkheads) por grupo de rutas
+ *
+ * Autenticación, lecturas de reportes y escrituras de reportes tienen cada
+ * uno su propio límite de concurrencia, cola, espera máxima y cupo de
+ * conexiones, configurables con asist.bulkhead.{auth|report-read|report-write}.*
+ * (max-concurrent, max-queue, timeout-ms, db-connections). Una avalancha de
+ * peticiones en un grupo se rechaza con 503 en ese grupo sin ocupar los
+ * hilos ni las conexiones de los demás. El resto de rutas no se limita.
+ *
+ * Las peticiones en cola esperan ocupando un hilo de Tomcat. Al arrancar se
+ * comprueba que la suma de max-concurrent y max-queue de todos los grupos no
+ * pase de server.tomcat.threads.max: si pasara, una avalancha en los grupos
+ * dejaría sin hilos al resto de rutas y el límite de cada grupo no se
+ * llegaría a aplicar.
+ */
+@Service
+public class BulkheadRegistry {
+
+    public enum Group { AUTH, REPORT_READ, REPORT_WRITE }
+
+    private static final ThreadLocal<RequestSlot> CURRENT = new ThreadLocal<>();
+
+    private final boolean enabled;
+    private final Map<Group, Bulkhead> bulkheads = new EnumMap<>(Group.class);
+
+    public BulkheadRegistry(Environment env) {
+        this.enabled = env.getProperty("asist.bulkhead.enabled", Boolean.class, true);
+        // BCrypt es CPU: no tiene sentido más concurrencia que núcleos (con tope para caber en los hilos de Tomcat)
+        int cores = Math.min(16, Runtime.getRuntime().availableProcessors());
+        bulkheads.put(Group.AUTH, create(env, "auth", Math.max(2, cores), Math.max(4, cores * 2), 500, 2));
+        bulkheads.put(Group.REPORT_READ, create(env, "report-read", 32, 64, 1000, 5));
+        bulkheads.put(Group.REPORT_WRITE, create(env, "report-write", 16, 32, 1000, 3));
+        if (enabled) {
+            checkThreads(env.getProperty("server.tomcat.threads.max", Integer.class, 200));
+        }
+    }
+
+    /**
+     * Falla el arranque si las peticiones en curso y en cola de todos los grupos no caben en los hilos de Tomcat
+     */
+    private void checkThreads(int maxThreads) {
+        int total = 0;
+        StringBuilder detail = new StringBuilder();
+        for (Bulkhead bulkhead : bulkheads.values()) {
+            total += bulkhead.getMaxConcurrent() + bulkhead.getMaxQueue();
+            detail.append(detail.length() == 0 ? "" : ", ")
+                    .append(bulkhead.getName()).append(' ')
+                    .append(bulkhead.getMaxConcurrent()).append('+').append(bulkhead.getMaxQueue());
+        }
+        if (total > maxThreads) {
+            throw new IllegalStateException("Los compartimentos admiten " + total + " peticiones (" + detail
+                    + ") y server.tomcat.threads.max es " + maxThreads
+                    + ": reduzca asist.bulkhead.*.max-concurrent o max-queue, o aumente los hilos");
+        }
+    }
+
+    private static Bulkhead create(Environment env, String name, int maxConcurrent, int maxQueue,
+                                   long timeoutMs, int dbConnections) {
+        String prefix = "asist.bulkhead." + name + ".";
+        return new Bulkhead(name,
+                env.getProperty(prefix + "max-concurrent", Integer.class, maxConcurrent),
+                env.getProperty(prefix + "max-queue", Integer.class, maxQueue),
+                env.getProperty(prefix + "timeout-ms", Long.class, timeoutMs),
+                env.getProperty(prefix + "db-connections", Integer.class, dbConnections));
+    }
+
+    /**
+     * Grupo de una petición, o null si no pertenece a ninguno
+     */
+    public Group classify(String method, String path) {
+        if (!enabled || "OPTIONS".equals(method)) {
+            return null;
+        }
+        if (path.startsWith("/api/auth/")) {
+            return Group.AUTH;
+        }
+        if (path.equals("/api/reports") || path.startsWith("/api/reports/")) {
+            return "GET".equals(method) || "HEAD".equals(method) ? Group.REPORT_READ : Group.REPORT_WRITE;
+        }
+        return null;
+    }
+
+    public Bulkhead get(Group group) {
+        return bulkheads.get(group);
+    }
+
+    public Collection<Bulkhead> getAll() {
+        return bulkheads.values();
+    }
+
+    /**
+     * Compartimento de la petición en curso en este hilo (null si no tiene)
+     */
+    public static RequestSlot current() {
+        return CURRENT.get();
+    }
+
+    public static void bind(RequestSlot slot) {
+        CURRENT.set(slot);
+    }
+
+    public static void unbind() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Petición en curso dentro de un compartimento
+     */
+    public static class RequestSlot {
+        private final Bulkhead bulkhead;
+        private volatile boolean connectionRejected;
+
+        public RequestSlot(Bulkhead bulkhead) {
+            this.bulkhead = bulkhead;
+        }
+
+        public Bulkhead getBulkhead() { return bulkhead; }
+        public boolean isConnectionRejected() { return connectionRejected; }
+        public void markConnectionRejected() { connectionRejected = true; }
+    }
+}
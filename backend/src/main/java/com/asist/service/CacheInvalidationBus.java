@@ -0,0 +1,419 @@
+package com.asist.service;
+
+import com.asist.model.CacheInvalidation;
+import com.asist.model.SyncCounter;
+import com.asist.repository.CacheInvalidationRepository;
+import com.asist.repository.SyncCounterRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bus de invalidación de cachés en memoria entre nodos
+ *
+ * Con varias instancias detrás de un balanceador, cada una tiene sus propias
+ * estructuras en memoria (filtro de usuarios, familias de refresh tokens).
+ * Cuando un nodo las modifica publica una invalidación (nombre de caché y
+ * clave, o la caché entera) y los demás la aplican con su
+ * CacheInvalidationListener. Las estructuras derivadas de los reportes (mapa
+ * de densidad, autocompletado, índice de casi duplicados) no pasan por el
+ * bus: cada nodo las mantiene leyendo el outbox (OutboxService).
+ *
+ * Las invalidaciones se publican al confirmarse la transacción y se acumulan
+ * sin repetidos durante asist.cache-bus.flush-interval-ms; después se insertan
+ * todas en la tabla cache_invalidations del shard 0 en una sola transacción.
+ * Si una caché acumula más de asist.cache-bus.batch-size claves se publica
+ * como invalidación completa.
+ *
+ * Cada nodo lee cada asist.cache-bus.poll-interval-ms las filas posteriores a
+ * la última aplicada y entrega a cada caché sus claves agrupadas, ignorando
+ * las que ha publicado él mismo. El retraso máximo es por tanto la suma de
+ * ambos intervalos. Un ID que aún no es visible (transacción de otro nodo en
+ * curso) se espera hasta asist.cache-bus.gap-timeout-ms antes de saltarlo.
+ *
+ * Las entregas se hacen en un hilo propio, no en el del planificador: una
+ * caché lenta (p. ej. una reconstrucción) no retrasa la lectura del bus ni
+ * las demás tareas programadas, y lo que llega mientras tanto se acumula y
+ * se entrega junto al terminar.
+ *
+ * Las filas se purgan tras asist.cache-bus.retention-ms y la purga anota en
+ * sync_counters el mayor ID borrado: las filas que quedan son todas
+ * posteriores. En cada lectura se compara con la marca de agua del nodo; si
+ * es mayor se han purgado invalidaciones que el nodo no había leído y este
+ * invalida todas sus cachés. Un hueco de IDs (transacción revertida) no
+ * cuenta como pérdida, y un nodo que solo tarda en leer tampoco mientras no
+ * se purgue lo que le falta.
+ *
+ * Para probarlo en una sola máquina, todas las instancias deben compartir la
+ * base de datos (ver scripts/local-cluster.sh).
+ */
+@Service
+public class CacheInvalidationBus {
+
+    // Contador de sync_counters (shard 0) con el mayor ID de invalidación purgado
+    private static final String PURGED_UP_TO = "cache-bus.purged-up-to";
+
+    @Value("${asist.cache-bus.enabled:true}")
+    private boolean enabled;
+
+    // Identificador de este nodo; vacío = uno aleatorio en cada arranque
+    @Value("${asist.cache-bus.node-id:}")
+    private String configuredNodeId;
+
+    @Value("${asist.cache-bus.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${asist.cache-bus.gap-timeout-ms:10000}")
+    private long gapTimeoutMs;
+
+    @Value("${asist.cache-bus.retention-ms:600000}")
+    private long retentionMs;
+
+    @Autowired
+    private CacheInvalidationRepository invalidationRepository;
+
+    @Autowired
+    private SyncCounterRepository syncCounterRepository;
+
+    @Autowired
+    private ReportShardRouter shardRouter;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // Se resuelven al entregar: las cachés que publican también son oyentes
+    @Autowired
+    private ObjectProvider<CacheInvalidationListener> listeners;
+
+    private String nodeId;
+
+    // Pendientes de publicar: claves por caché y cachés invalidadas enteras
+    private final Object pendingLock = new Object();
+    private Map<String, Set<String>> pendingKeys = new HashMap<>();
+    private Set<String> pendingAll = new HashSet<>();
+
+    // Todos los IDs <= watermark están aplicados (o se han dejado de esperar); -1 = sin arrancar
+    private long watermark = -1;
+    private final Set<Long> applied = new HashSet<>();
+    private final Map<Long, Long> gaps = new HashMap<>();
+    private volatile long lastPollMillis;
+
+    // Pendientes de entregar en el hilo de entrega
+    private final Object deliveryLock = new Object();
+    private Map<String, Set<String>> deliveryKeys = new HashMap<>();
+    private Set<String> deliveryAll = new HashSet<>();
+    private boolean deliveryScheduled;
+    private ExecutorService deliveryExecutor;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder skippedGaps = new LongAdder();
+    private final LongAdder lostDetected = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        nodeId = configuredNodeId.isEmpty() ? UUID.randomUUID().toString() : configuredNodeId;
+        deliveryExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "cache-bus-delivery");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        deliveryExecutor.shutdownNow();
+    }
+
+    /**
+     * Identificador de este nodo (también lo usa el outbox para las posiciones por nodo)
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Empieza a leer a partir de la última invalidación existente. Va antes
+     * que las cargas de cachés al arrancar: lo que se publique después de
+     * cargarlas ya queda por encima de la marca de agua.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public synchronized void start() {
+        if (!enabled) {
+            return;
+        }
+        Long maxId = shardRouter.onShard(0, () -> invalidationRepository.findMaxId());
+        watermark = maxId != null ? maxId : 0;
+        lastPollMillis = System.currentTimeMillis();
+        System.out.println("Bus de invalidación de cachés iniciado: nodo " + nodeId + ", desde " + watermark);
+    }
+
+    /**
+     * Publica la invalidación de una clave de la caché (key null = toda la caché)
+     * para los demás nodos, al confirmarse la transacción en curso
+     */
+    public void publish(String cacheName, String key) {
+        if (!enabled) {
+            return;
+        }
+        AfterCommit.run(() -> {
+            synchronized (pendingLock) {
+                if (pendingAll.contains(cacheName)) {
+                    return;
+                }
+                Set<String> keys = pendingKeys.computeIfAbsent(cacheName, name -> new HashSet<>());
+                if (key == null || key.length() > CacheInvalidation.MAX_KEY_LENGTH || keys.size() >= batchSize) {
+                    pendingKeys.remove(cacheName);
+                    pendingAll.add(cacheName);
+                } else {
+                    keys.add(key);
+                }
+            }
+        });
+    }
+
+    /**
+     * Inserta las invalidaciones acumuladas en una sola transacción
+     */
+    @Scheduled(fixedDelayString = "${asist.cache-bus.flush-interval-ms:100}")
+    public void flush() {
+        Map<String, Set<String>> keys;
+        Set<String> all;
+        synchronized (pendingLock) {
+            if (pendingKeys.isEmpty() && pendingAll.isEmpty()) {
+                return;
+            }
+            keys = pendingKeys;
+            all = pendingAll;
+            pendingKeys = new HashMap<>();
+            pendingAll = new HashSet<>();
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<CacheInvalidation> rows = new ArrayList<>();
+        for (String cacheName : all) {
+            rows.add(new CacheInvalidation(nodeId, cacheName, null, now));
+        }
+        for (Map.Entry<String, Set<String>> entry : keys.entrySet()) {
+            for (String key : entry.getValue()) {
+                rows.add(new CacheInvalidation(nodeId, entry.getKey(), key, now));
+            }
+        }
+        try {
+            shardRouter.onShard(0, () -> transactionTemplate.execute(status -> invalidationRepository.saveAll(rows)));
+            published.add(rows.size());
+        } catch (Exception e) {
+            // Se reintentan en el siguiente ciclo, junto con las nuevas
+            System.err.println("No se pudieron publicar " + rows.size() + " invalidaciones de caché: " + e.getMessage());
+            requeue(keys, all);
+        }
+    }
+
+    private void requeue(Map<String, Set<String>> keys, Set<String> all) {
+        synchronized (pendingLock) {
+            pendingAll.addAll(all);
+            for (Map.Entry<String, Set<String>> entry : keys.entrySet()) {
+                if (!pendingAll.contains(entry.getKey())) {
+                    pendingKeys.computeIfAbsent(entry.getKey(), name -> new HashSet<>()).addAll(entry.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Lee las invalidaciones de los demás nodos y las pasa al hilo de entrega
+     */
+    @Scheduled(fixedDelayString = "${asist.cache-bus.poll-interval-ms:500}")
+    public synchronized void poll() {
+        if (!enabled || watermark < 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Map<String, Set<String>> keys = new HashMap<>();
+        Set<String> all = new HashSet<>();
+        long purgedUpTo = shardRouter.onShard(0, () -> syncCounterRepository.findById(PURGED_UP_TO)
+                .map(SyncCounter::getValue)
+                .orElse(0L));
+        if (purgedUpTo > watermark) {
+            // La purga ha borrado filas que este nodo no había leído
+            lostDetected.increment();
+            System.err.println("Invalidaciones de caché purgadas sin leer (" + (watermark + 1) + " a "
+                    + purgedUpTo + "): se invalidan todas las cachés");
+            for (CacheInvalidationListener listener : listeners) {
+                all.add(listener.getCacheName());
+            }
+            watermark = purgedUpTo;
+            applied.removeIf(id -> id <= purgedUpTo);
+            gaps.keySet().removeIf(id -> id <= purgedUpTo);
+        }
+        while (true) {
+            long after = watermark;
+            List<CacheInvalidation> rows = shardRouter.onShard(0,
+                    () -> invalidationRepository.findByIdGreaterThanOrderByIdAsc(after, PageRequest.of(0, batchSize)));
+            long highest = after;
+            for (CacheInvalidation row : rows) {
+                highest = row.getId();
+                if (!applied.add(row.getId()) || nodeId.equals(row.getNodeId())) {
+                    continue;
+                }
+                received.increment();
+                if (row.getCacheKey() == null) {
+                    all.add(row.getCacheName());
+                } else {
+                    keys.computeIfAbsent(row.getCacheName(), name -> new HashSet<>()).add(row.getCacheKey());
+                }
+            }
+            for (long id = after + 1; id < highest; id++) {
+                if (!applied.contains(id)) {
+                    gaps.putIfAbsent(id, now);
+                }
+            }
+            advance(now);
+            // Con un hueco pendiente no se avanza: el resto se lee en la siguiente pasada
+            if (rows.size() < batchSize || watermark == after) {
+                break;
+            }
+        }
+        lastPollMillis = now;
+        deliver(keys, all);
+    }
+
+    private void advance(long now) {
+        while (true) {
+            long next = watermark + 1;
+            if (applied.remove(next)) {
+                gaps.remove(next);
+                watermark = next;
+                continue;
+            }
+            Long missingSince = gaps.get(next);
+            if (missingSince != null && now - missingSince > gapTimeoutMs) {
+                // Transacción revertida o demasiado lenta: no se espera más
+                gaps.remove(next);
+                skippedGaps.increment();
+                watermark = next;
+                continue;
+            }
+            return;
+        }
+    }
+
+    /**
+     * Acumula las invalidaciones y, si el hilo de entrega no está ya en marcha, lo lanza
+     */
+    private void deliver(Map<String, Set<String>> keys, Set<String> all) {
+        synchronized (deliveryLock) {
+            deliveryAll.addAll(all);
+            for (Map.Entry<String, Set<String>> entry : keys.entrySet()) {
+                if (!deliveryAll.contains(entry.getKey())) {
+                    deliveryKeys.computeIfAbsent(entry.getKey(), name -> new HashSet<>()).addAll(entry.getValue());
+                }
+            }
+            for (String cacheName : deliveryAll) {
+                deliveryKeys.remove(cacheName);
+            }
+            if (deliveryScheduled || (deliveryKeys.isEmpty() && deliveryAll.isEmpty())) {
+                return;
+            }
+            deliveryScheduled = true;
+        }
+        deliveryExecutor.execute(this::drainDeliveries);
+    }
+
+    private void drainDeliveries() {
+        while (true) {
+            Map<String, Set<String>> keys;
+            Set<String> all;
+            synchronized (deliveryLock) {
+                if (deliveryKeys.isEmpty() && deliveryAll.isEmpty()) {
+                    deliveryScheduled = false;
+                    return;
+                }
+                keys = deliveryKeys;
+                all = deliveryAll;
+                deliveryKeys = new HashMap<>();
+                deliveryAll = new HashSet<>();
+            }
+            for (CacheInvalidationListener listener : listeners) {
+                String cacheName = listener.getCacheName();
+                try {
+                    if (all.contains(cacheName)) {
+                        listener.invalidateAll();
+                    } else if (keys.containsKey(cacheName)) {
+                        listener.invalidate(keys.get(cacheName));
+                    }
+                } catch (Exception e) {
+                    System.err.println("Error al invalidar la caché " + cacheName + ": " + e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Borra las invalidaciones más antiguas que el periodo de retención y
+     * anota el mayor ID borrado
+     */
+    @Scheduled(fixedDelayString = "${asist.cache-bus.purge-interval-ms:60000}")
+    public void purge() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime before = LocalDateTime.now().minusNanos(retentionMs * 1_000_000);
+        shardRouter.onShard(0, () -> transactionTemplate.execute(status -> {
+            Long upTo = invalidationRepository.findMaxIdCreatedBefore(before);
+            if (upTo == null) {
+                return 0;
+            }
+            SyncCounter purged = syncCounterRepository.findForUpdate(PURGED_UP_TO)
+                    .orElseGet(() -> new SyncCounter(PURGED_UP_TO, 0));
+            purged.setValue(Math.max(purged.getValue(), upTo));
+            syncCounterRepository.save(purged);
+            return invalidationRepository.deleteUpTo(upTo);
+        }));
+    }
+
+    /**
+     * Estado del bus en este nodo
+     */
+    public synchronized Map<String, Object> getStatus() {
+        List<String> caches = new ArrayList<>();
+        for (CacheInvalidationListener listener : listeners) {
+            caches.add(listener.getCacheName());
+        }
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        status.put("nodeId", nodeId);
+        status.put("caches", caches);
+        status.put("watermark", watermark);
+        status.put("pendingGaps", gaps.size());
+        status.put("skippedGaps", skippedGaps.sum());
+        status.put("lostDetected", lostDetected.sum());
+        status.put("published", published.sum());
+        status.put("received", received.sum());
+        status.put("lastPollAgeMs", lastPollMillis > 0 ? System.currentTimeMillis() - lastPollMillis : null);
+        return status;
+    }
+}
@@ -0,0 +1,25 @@
+package com.asist.service;
+
+import java.util.Set;
+
+/**
+ * Caché en memoria que se mantiene coherente entre nodos con CacheInvalidationBus
+ *
+ * Solo recibe las invalidaciones publicadas por otros nodos, agrupadas y sin
+ * repetidos. Puede recibir la misma clave más de una vez, así que aplicarla
+ * debe ser idempotente o tolerar el exceso (p. ej. falsos positivos).
+ */
+public interface CacheInvalidationListener {
+
+    /**
+     * Nombre único de la caché; es el que se usa al publicar
+     */
+    String getCacheName();
+
+    void invalidate(Set<String> keys);
+
+    /**
+     * Toda la caché ha podido cambiar (o se han perdido invalidaciones)
+     */
+    void invalidateAll();
+}
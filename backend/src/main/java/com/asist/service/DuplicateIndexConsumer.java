@@ -0,0 +1,73 @@
+package com.asist.service;
+
+import com.asist.model.OutboxEvent;
+import com.asist.model.OutboxEvent.EventType;
+import com.asist.model.Report;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Mantiene el índice de casi duplicados a partir de los eventos del outbox
+ *
+ * Por cada lote se leen con una consulta IN los reportes afectados y se
+ * sincroniza su entrada del índice con el estado actual: los que existen se
+ * indexan y los que ya no existen se quitan. Procesar un lote dos veces deja
+ * el mismo resultado.
+ *
+ * El índice está en la memoria de cada nodo y no lo cubre el bus de
+ * invalidación de cachés: cada nodo lee por su cuenta los eventos de todos
+ * los shards con su propia posición, y al arrancar (o si se ha quedado sin
+ * leer eventos ya purgados) reconstruye el índice desde los reportes.
+ */
+@Service
+public class DuplicateIndexConsumer implements OutboxConsumer {
+
+    @Autowired
+    private ReportDuplicateDetector duplicateDetector;
+
+    @Autowired
+    private ReportQueryService reportQueryService;
+
+    @Override
+    public String getName() {
+        return "duplicate-index";
+    }
+
+    @Override
+    public boolean isNodeLocal() {
+        return true;
+    }
+
+    @Override
+    public void rebuild() {
+        duplicateDetector.rebuild();
+    }
+
+    @Override
+    public void handle(List<OutboxEvent> events) {
+        Set<Long> changed = new LinkedHashSet<>();
+        for (OutboxEvent event : events) {
+            if (event.getEventType() == EventType.REPORTS_DELETED_ALL) {
+                // Los eventos posteriores de los demás shards pueden haberse procesado ya
+                duplicateDetector.rebuild();
+                changed.clear();
+            } else {
+                changed.add(event.getReportId());
+            }
+        }
+        if (changed.isEmpty()) {
+            return;
+        }
+        for (Report report : reportQueryService.findAllById(changed)) {
+            duplicateDetector.index(report);
+            changed.remove(report.getId());
+        }
+        for (Long deletedId : changed) {
+            duplicateDetector.remove(deletedId);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.asist.service;
+
+import com.asist.model.OutboxEvent;
+import com.asist.model.OutboxEvent.EventType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Mantiene el mapa de densidad (ReportHeatmapService) a partir de los eventos del outbox
+ *
+ * Por cada lote se reúnen las ubicaciones y días afectados (los nuevos y,
+ * en una modificación, los anteriores) y se vuelven a contar con una
+ * consulta por día. Procesar un lote dos veces deja el mismo resultado. Un
+ * borrado total reconstruye el mapa entero: los eventos posteriores de los
+ * demás shards pueden haberse procesado ya.
+ *
+ * Como el índice de casi duplicados, el mapa está en la memoria de cada
+ * nodo y cada nodo lee los eventos de todos los shards con su propia posición.
+ */
+@Service
+public class HeatmapConsumer implements OutboxConsumer {
+
+    @Autowired
+    private ReportHeatmapService heatmapService;
+
+    @Override
+    public String getName() {
+        return "heatmap";
+    }
+
+    @Override
+    public boolean isNodeLocal() {
+        return true;
+    }
+
+    @Override
+    public void rebuild() {
+        heatmapService.rebuild();
+    }
+
+    @Override
+    public void handle(List<OutboxEvent> events) {
+        Map<LocalDate, Set<Long>> changed = new HashMap<>();
+        for (OutboxEvent event : events) {
+            if (event.getEventType() == EventType.REPORTS_DELETED_ALL) {
+                heatmapService.rebuild();
+                changed.clear();
+                continue;
+            }
+            add(changed, event.getLocationId(), event.getReportDate());
+            add(changed, event.getPreviousLocationId(), event.getPreviousReportDate());
+        }
+        heatmapService.recount(changed);
+    }
+
+    private static void add(Map<LocalDate, Set<Long>> changed, Long locationId, LocalDateTime date) {
+        if (locationId != null && date != null) {
+            changed.computeIfAbsent(date.toLocalDate(), day -> new HashSet<>()).add(locationId);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.asist.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Servicio de idempotencia para peticiones con cabecera Idempotency-Key
+ *
+ * Guarda la respuesta de la primera ejecución de cada clave en un almacén
+ * acotado en tamaño y con caducidad. Los reintentos con la misma clave
+ * reciben la respuesta guardada sin volver a ejecutar la operación, y las
+ * peticiones duplicadas concurrentes esperan a la ejecución en curso.
+ *
+ * Las entradas cuya ejecución sigue en curso nunca se descartan (ni por
+ * caducidad ni por tamaño): si no, un reintento la ejecutaría otra vez. Con
+ * muchas ejecuciones en curso el almacén puede superar max-entries durante
+ * un tiempo.
+ *
+ * El almacén está en la memoria de cada nodo y no se comparte: con varias
+ * instancias detrás de un balanceador (scripts/local-cluster.sh), un
+ * reintento que llega a otro nodo vuelve a ejecutar la operación. La
+ * idempotencia solo está garantizada si el balanceador envía los reintentos
+ * de un usuario al mismo nodo.
+ */
+@Service
+public class IdempotencyService {
+
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    @Value("${asist.idempotency.ttl-ms:86400000}") // 24 horas por defecto
+    private long ttlMs;
+
+    @Value("${asist.idempotency.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${asist.idempotency.wait-timeout-ms:30000}")
+    private long waitTimeoutMs;
+
+    // Orden de inserción: las entradas más antiguas (primeras en caducar) van al principio
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    /**
+     * Ejecuta la acción una sola vez por clave
+     *
+     * @param key clave de idempotencia (ya acotada al usuario)
+     * @param fingerprint huella del contenido de la petición; si una clave se
+     *                    reutiliza con otro contenido se responde 422
+     * @param action operación a ejecutar
+     * @return respuesta de la acción, original o reproducida
+     */
+    @SuppressWarnings("unchecked")
+    public <T> ResponseEntity<T> execute(String key, String fingerprint, Supplier<ResponseEntity<T>> action) {
+        Entry entry;
+        boolean owner = false;
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            evictExpired(now);
+            entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry(fingerprint, now + ttlMs);
+                entries.put(key, entry);
+                owner = true;
+                evictOverflow();
+            }
+        }
+
+        if (!entry.fingerprint.equals(fingerprint)) {
+            return new ResponseEntity<>(HttpStatus.UNPROCESSABLE_ENTITY);
+        }
+
+        if (owner) {
+            try {
+                ResponseEntity<T> response = action.get();
+                // Los errores del servidor no se guardan para que el cliente pueda reintentar
+                if (response.getStatusCode().is5xxServerError()) {
+                    remove(key, entry);
+                }
+                entry.response.complete(response);
+                return response;
+            } catch (RuntimeException e) {
+                remove(key, entry);
+                entry.response.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        try {
+            ResponseEntity<T> original = (ResponseEntity<T>) entry.response.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+            return ResponseEntity.status(original.getStatusCode())
+                    .headers(original.getHeaders())
+                    .header(REPLAYED_HEADER, "true")
+                    .body(original.getBody());
+        } catch (TimeoutException e) {
+            // La ejecución original sigue en curso
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
+        } catch (ExecutionException e) {
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private void remove(String key, Entry entry) {
+        synchronized (entries) {
+            entries.remove(key, entry);
+        }
+    }
+
+    private void evictExpired(long now) {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next().getValue();
+            if (entry.expiresAt >= now) {
+                return;
+            }
+            if (entry.response.isDone()) {
+                it.remove();
+            }
+        }
+    }
+
+    // Solo se descartan entradas con la respuesta ya guardada, empezando por las más antiguas
+    private void evictOverflow() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (entries.size() > maxEntries && it.hasNext()) {
+            if (it.next().getValue().response.isDone()) {
+                it.remove();
+            }
+        }
+    }
+
+    private static class Entry {
+        private final String fingerprint;
+        private final long expiresAt;
+        private final CompletableFuture<ResponseEntity<?>> response = new CompletableFuture<>();
+
+        Entry(String fingerprint, long expiresAt) {
+            this.fingerprint = fingerprint;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -20,6 +20,8 @@ import java.util.function.Function;
 @Service
 public class JwtService {
 
+    private static final String FAMILY_CLAIM = "fam";
+
     @Value("${jwt.secret:404E635266556A586E3272357538782F413F4428472B4B6250645367566B5970}")
     private String secretKey;
 
@@ -65,6 +67,30 @@ public class JwtService {
         return buildToken(new HashMap<>(), userDetails, refreshExpiration);
     }
 
+    /**
+     * Genera un token de refresh ligado a una familia de rotación
+     */
+    public String generateRefreshToken(UserDetails userDetails, String familyId, String tokenId) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(FAMILY_CLAIM, familyId);
+        claims.put(Claims.ID, tokenId);
+        return buildToken(claims, userDetails, refreshExpiration);
+    }
+
+    /**
+     * Extrae la familia de rotación de un token de refresh (null si no tiene)
+     */
+    public String extractFamilyId(String token) {
+        return extractClaim(token, claims -> claims.get(FAMILY_CLAIM, String.class));
+    }
+
+    /**
+     * Extrae el identificador único (jti) del token
+     */
+    public String extractTokenId(String token) {
+        return extractClaim(token, Claims::getId);
+    }
+
     /**
      * Construye el token JWT
      */
@@ -0,0 +1,229 @@
+package com.asist.service;
+
+import com.asist.model.Location;
+import com.asist.model.Report;
+import com.asist.repository.LocationRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.PostLoad;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Diccionario de ubicaciones de reportes
+ *
+ * Cada ubicación distinta se guarda una vez en la tabla locations y los
+ * reportes solo guardan su ID (location_id), de modo que las búsquedas y
+ * agrupaciones por ubicación comparan enteros. Al registrar un reporte la
+ * ubicación se canonicaliza: las variantes que solo difieren en mayúsculas,
+ * tildes, espacios o puntuación ("Plaza Mayor", "plaza  mayor.", "PLAZA
+ * MAYOR") comparten el mismo ID y el nombre de la primera que se registró.
+ *
+ * El diccionario completo se mantiene en memoria en los dos sentidos. La
+ * tabla vive siempre en el shard 0 y cada alta usa su propia transacción,
+ * para poder registrar ubicaciones desde la transacción de otro shard.
+ *
+ * Se carga al terminar de crear los beans, antes de cualquier lectura de
+ * reportes, y al arrancar se leen las altas hechas entretanto en otros nodos.
+ * Las consultas de nombres e IDs (nameOf, find) solo miran la memoria: no
+ * abren una transacción en el shard 0 en mitad de la lectura de otro shard
+ * ni desde el listener de carga de reportes. Las altas se publican a los
+ * demás nodos (CacheInvalidationBus); hasta que llegan, una ubicación
+ * registrada en otro nodo no se encuentra y sus reportes se leen sin nombre
+ * de ubicación.
+ */
+@Service
+public class LocationDictionary implements SmartInitializingSingleton, CacheInvalidationListener {
+
+    private static final String CACHE_NAME = "locations";
+
+    @Autowired
+    private LocationRepository locationRepository;
+
+    @Autowired
+    private ReportShardRouter shardRouter;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private CacheInvalidationBus cacheBus;
+
+    private final Map<String, Long> idsByKey = new ConcurrentHashMap<>();
+    private final Map<Long, String> namesById = new ConcurrentHashMap<>();
+    private TransactionTemplate newTransaction;
+
+    @PostConstruct
+    public void init() {
+        newTransaction = new TransactionTemplate(transactionManager);
+        newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        load();
+    }
+
+    /**
+     * Carga el diccionario en memoria
+     */
+    public void load() {
+        for (Location location : shardRouter.onShard(0, () -> locationRepository.findAll())) {
+            cache(location);
+        }
+        System.out.println("Diccionario de ubicaciones cargado: " + namesById.size() + " ubicaciones");
+    }
+
+    /**
+     * Ubicaciones registradas en otros nodos entre la carga y el arranque del bus
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void catchUp() {
+        long maxId = namesById.keySet().stream().mapToLong(Long::longValue).max().orElse(0);
+        for (Location location : shardRouter.onShard(0, () -> locationRepository.findByIdGreaterThan(maxId))) {
+            cache(location);
+        }
+    }
+
+    /**
+     * ID de una ubicación, registrándola si no existe
+     */
+    public Long resolve(String name) {
+        String displayName = displayName(name);
+        String key = canonicalKey(displayName);
+        Long id = idsByKey.get(key);
+        if (id != null) {
+            return id;
+        }
+        Location location = shardRouter.onShard(0, () -> {
+            try {
+                return newTransaction.execute(status -> locationRepository.findByCanonicalKey(key)
+                        .orElseGet(() -> {
+                            Location saved = locationRepository.saveAndFlush(new Location(key, displayName));
+                            cacheBus.publish(CACHE_NAME, saved.getId().toString());
+                            return saved;
+                        }));
+            } catch (DataIntegrityViolationException e) {
+                // Otra petición la ha registrado a la vez
+                return newTransaction.execute(status -> locationRepository.findByCanonicalKey(key).orElseThrow());
+            }
+        });
+        cache(location);
+        return location.getId();
+    }
+
+    /**
+     * ID de una ubicación ya registrada, sin registrarla
+     */
+    public Optional<Long> find(String name) {
+        return Optional.ofNullable(idsByKey.get(canonicalKey(displayName(name))));
+    }
+
+    /**
+     * Nombre de una ubicación por su ID (null si no existe)
+     */
+    public String nameOf(Long id) {
+        return id == null ? null : namesById.get(id);
+    }
+
+    @Override
+    public String getCacheName() {
+        return CACHE_NAME;
+    }
+
+    /**
+     * Ubicaciones registradas en otro nodo (claves: sus IDs)
+     */
+    @Override
+    public void invalidate(Set<String> keys) {
+        List<Long> ids = new ArrayList<>();
+        for (String key : keys) {
+            ids.add(Long.valueOf(key));
+        }
+        for (Location location : shardRouter.onShard(0, () -> locationRepository.findAllById(ids))) {
+            cache(location);
+        }
+    }
+
+    @Override
+    public void invalidateAll() {
+        load();
+    }
+
+    private void cache(Location location) {
+        namesById.put(location.getId(), location.getName());
+        idsByKey.put(location.getCanonicalKey(), location.getId());
+    }
+
+    /**
+     * Nombre tal como se muestra: sin espacios repetidos ni en los extremos
+     */
+    static String displayName(String name) {
+        return name.trim().replaceAll("\\s+", " ");
+    }
+
+    /**
+     * Minúsculas, sin tildes y solo letras y dígitos separados por un espacio
+     */
+    static String canonicalKey(String name) {
+        String stripped = Normalizer.normalize(name, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT);
+        StringBuilder sb = new StringBuilder(stripped.length());
+        boolean space = true;
+        for (int i = 0; i < stripped.length(); i++) {
+            char c = stripped.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(c);
+                space = false;
+            } else if (!space) {
+                sb.append(' ');
+                space = true;
+            }
+        }
+        String key = sb.toString().trim();
+        // Ubicaciones sin letras ni dígitos: se unifican solo por mayúsculas
+        return key.isEmpty() ? name.toLowerCase(Locale.ROOT) : key;
+    }
+
+    /**
+     * Rellena el nombre de la ubicación de cada reporte leído de la base de datos
+     *
+     * Hibernate lo obtiene de Spring (ver JpaConfig). El diccionario se resuelve
+     * en la primera carga: depende de los repositorios, que se crean después
+     * que el EntityManagerFactory que instancia este listener.
+     */
+    @Component
+    public static class ReportListener {
+
+        private final ObjectProvider<LocationDictionary> dictionary;
+
+        public ReportListener(ObjectProvider<LocationDictionary> dictionary) {
+            this.dictionary = dictionary;
+        }
+
+        @PostLoad
+        public void fillLocation(Report report) {
+            if (report.getLocation() == null) {
+                report.setLocation(dictionary.getObject().nameOf(report.getLocationId()));
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.asist.service;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Migración de la columna de texto reports.location al diccionario de ubicaciones
+ *
+ * En bases creadas antes del diccionario, al arrancar se crea location_id si
+ * falta (ddl-auto solo actualiza el shard 0), se registra cada ubicación
+ * distinta, se rellena location_id y se elimina la columna antigua, shard a
+ * shard. Los reportes sin ubicación (location NULL) se quedan sin
+ * location_id. La columna solo se elimina si todos los reportes con
+ * ubicación tienen ya su location_id; si no, el arranque falla.
+ *
+ * Se ejecuta al terminar de crear los beans, antes de que arranque el
+ * servidor web y de las tareas de arranque que leen reportes. Después se
+ * reconstruyen los agregados, porque las variantes de una misma ubicación
+ * pasan a contarse juntas.
+ */
+@Service
+public class LocationMigration implements SmartInitializingSingleton {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private LocationDictionary locationDictionary;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private ReportShardRouter shardRouter;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        migrate();
+    }
+
+    public void migrate() {
+        AtomicBoolean migrated = new AtomicBoolean();
+        shardRouter.forEachShard(() -> {
+            if (hasColumn("location")) {
+                migrateShard();
+                migrated.set(true);
+            }
+        });
+        if (migrated.get()) {
+            outboxService.rebuild(ReportStatsConsumer.NAME);
+        }
+    }
+
+    private void migrateShard() {
+        if (!hasColumn("location_id")) {
+            jdbcTemplate.execute("ALTER TABLE reports ADD COLUMN location_id BIGINT");
+        }
+        // CREATE INDEX IF NOT EXISTS no existe en MySQL
+        if (!hasIndex("idx_reports_location_date")) {
+            jdbcTemplate.execute("CREATE INDEX idx_reports_location_date ON reports (location_id, date)");
+        }
+
+        List<String> names = jdbcTemplate.queryForList(
+                "SELECT DISTINCT location FROM reports WHERE location_id IS NULL AND location IS NOT NULL", String.class);
+        for (String name : names) {
+            Long locationId = locationDictionary.resolve(name);
+            jdbcTemplate.update("UPDATE reports SET location_id = ? WHERE location_id IS NULL AND location = ?",
+                    locationId, name);
+        }
+
+        Long pending = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM reports WHERE location_id IS NULL AND location IS NOT NULL", Long.class);
+        if (pending != null && pending > 0) {
+            throw new IllegalStateException("Quedan " + pending
+                    + " reportes con ubicación sin location_id; no se elimina la columna location");
+        }
+        jdbcTemplate.execute("ALTER TABLE reports DROP COLUMN location");
+        System.out.println("Ubicaciones migradas al diccionario: " + names.size() + " valores distintos");
+    }
+
+    private boolean hasColumn(String name) {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            for (String table : new String[]{"reports", "REPORTS"}) {
+                for (String column : new String[]{name.toLowerCase(), name.toUpperCase()}) {
+                    try (ResultSet rs = metaData.getColumns(null, null, table, column)) {
+                        if (rs.next()) {
+                            return true;
+                        }
+                    }
+                }
+            }
+            return false;
+        }));
+    }
+
+    private boolean hasIndex(String name) {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            for (String table : new String[]{"reports", "REPORTS"}) {
+                try (ResultSet rs = metaData.getIndexInfo(null, null, table, false, true)) {
+                    while (rs.next()) {
+                        if (name.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                            return true;
+                        }
+                    }
+                }
+            }
+            return false;
+        }));
+    }
+}
@@ -0,0 +1,45 @@
+package com.asist.service;
+
+import com.asist.model.OutboxEvent;
+
+import java.util.List;
+
+/**
+ * Consumidor de eventos del outbox de reportes
+ *
+ * Recibe los eventos de cada shard por lotes y en orden. Un consumidor
+ * compartido (el que no es local) procesa cada lote dentro de una
+ * transacción en el shard de los eventos, la misma en la que se guarda su
+ * posición: lo que escribe en ese shard se aplica exactamente una vez,
+ * aunque varios nodos lo ejecuten. Un consumidor local recibe los eventos
+ * al menos una vez: si handle lanza una excepción el lote entero se
+ * reintenta más tarde, así que su procesamiento debe ser idempotente.
+ */
+public interface OutboxConsumer {
+
+    /**
+     * Nombre único del consumidor; identifica su posición guardada
+     */
+    String getName();
+
+    void handle(List<OutboxEvent> events) throws Exception;
+
+    /**
+     * Si el consumidor mantiene estado en la memoria de cada nodo. Un
+     * consumidor local guarda una posición por nodo y, al arrancar o si el
+     * outbox ha purgado eventos que no había leído, empieza desde los últimos
+     * eventos y reconstruye su estado con rebuild().
+     */
+    default boolean isNodeLocal() {
+        return false;
+    }
+
+    /**
+     * Reconstruye el estado desde las tablas. Un consumidor local reconstruye
+     * el de todos los shards; uno compartido, solo el del shard actual, dentro
+     * de la transacción en la que se fija su posición y con las escrituras de
+     * reportes del shard bloqueadas (se llama cuando aún no tiene posición).
+     */
+    default void rebuild() {
+    }
+}
@@ -0,0 +1,473 @@
+package com.asist.service;
+
+import com.asist.model.OutboxEvent;
+import com.asist.model.OutboxEvent.EventType;
+import com.asist.model.OutboxOffset;
+import com.asist.model.Report;
+import com.asist.repository.OutboxEventRepository;
+import com.asist.repository.OutboxOffsetRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Outbox transaccional de cambios de reportes
+ *
+ * Cada alta, modificación o baja de reportes inserta un evento en la tabla
+ * outbox_events dentro de su misma transacción, con los valores del reporte
+ * que necesitan los consumidores (y los anteriores en una modificación). El
+ * trabajo derivado (agregados por usuario, mapa de densidad, autocompletado,
+ * índice de casi duplicados) lo hacen después los consumidores
+ * (OutboxConsumer) en sus propios hilos.
+ *
+ * El evento se inserta después de tomar el contador de la secuencia de
+ * cambios (ReportSyncService), que queda bloqueado hasta el commit, por lo
+ * que en cada shard los IDs de evento se hacen visibles en orden y un
+ * consumidor que avanza por ID no se salta ninguno. Ese bloqueo limita las
+ * escrituras de reportes por shard (ver ReportSyncService).
+ *
+ * Cada consumidor tiene un hilo que lee los eventos posteriores a su
+ * posición en cada shard, en lotes de asist.outbox.batch-size, y guarda la
+ * nueva posición cuando el lote se procesa sin error. Si falla, el lote se
+ * reintenta con espera exponencial (hasta asist.outbox.max-backoff-ms). Los
+ * consumidores leen a su ritmo: uno lento solo acumula retraso en la tabla,
+ * sin frenar las escrituras ni a los demás consumidores ni llenar memoria.
+ * Los eventos ya procesados por todos los consumidores se purgan
+ * periódicamente.
+ *
+ * Un consumidor compartido tiene una posición por shard para todos los
+ * nodos. Cada lote se lee y se procesa en una transacción que bloquea esa
+ * posición, así que los nodos se turnan y ningún lote se aplica dos veces.
+ * Si aún no tiene posición en un shard (al desplegarlo), al arrancar se
+ * reconstruye su estado en ese shard con las escrituras bloqueadas y se
+ * parte del último evento.
+ *
+ * Las posiciones de los consumidores con estado en memoria
+ * (OutboxConsumer.isNodeLocal) son por consumidor y nodo
+ * ("duplicate-index@nodo"). Cada nodo las renueva al menos cada cuarto de
+ * asist.outbox.node-offset-ttl-ms y la purga las tiene en cuenta; las que
+ * llevan más de ese tiempo sin renovarse son de nodos parados y se borran.
+ * Un consumidor local que encuentra su posición borrada puede haber perdido
+ * eventos y se reconstruye.
+ */
+@Service
+public class OutboxService {
+
+    @Value("${asist.outbox.batch-size:200}")
+    private int batchSize;
+
+    // Espera máxima entre lecturas cuando no hay eventos nuevos
+    @Value("${asist.outbox.poll-interval-ms:1000}")
+    private long pollIntervalMs;
+
+    @Value("${asist.outbox.initial-backoff-ms:100}")
+    private long initialBackoffMs;
+
+    @Value("${asist.outbox.max-backoff-ms:30000}")
+    private long maxBackoffMs;
+
+    @Value("${asist.outbox.node-offset-ttl-ms:600000}")
+    private long nodeOffsetTtlMs;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private OutboxOffsetRepository outboxOffsetRepository;
+
+    @Autowired
+    private ReportShardRouter shardRouter;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private List<OutboxConsumer> consumers;
+
+    @Autowired
+    private CacheInvalidationBus cacheBus;
+
+    @Autowired
+    private ReportSyncService reportSyncService;
+
+    private final List<Worker> workers = new ArrayList<>();
+    private TransactionTemplate readOnlyTransaction;
+    private ExecutorService executor;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void init() {
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        for (OutboxConsumer consumer : consumers) {
+            workers.add(new Worker(consumer, shardRouter.getShardCount()));
+        }
+    }
+
+    /**
+     * Arranca un hilo por consumidor cuando la aplicación está lista
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (workers.isEmpty()) {
+            return;
+        }
+        for (OutboxConsumer consumer : consumers) {
+            if (!consumer.isNodeLocal()) {
+                rebuildShared(consumer, true);
+            }
+        }
+        running = true;
+        executor = Executors.newFixedThreadPool(workers.size(), r -> {
+            Thread thread = new Thread(r, "outbox-relay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (Worker worker : workers) {
+            executor.submit(worker);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Registra el alta o la baja de un reporte con sus valores. Debe llamarse
+     * dentro de la transacción de escritura, después de markChanged o recordDeleted.
+     */
+    @Transactional
+    public void record(EventType type, Report report) {
+        save(new OutboxEvent(type, report, LocalDateTime.now()));
+    }
+
+    /**
+     * Registra la modificación de un reporte con sus valores nuevos y anteriores
+     */
+    @Transactional
+    public void recordUpdated(Report report, Long oldUserId, String oldTitle, Long oldLocationId,
+                              LocalDateTime oldDate) {
+        OutboxEvent event = new OutboxEvent(EventType.REPORT_UPDATED, report, LocalDateTime.now());
+        event.setPrevious(oldUserId, oldTitle, oldLocationId, oldDate);
+        save(event);
+    }
+
+    /**
+     * Registra el borrado de todos los reportes del shard actual
+     */
+    @Transactional
+    public void recordDeletedAll() {
+        save(new OutboxEvent(EventType.REPORTS_DELETED_ALL, null, null, LocalDateTime.now()));
+    }
+
+    private void save(OutboxEvent event) {
+        outboxEventRepository.save(event);
+        AfterCommit.run(this::wakeUp);
+    }
+
+    /**
+     * Reconstruye en cada shard un consumidor compartido y lo sitúa tras el último evento
+     *
+     * @throws IllegalArgumentException si no hay un consumidor compartido con ese nombre
+     */
+    public void rebuild(String consumerName) {
+        OutboxConsumer consumer = consumers.stream()
+                .filter(c -> !c.isNodeLocal() && c.getName().equals(consumerName))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Consumidor desconocido: " + consumerName));
+        rebuildShared(consumer, false);
+    }
+
+    private void rebuildShared(OutboxConsumer consumer, boolean onlyIfMissing) {
+        shardRouter.forEachShard(() -> transactionTemplate.executeWithoutResult(status -> {
+            // Sin escrituras a medias, el último evento y las tablas que lee rebuild coinciden
+            reportSyncService.lockChanges();
+            Optional<OutboxOffset> existing = outboxOffsetRepository.findForUpdate(consumer.getName());
+            if (onlyIfMissing && existing.isPresent()) {
+                return;
+            }
+            consumer.rebuild();
+            Long maxId = outboxEventRepository.findMaxId();
+            OutboxOffset offset = existing.orElseGet(() -> new OutboxOffset(consumer.getName(), 0));
+            offset.setLastEventId(maxId != null ? maxId : 0L);
+            outboxOffsetRepository.save(offset);
+            System.out.println("Consumidor de eventos " + consumer.getName() + " reconstruido hasta el evento "
+                    + offset.getLastEventId());
+        }));
+    }
+
+    /**
+     * Estado de cada consumidor: posición y eventos pendientes por shard, entregas y fallos
+     */
+    public List<ConsumerStatus> getStatus() {
+        List<Long> latest = shardRouter.scatter(shard -> {
+            Long max = outboxEventRepository.findMaxId();
+            return max != null ? max : 0L;
+        });
+        List<ConsumerStatus> status = new ArrayList<>();
+        for (Worker worker : workers) {
+            status.add(new ConsumerStatus(worker, latest));
+        }
+        return status;
+    }
+
+    /**
+     * Borra de cada shard los eventos que ya han procesado todos los consumidores
+     */
+    @Scheduled(fixedDelayString = "${asist.outbox.purge-interval-ms:60000}")
+    public void purge() {
+        shardRouter.forEachShard(() -> transactionTemplate.executeWithoutResult(status -> {
+            Long maxId = outboxEventRepository.findMaxId();
+            if (maxId == null) {
+                return;
+            }
+            long upTo = maxId;
+            LocalDateTime staleBefore = LocalDateTime.now().minusNanos(nodeOffsetTtlMs * 1_000_000);
+            for (OutboxConsumer consumer : consumers) {
+                if (!consumer.isNodeLocal()) {
+                    upTo = Math.min(upTo, outboxOffsetRepository.findById(consumer.getName())
+                            .map(OutboxOffset::getLastEventId)
+                            .orElse(0L));
+                    continue;
+                }
+                for (OutboxOffset offset : outboxOffsetRepository.findByConsumerStartingWith(consumer.getName() + "@")) {
+                    if (offset.getUpdatedAt() == null || offset.getUpdatedAt().isBefore(staleBefore)) {
+                        outboxOffsetRepository.delete(offset);
+                    } else {
+                        upTo = Math.min(upTo, offset.getLastEventId());
+                    }
+                }
+            }
+            if (upTo > 0) {
+                outboxEventRepository.deleteUpTo(upTo);
+            }
+        }));
+    }
+
+    private void wakeUp() {
+        for (Worker worker : workers) {
+            if (worker.wakeUp.availablePermits() == 0) {
+                worker.wakeUp.release();
+            }
+        }
+    }
+
+    /**
+     * Hilo de entrega de un consumidor
+     */
+    private class Worker implements Runnable {
+        private final OutboxConsumer consumer;
+        private final String offsetKey;
+        private final long[] offsets;
+        private final long[] savedAt;
+        private final Semaphore wakeUp = new Semaphore(0);
+        private final LongAdder delivered = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private volatile long backoffMs;
+        private volatile String lastError;
+        private boolean restart;
+
+        Worker(OutboxConsumer consumer, int shardCount) {
+            this.consumer = consumer;
+            this.offsetKey = consumer.isNodeLocal() ? consumer.getName() + "@" + cacheBus.getNodeId() : consumer.getName();
+            this.offsets = new long[shardCount];
+            this.savedAt = new long[shardCount];
+            this.restart = consumer.isNodeLocal();
+            Arrays.fill(offsets, -1);
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    if (restart) {
+                        restart();
+                    }
+                    boolean delivering = false;
+                    for (int shard = 0; shard < offsets.length && !restart; shard++) {
+                        delivering |= deliver(shard);
+                        if (consumer.isNodeLocal() && System.currentTimeMillis() - savedAt[shard] > nodeOffsetTtlMs / 4) {
+                            saveOffset(shard, offsets[shard]);
+                        }
+                    }
+                    backoffMs = 0;
+                    if (!delivering) {
+                        wakeUp.tryAcquire(pollIntervalMs, TimeUnit.MILLISECONDS);
+                        wakeUp.drainPermits();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    failures.increment();
+                    lastError = e.toString();
+                    backoffMs = backoffMs == 0 ? initialBackoffMs : Math.min(backoffMs * 2, maxBackoffMs);
+                    System.err.println("Error en el consumidor de eventos " + consumer.getName()
+                            + ", reintento en " + backoffMs + " ms: " + e);
+                    try {
+                        Thread.sleep(backoffMs);
+                    } catch (InterruptedException interrupted) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Consumidor local: empieza desde el último evento de cada shard y
+         * reconstruye su estado, que ya incluye los eventos anteriores
+         */
+        private void restart() {
+            for (int shard = 0; shard < offsets.length; shard++) {
+                long start = shardRouter.onShard(shard, () -> readOnlyTransaction.execute(status -> {
+                    Long max = outboxEventRepository.findMaxId();
+                    return max != null ? max : 0L;
+                }));
+                saveOffset(shard, start);
+                offsets[shard] = start;
+            }
+            consumer.rebuild();
+            restart = false;
+            System.out.println("Consumidor de eventos " + offsetKey + " reconstruido desde " + Arrays.toString(offsets));
+        }
+
+        /**
+         * Guarda la posición en el shard. Si la de un consumidor local ya no
+         * existe (la purga la ha dado por parada) se marca para reconstruirlo.
+         */
+        private void saveOffset(int shard, long lastEventId) {
+            boolean existed = shardRouter.onShard(shard, () -> transactionTemplate.execute(status -> {
+                Optional<OutboxOffset> existing = outboxOffsetRepository.findById(offsetKey);
+                OutboxOffset offset = existing.orElseGet(() -> new OutboxOffset(offsetKey, 0));
+                offset.setLastEventId(lastEventId);
+                outboxOffsetRepository.save(offset);
+                return existing.isPresent();
+            }));
+            savedAt[shard] = System.currentTimeMillis();
+            if (!existed && consumer.isNodeLocal() && offsets[shard] >= 0) {
+                restart = true;
+            }
+        }
+
+        /**
+         * Entrega el siguiente lote del shard
+         *
+         * @return true si había eventos (puede haber más)
+         */
+        private boolean deliver(int shard) throws Exception {
+            if (!consumer.isNodeLocal()) {
+                return deliverShared(shard);
+            }
+            if (offsets[shard] < 0) {
+                offsets[shard] = shardRouter.onShard(shard, () -> readOnlyTransaction.execute(status ->
+                        outboxOffsetRepository.findById(offsetKey)
+                                .map(OutboxOffset::getLastEventId)
+                                .orElse(0L)));
+            }
+            long after = offsets[shard];
+            List<OutboxEvent> batch = shardRouter.onShard(shard, () -> readOnlyTransaction.execute(status ->
+                    outboxEventRepository.findByIdGreaterThanOrderByIdAsc(after, PageRequest.of(0, batchSize))));
+            if (batch.isEmpty()) {
+                return false;
+            }
+            consumer.handle(batch);
+            long last = batch.get(batch.size() - 1).getId();
+            saveOffset(shard, last);
+            offsets[shard] = last;
+            delivered.add(batch.size());
+            return true;
+        }
+
+        /**
+         * Consumidor compartido: bloquea la posición, lee el lote y lo procesa
+         * en la misma transacción del shard
+         */
+        private boolean deliverShared(int shard) {
+            long[] result = shardRouter.onShard(shard, () -> transactionTemplate.execute(status -> {
+                OutboxOffset offset = outboxOffsetRepository.findForUpdate(offsetKey)
+                        .orElseGet(() -> new OutboxOffset(offsetKey, 0));
+                List<OutboxEvent> batch = outboxEventRepository.findByIdGreaterThanOrderByIdAsc(
+                        offset.getLastEventId(), PageRequest.of(0, batchSize));
+                if (batch.isEmpty()) {
+                    return new long[]{offset.getLastEventId(), 0};
+                }
+                try {
+                    consumer.handle(batch);
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                offset.setLastEventId(batch.get(batch.size() - 1).getId());
+                outboxOffsetRepository.save(offset);
+                return new long[]{offset.getLastEventId(), batch.size()};
+            }));
+            offsets[shard] = result[0];
+            delivered.add(result[1]);
+            return result[1] > 0;
+        }
+    }
+
+    /**
+     * Estado de un consumidor
+     */
+    public static class ConsumerStatus {
+        private final String name;
+        private final long[] offsets;
+        private final long pending;
+        private final long delivered;
+        private final long failures;
+        private final long backoffMs;
+        private final String lastError;
+
+        ConsumerStatus(Worker worker, List<Long> latest) {
+            this.name = worker.consumer.getName();
+            this.offsets = worker.offsets.clone();
+            long behind = 0;
+            for (int shard = 0; shard < offsets.length; shard++) {
+                behind += Math.max(0, latest.get(shard) - Math.max(0, offsets[shard]));
+            }
+            this.pending = behind;
+            this.delivered = worker.delivered.sum();
+            this.failures = worker.failures.sum();
+            this.backoffMs = worker.backoffMs;
+            this.lastError = worker.lastError;
+        }
+
+        public String getName() { return name; }
+        public long[] getOffsets() { return offsets; }
+        public long getPending() { return pending; }
+        public long getDelivered() { return delivered; }
+        public long getFailures() { return failures; }
+        public long getBackoffMs() { return backoffMs; }
+        public String getLastError() { return lastError; }
+    }
+}
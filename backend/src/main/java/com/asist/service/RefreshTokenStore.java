@@ -0,0 +1,349 @@
+package com.asist.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Almacén de familias de refresh tokens con rotación y detección de reutilización
+ *
+ * Cada login abre una familia; cada refresh invalida el token presentado y
+ * emite el siguiente de la misma familia. Si se presenta un token ya rotado
+ * (posible robo) se revoca la familia completa. El estado vive en memoria y
+ * se persiste en un journal local de solo escritura al final, que se
+ * reproduce y compacta al arrancar; la rotación no consulta la base de datos.
+ *
+ * Cada rotación prolonga la familia jwt.refresh-expiration, pero nunca más
+ * allá de asist.refresh-tokens.max-lifetime-ms desde el login: pasado ese
+ * plazo hay que volver a autenticarse aunque la sesión siga en uso.
+ *
+ * Las familias son de cada nodo, pero la revocación de todas las de un
+ * usuario se publica a los demás nodos (CacheInvalidationBus) para que un
+ * cambio de contraseña cierre sus sesiones en todos ellos.
+ *
+ * Como no se comparten, con varios nodos el balanceador debe enviar los
+ * refresh de una sesión al nodo que abrió su familia (sesiones persistentes,
+ * p. ej. por cookie); en otro nodo el refresh se rechaza y el usuario
+ * vuelve a hacer login. Guardarlas en la base de datos
+ * añadiría consultas a cada refresh, que se resuelve solo en memoria.
+ */
+@Service
+public class RefreshTokenStore implements CacheInvalidationListener {
+
+    private static final String CACHE_NAME = "refresh-tokens";
+
+    private static final String START = "S";
+    private static final String ROTATE = "R";
+    private static final String REVOKE = "X";
+
+    @Value("${asist.refresh-tokens.journal:data/refresh-tokens.journal}")
+    private String journalPath;
+
+    @Value("${asist.refresh-tokens.compact-threshold:100000}")
+    private int compactThreshold;
+
+    @Value("${jwt.refresh-expiration:604800000}") // 7 días por defecto
+    private long refreshExpiration;
+
+    @Value("${asist.refresh-tokens.max-lifetime-ms:2592000000}") // 30 días por defecto
+    private long maxLifetime;
+
+    @Autowired
+    private CacheInvalidationBus cacheBus;
+
+    private final Map<String, Family> families = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> familiesByUser = new ConcurrentHashMap<>();
+
+    private final Object journalLock = new Object();
+    private BufferedWriter journal;
+    private int journalEntries;
+
+    /**
+     * Reproduce el journal existente y lo compacta
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        Path path = Paths.get(journalPath);
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        if (Files.exists(path)) {
+            replay(path);
+        }
+        synchronized (journalLock) {
+            compact();
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        synchronized (journalLock) {
+            if (journal != null) {
+                journal.close();
+                journal = null;
+            }
+        }
+    }
+
+    /**
+     * Abre una nueva familia de tokens para el usuario (login o registro)
+     */
+    public Rotation startFamily(String email) {
+        String familyId = UUID.randomUUID().toString();
+        String tokenId = UUID.randomUUID().toString();
+        long now = System.currentTimeMillis();
+        long notAfter = now + maxLifetime;
+        long expiresAt = Math.min(now + refreshExpiration, notAfter);
+        families.put(familyId, new Family(email, tokenId, expiresAt, notAfter));
+        familiesByUser.computeIfAbsent(email, k -> ConcurrentHashMap.newKeySet()).add(familyId);
+        append(START, familyId, email, tokenId, Long.toString(expiresAt), Long.toString(notAfter));
+        return new Rotation(familyId, tokenId, email);
+    }
+
+    /**
+     * Rota el token presentado. Devuelve vacío si la familia no existe, ha
+     * expirado o el token ya fue usado; en este último caso revoca la familia.
+     */
+    public Optional<Rotation> rotate(String familyId, String tokenId) {
+        Family family = families.get(familyId);
+        if (family == null || tokenId == null) {
+            return Optional.empty();
+        }
+        synchronized (family) {
+            if (family.revoked || family.expiresAt < System.currentTimeMillis()) {
+                return Optional.empty();
+            }
+            if (!tokenId.equals(family.currentTokenId)) {
+                System.err.println("Reutilización de refresh token detectada, familia revocada: " + familyId);
+                revokeFamily(familyId);
+                return Optional.empty();
+            }
+            family.currentTokenId = UUID.randomUUID().toString();
+            family.expiresAt = Math.min(System.currentTimeMillis() + refreshExpiration, family.notAfter);
+            append(ROTATE, familyId, family.currentTokenId, Long.toString(family.expiresAt));
+            return Optional.of(new Rotation(familyId, family.currentTokenId, family.email));
+        }
+    }
+
+    /**
+     * Revoca una familia completa
+     */
+    public void revokeFamily(String familyId) {
+        Family family = families.remove(familyId);
+        if (family == null) {
+            return;
+        }
+        family.revoked = true;
+        Set<String> userFamilies = familiesByUser.get(family.email);
+        if (userFamilies != null) {
+            userFamilies.remove(familyId);
+        }
+        append(REVOKE, familyId);
+    }
+
+    /**
+     * Revoca todas las familias de un usuario: al cambiar su contraseña o su
+     * email y al eliminarlo
+     */
+    public void revokeAllForUser(String email) {
+        revokeLocal(email);
+        cacheBus.publish(CACHE_NAME, email);
+    }
+
+    private void revokeLocal(String email) {
+        Set<String> userFamilies = familiesByUser.remove(email);
+        if (userFamilies != null) {
+            userFamilies.forEach(this::revokeFamily);
+        }
+    }
+
+    @Override
+    public String getCacheName() {
+        return CACHE_NAME;
+    }
+
+    /**
+     * Usuarios cuyas familias se han revocado en otro nodo
+     */
+    @Override
+    public void invalidate(Set<String> emails) {
+        emails.forEach(this::revokeLocal);
+    }
+
+    /**
+     * No se sabe qué usuarios se han revocado en otros nodos: por seguridad se
+     * revocan todas las familias de este (los usuarios vuelven a hacer login)
+     */
+    @Override
+    public void invalidateAll() {
+        System.err.println("Se han podido perder revocaciones de otros nodos: se revocan todos los refresh tokens");
+        new ArrayList<>(families.keySet()).forEach(this::revokeFamily);
+    }
+
+    /**
+     * Elimina de memoria las familias expiradas y compacta el journal si ha crecido
+     */
+    @Scheduled(fixedDelayString = "${asist.refresh-tokens.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        families.entrySet().removeIf(e -> {
+            if (e.getValue().expiresAt >= now) {
+                return false;
+            }
+            Set<String> userFamilies = familiesByUser.get(e.getValue().email);
+            if (userFamilies != null) {
+                userFamilies.remove(e.getKey());
+            }
+            return true;
+        });
+        familiesByUser.values().removeIf(Set::isEmpty);
+        synchronized (journalLock) {
+            if (journalEntries > 2 * families.size()) {
+                compact();
+            }
+        }
+    }
+
+    public int activeFamilies() {
+        return families.size();
+    }
+
+    private void replay(Path path) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] f = line.split("\t");
+                try {
+                    switch (f[0]) {
+                        case START -> {
+                            long expiresAt = Long.parseLong(f[4]);
+                            // Journals anteriores sin límite absoluto: la familia no se prolonga más
+                            long notAfter = f.length > 5 ? Long.parseLong(f[5]) : expiresAt;
+                            families.put(f[1], new Family(f[2], f[3], expiresAt, notAfter));
+                            familiesByUser.computeIfAbsent(f[2], k -> ConcurrentHashMap.newKeySet()).add(f[1]);
+                        }
+                        case ROTATE -> {
+                            Family family = families.get(f[1]);
+                            if (family != null) {
+                                family.currentTokenId = f[2];
+                                family.expiresAt = Long.parseLong(f[3]);
+                            }
+                        }
+                        case REVOKE -> {
+                            Family family = families.remove(f[1]);
+                            if (family != null && familiesByUser.containsKey(family.email)) {
+                                familiesByUser.get(family.email).remove(f[1]);
+                            }
+                        }
+                        default -> { }
+                    }
+                } catch (RuntimeException e) {
+                    // Línea truncada por una parada brusca: se ignora
+                }
+            }
+        }
+    }
+
+    /**
+     * Reescribe el journal con solo las familias vivas. Llamar con journalLock.
+     */
+    private void compact() {
+        try {
+            if (journal != null) {
+                journal.close();
+            }
+            Path path = Paths.get(journalPath);
+            Path tmp = Paths.get(journalPath + ".tmp");
+            long now = System.currentTimeMillis();
+            int entries = 0;
+            try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Family> e : families.entrySet()) {
+                    Family family = e.getValue();
+                    if (family.revoked || family.expiresAt < now) {
+                        continue;
+                    }
+                    writer.write(String.join("\t", START, e.getKey(), family.email,
+                            family.currentTokenId, Long.toString(family.expiresAt), Long.toString(family.notAfter)));
+                    writer.newLine();
+                    entries++;
+                }
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            journal = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            journalEntries = entries;
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo compactar el journal de refresh tokens", e);
+        }
+    }
+
+    private void append(String... fields) {
+        synchronized (journalLock) {
+            try {
+                journal.write(String.join("\t", fields));
+                journal.newLine();
+                journal.flush();
+                if (++journalEntries > compactThreshold && journalEntries > 2 * families.size()) {
+                    compact();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se pudo escribir en el journal de refresh tokens", e);
+            }
+        }
+    }
+
+    private static class Family {
+        private final String email;
+        private volatile String currentTokenId;
+        private volatile long expiresAt;
+        private volatile boolean revoked;
+        // Límite absoluto de la familia, fijado en el login
+        private final long notAfter;
+
+        Family(String email, String currentTokenId, long expiresAt, long notAfter) {
+            this.email = email;
+            this.currentTokenId = currentTokenId;
+            this.expiresAt = expiresAt;
+            this.notAfter = notAfter;
+        }
+    }
+
+    /**
+     * Resultado de abrir o rotar una familia: identifica el siguiente refresh token
+     */
+    public static class Rotation {
+        private final String familyId;
+        private final String tokenId;
+        private final String email;
+
+        public Rotation(String familyId, String tokenId, String email) {
+            this.familyId = familyId;
+            this.tokenId = tokenId;
+            this.email = email;
+        }
+
+        public String getFamilyId() { return familyId; }
+        public String getTokenId() { return tokenId; }
+        public String getEmail() { return email; }
+    }
+}
@@ -0,0 +1,340 @@
+package com.asist.service;
+
+import com.asist.model.Report;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Detector de reportes casi duplicados (MinHash + LSH)
+ *
+ * Cada reporte se resume en una firma MinHash de 64 valores calculada sobre
+ * los 4-gramas de caracteres de su título y descripción normalizados. La
+ * firma se parte en 16 bandas de 4 valores; dos reportes son candidatos si
+ * coinciden en alguna banda dentro de la misma ubicación, de modo que solo
+ * se comparan unos pocos reportes en lugar de todos. Entre los candidatos
+ * dentro de la ventana de tiempo se elige el de mayor similitud estimada
+ * si supera asist.duplicates.threshold.
+ *
+ * El índice vive en memoria, solo guarda reportes de la ventana de tiempo y
+ * como mucho asist.duplicates.max-entries (se descartan los más antiguos).
+ * Lo reconstruye DuplicateIndexConsumer al arrancar y cuando deja de tener
+ * todos los eventos del outbox.
+ */
+@Service
+public class ReportDuplicateDetector {
+
+    private static final int NUM_HASHES = 64;
+    private static final int BANDS = 16;
+    private static final int ROWS = NUM_HASHES / BANDS;
+    private static final int SHINGLE = 4;
+    // Solo se usa el principio de textos muy largos
+    private static final int MAX_TEXT = 4000;
+
+    @Value("${asist.duplicates.enabled:true}")
+    private boolean enabled;
+
+    @Value("${asist.duplicates.threshold:0.6}")
+    private double threshold;
+
+    @Value("${asist.duplicates.window-hours:72}")
+    private long windowHours;
+
+    @Value("${asist.duplicates.max-entries:50000}")
+    private int maxEntries;
+
+    @Autowired
+    private ReportQueryService reportQueryService;
+
+    private final long[] seeds = new long[NUM_HASHES];
+
+    // Orden de inserción: los primeros son los más antiguos en salir
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>();
+    private final Map<Long, List<Long>> buckets = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public ReportDuplicateDetector() {
+        // Semilla fija: las firmas no dependen del arranque
+        SplittableRandom random = new SplittableRandom(0x5DEECE66DL);
+        for (int i = 0; i < NUM_HASHES; i++) {
+            seeds[i] = random.nextLong();
+        }
+    }
+
+    /**
+     * Busca un reporte anterior casi idéntico en la misma ubicación y ventana de tiempo
+     *
+     * @return ID del duplicado más parecido, o vacío si no hay ninguno
+     */
+    public Optional<Long> findDuplicate(Report report) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        int[] signature = signature(report);
+        if (signature == null) {
+            return Optional.empty();
+        }
+        long location = locationKey(report);
+        LocalDateTime date = dateOf(report);
+        Duration window = Duration.ofHours(windowHours);
+
+        lock.readLock().lock();
+        try {
+            Set<Long> candidates = new HashSet<>();
+            for (int band = 0; band < BANDS; band++) {
+                List<Long> ids = buckets.get(bandKey(location, band, signature));
+                if (ids != null) {
+                    candidates.addAll(ids);
+                }
+            }
+            Long best = null;
+            double bestSimilarity = 0;
+            for (Long id : candidates) {
+                Entry entry = entries.get(id);
+                if (entry == null || entry.location != location || id.equals(report.getId())
+                        || Duration.between(entry.date, date).abs().compareTo(window) > 0) {
+                    continue;
+                }
+                double similarity = similarity(signature, entry.signature);
+                // A igual similitud se enlaza con el más antiguo
+                if (similarity >= threshold && (best == null || similarity > bestSimilarity
+                        || (similarity == bestSimilarity && id < best))) {
+                    best = id;
+                    bestSimilarity = similarity;
+                }
+            }
+            return Optional.ofNullable(best);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Añade o actualiza un reporte en el índice
+     */
+    public void index(Report report) {
+        if (!enabled || report.getId() == null) {
+            return;
+        }
+        int[] signature = signature(report);
+        LocalDateTime date = dateOf(report);
+        lock.writeLock().lock();
+        try {
+            removeLocked(report.getId());
+            if (signature == null || date.isBefore(LocalDateTime.now().minusHours(windowHours))) {
+                return;
+            }
+            Entry entry = new Entry(report.getId(), locationKey(report), date, signature);
+            entries.put(entry.id, entry);
+            for (int band = 0; band < BANDS; band++) {
+                buckets.computeIfAbsent(bandKey(entry.location, band, signature), key -> new ArrayList<>(2))
+                        .add(entry.id);
+            }
+            evictLocked();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Quita un reporte del índice
+     */
+    public void remove(Long reportId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(reportId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Vacía el índice (tras borrar todos los reportes)
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            entries.clear();
+            buckets.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Reconstruye el índice con los reportes de la ventana de tiempo
+     */
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        clear();
+        LocalDateTime now = LocalDateTime.now();
+        for (Report report : reportQueryService.findByDateBetween(now.minusHours(windowHours), now.plusYears(1))) {
+            index(report);
+        }
+    }
+
+    private void removeLocked(Long reportId) {
+        Entry entry = entries.remove(reportId);
+        if (entry == null) {
+            return;
+        }
+        for (int band = 0; band < BANDS; band++) {
+            long key = bandKey(entry.location, band, entry.signature);
+            List<Long> ids = buckets.get(key);
+            if (ids != null) {
+                ids.remove(reportId);
+                if (ids.isEmpty()) {
+                    buckets.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Descarta las entradas fuera de la ventana y las que exceden el máximo
+     */
+    private void evictLocked() {
+        LocalDateTime oldest = LocalDateTime.now().minusHours(windowHours);
+        Iterator<Entry> iterator = entries.values().iterator();
+        List<Long> expired = new ArrayList<>();
+        int excess = entries.size() - maxEntries;
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (excess > 0) {
+                excess--;
+            } else if (!entry.date.isBefore(oldest)) {
+                break;
+            }
+            expired.add(entry.id);
+        }
+        for (Long id : expired) {
+            removeLocked(id);
+        }
+    }
+
+    /**
+     * Firma MinHash de los 4-gramas del texto normalizado; null si no hay texto
+     */
+    private int[] signature(Report report) {
+        String text = normalize((report.getTitle() != null ? report.getTitle() : "") + " "
+                + (report.getDescription() != null ? report.getDescription() : ""));
+        if (text.isEmpty()) {
+            return null;
+        }
+        int[] signature = new int[NUM_HASHES];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        int last = Math.max(0, text.length() - SHINGLE);
+        for (int start = 0; start <= last; start++) {
+            long shingle = hash(text, start, Math.min(text.length(), start + SHINGLE));
+            for (int i = 0; i < NUM_HASHES; i++) {
+                int value = (int) (mix(shingle ^ seeds[i]) >>> 33);
+                if (value < signature[i]) {
+                    signature[i] = value;
+                }
+            }
+        }
+        return signature;
+    }
+
+    private static double similarity(int[] a, int[] b) {
+        int same = 0;
+        for (int i = 0; i < NUM_HASHES; i++) {
+            if (a[i] == b[i]) {
+                same++;
+            }
+        }
+        return (double) same / NUM_HASHES;
+    }
+
+    private static long bandKey(long location, int band, int[] signature) {
+        long h = mix(location + band);
+        for (int i = band * ROWS; i < (band + 1) * ROWS; i++) {
+            h = mix(h ^ signature[i]);
+        }
+        return h;
+    }
+
+    private static long locationKey(Report report) {
+        return report.getLocationId() != null ? report.getLocationId() : 0L;
+    }
+
+    /**
+     * Minúsculas, sin tildes, solo letras y dígitos separados por un espacio
+     */
+    private static String normalize(String text) {
+        if (text.length() > MAX_TEXT) {
+            text = text.substring(0, MAX_TEXT);
+        }
+        String stripped = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT);
+        StringBuilder sb = new StringBuilder(stripped.length());
+        boolean space = true;
+        for (int i = 0; i < stripped.length(); i++) {
+            char c = stripped.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(c);
+                space = false;
+            } else if (!space) {
+                sb.append(' ');
+                space = true;
+            }
+        }
+        int length = sb.length();
+        if (length > 0 && sb.charAt(length - 1) == ' ') {
+            sb.setLength(length - 1);
+        }
+        return sb.toString();
+    }
+
+    private static long hash(String text, int start, int end) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = start; i < end; i++) {
+            h = (h ^ text.charAt(i)) * 0x100000001b3L;
+        }
+        return h;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static LocalDateTime dateOf(Report report) {
+        return report.getDate() != null ? report.getDate() : LocalDateTime.now();
+    }
+
+    private static class Entry {
+        final Long id;
+        final long location;
+        final LocalDateTime date;
+        final int[] signature;
+
+        Entry(Long id, long location, LocalDateTime date, int[] signature) {
+            this.id = id;
+            this.location = location;
+            this.date = date;
+            this.signature = signature;
+        }
+    }
+}
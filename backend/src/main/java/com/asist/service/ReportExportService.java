@@ -0,0 +1,475 @@
+package com.asist.service;
+
+import com.asist.model.Report;
+import com.asist.repository.ReportRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Servicio de exportación de reportes en segundo plano (CSV o XLSX)
+ *
+ * Cada exportación es un trabajo que se ejecuta en un pool acotado de hilos
+ * de baja prioridad. Los reportes se leen por bloques con paginación por ID
+ * (cada bloque en su propia transacción de solo lectura, así que no se
+ * mantiene una conexión durante todo el trabajo) y se escriben en un
+ * fichero temporal, que pasa a estar disponible al terminar.
+ *
+ * Los trabajos se guardan en memoria y caducan (junto con su fichero)
+ * pasado asist.exports.ttl-ms desde que terminan.
+ */
+@Service
+public class ReportExportService {
+
+    public enum Format { CSV, XLSX }
+
+    public enum Status { QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED }
+
+    private static final String[] COLUMNS = {"id", "title", "description", "location", "date", "userId", "updatedAt"};
+
+    @Value("${asist.exports.dir:data/exports}")
+    private String exportDir;
+
+    @Value("${asist.exports.workers:2}")
+    private int workers;
+
+    @Value("${asist.exports.queue-capacity:20}")
+    private int queueCapacity;
+
+    @Value("${asist.exports.max-active-per-user:2}")
+    private int maxActivePerUser;
+
+    @Value("${asist.exports.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${asist.exports.ttl-ms:86400000}") // 24 horas por defecto
+    private long ttlMs;
+
+    @Autowired
+    private ReportRepository reportRepository;
+
+    @Autowired
+    private ReportShardRouter shardRouter;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private LocationDictionary locationDictionary;
+
+    private final Map<String, ExportJob> jobs = new ConcurrentHashMap<>();
+    private ThreadPoolExecutor executor;
+    private TransactionTemplate readOnlyTransaction;
+    private Path dir;
+
+    @PostConstruct
+    public void init() throws IOException {
+        dir = Paths.get(exportDir).toAbsolutePath();
+        Files.createDirectories(dir);
+        // Los trabajos no sobreviven a un reinicio: sus ficheros quedan huérfanos
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".part") || name.endsWith(".csv") || name.endsWith(".xlsx")) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+
+        AtomicInteger threads = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread thread = new Thread(r, "report-export-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    // Que las exportaciones no compitan con las peticiones de la API
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Encola una exportación
+     *
+     * @return el trabajo creado, o vacío si el usuario ya tiene demasiadas
+     *         exportaciones activas o la cola está llena
+     */
+    public Optional<ExportJob> submit(String owner, ExportRequest request) {
+        ExportJob job = new ExportJob(UUID.randomUUID().toString(), owner, request);
+        synchronized (jobs) {
+            long active = jobs.values().stream()
+                    .filter(existing -> existing.owner.equals(owner) && !existing.isFinished())
+                    .count();
+            if (active >= maxActivePerUser) {
+                return Optional.empty();
+            }
+            jobs.put(job.id, job);
+        }
+        try {
+            executor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            return Optional.empty();
+        }
+        return Optional.of(job);
+    }
+
+    /**
+     * Obtiene un trabajo; solo es visible para quien lo creó
+     */
+    public Optional<ExportJob> find(String owner, String id) {
+        ExportJob job = jobs.get(id);
+        return job != null && job.owner.equals(owner) ? Optional.of(job) : Optional.empty();
+    }
+
+    /**
+     * Cancela un trabajo en curso o elimina uno terminado junto con su fichero
+     *
+     * @return true si existía
+     */
+    public boolean cancel(String owner, String id) {
+        Optional<ExportJob> job = find(owner, id);
+        if (job.isEmpty()) {
+            return false;
+        }
+        job.get().cancelled = true;
+        if (job.get().isFinished()) {
+            discard(job.get());
+        }
+        return true;
+    }
+
+    /**
+     * Fichero de un trabajo terminado
+     */
+    public Path filePath(ExportJob job) {
+        return dir.resolve(job.id + "." + job.getFormat().name().toLowerCase());
+    }
+
+    /**
+     * Elimina los trabajos terminados que han caducado
+     */
+    @Scheduled(fixedDelayString = "${asist.exports.purge-interval-ms:600000}")
+    public void purgeExpired() {
+        LocalDateTime limit = LocalDateTime.now().minus(Duration.ofMillis(ttlMs));
+        for (ExportJob job : jobs.values()) {
+            if (job.isFinished() && job.finishedAt.isBefore(limit)) {
+                discard(job);
+            }
+        }
+    }
+
+    private void run(ExportJob job) {
+        if (job.cancelled) {
+            finish(job, Status.CANCELLED, null);
+            return;
+        }
+        job.status = Status.RUNNING;
+        ExportRequest request = job.request;
+        Path part = dir.resolve(job.id + ".part");
+        try {
+            // Una ubicación que no está en el diccionario no coincide con ningún ID
+            Long locationId = request.location == null || request.location.isBlank()
+                    ? null : locationDictionary.find(request.location).orElse(-1L);
+            job.totalRows = shardRouter.scatter(shard -> reportRepository.countForExport(
+                            request.userId, locationId, request.startDate, request.endDate))
+                    .stream().mapToLong(Long::longValue).sum();
+
+            try (RowWriter writer = request.format == Format.XLSX ? new XlsxWriter(part) : new CsvWriter(part)) {
+                for (int shard : shardsFor(request)) {
+                    long afterId = 0;
+                    while (true) {
+                        if (job.cancelled) {
+                            finish(job, Status.CANCELLED, null);
+                            return;
+                        }
+                        final long from = afterId;
+                        List<Report> chunk = shardRouter.onShard(shard, () -> readOnlyTransaction.execute(
+                                status -> reportRepository.findExportChunk(from, request.userId, locationId,
+                                        request.startDate, request.endDate, PageRequest.of(0, chunkSize))));
+                        for (Report report : chunk) {
+                            writer.write(report);
+                        }
+                        job.processedRows += chunk.size();
+                        if (chunk.size() < chunkSize) {
+                            break;
+                        }
+                        afterId = chunk.get(chunk.size() - 1).getId();
+                    }
+                }
+            }
+
+            Path target = filePath(job);
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            job.fileSize = Files.size(target);
+            finish(job, Status.COMPLETED, null);
+            if (job.cancelled) {
+                // Cancelado justo al terminar
+                discard(job);
+            }
+        } catch (Exception e) {
+            System.err.println("Error en la exportación " + job.id + ": " + e.getMessage());
+            finish(job, Status.FAILED, "Export failed");
+        } finally {
+            try {
+                Files.deleteIfExists(part);
+            } catch (IOException e) {
+                System.err.println("No se pudo borrar el fichero temporal " + part + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Los reportes de un usuario están en un único shard; el resto de filtros recorren todos
+     */
+    private List<Integer> shardsFor(ExportRequest request) {
+        List<Integer> shards = new ArrayList<>();
+        if (request.userId != null) {
+            shards.add(shardRouter.shardForUser(request.userId));
+        } else {
+            for (int i = 0; i < shardRouter.getShardCount(); i++) {
+                shards.add(i);
+            }
+        }
+        return shards;
+    }
+
+    private void finish(ExportJob job, Status status, String error) {
+        job.error = error;
+        job.finishedAt = LocalDateTime.now();
+        job.status = status;
+    }
+
+    private void discard(ExportJob job) {
+        jobs.remove(job.id);
+        try {
+            Files.deleteIfExists(filePath(job));
+        } catch (IOException e) {
+            System.err.println("No se pudo borrar la exportación " + job.id + ": " + e.getMessage());
+        }
+    }
+
+    private interface RowWriter extends Closeable {
+        void write(Report report) throws IOException;
+    }
+
+    /**
+     * CSV (RFC 4180) en UTF-8 con BOM para que Excel detecte la codificación
+     */
+    private static class CsvWriter implements RowWriter {
+        private final Writer out;
+
+        CsvWriter(Path file) throws IOException {
+            out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+            out.write('\uFEFF');
+            out.write(String.join(",", COLUMNS));
+            out.write("\r\n");
+        }
+
+        @Override
+        public void write(Report report) throws IOException {
+            out.write(String.valueOf(report.getId()));
+            out.write(',');
+            out.write(escape(report.getTitle()));
+            out.write(',');
+            out.write(escape(report.getDescription()));
+            out.write(',');
+            out.write(escape(report.getLocation()));
+            out.write(',');
+            out.write(report.getDate() != null ? report.getDate().toString() : "");
+            out.write(',');
+            out.write(String.valueOf(report.getUserId()));
+            out.write(',');
+            out.write(report.getUpdatedAt() != null ? report.getUpdatedAt().toString() : "");
+            out.write("\r\n");
+        }
+
+        private static String escape(String value) {
+            if (value == null) {
+                return "";
+            }
+            // Evita que una hoja de cálculo interprete el texto como fórmula
+            if (!value.isEmpty() && "=+-@".indexOf(value.charAt(0)) >= 0) {
+                value = "'" + value;
+            }
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                return "\"" + value.replace("\"", "\"\"") + "\"";
+            }
+            return value;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * XLSX con SXSSF: solo las últimas filas se mantienen en memoria, el resto
+     * va a ficheros temporales comprimidos
+     */
+    private static class XlsxWriter implements RowWriter {
+        private static final int MAX_ROWS = SpreadsheetVersion.EXCEL2007.getMaxRows();
+
+        private final Path file;
+        private final SXSSFWorkbook workbook = new SXSSFWorkbook(100);
+        private final CellStyle dateStyle;
+        private Sheet sheet;
+        private int rowIndex;
+
+        XlsxWriter(Path file) {
+            this.file = file;
+            workbook.setCompressTempFiles(true);
+            dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("yyyy-mm-dd hh:mm:ss"));
+            newSheet();
+        }
+
+        private void newSheet() {
+            sheet = workbook.createSheet("Reportes " + (workbook.getNumberOfSheets() + 1));
+            Row header = sheet.createRow(0);
+            for (int i = 0; i < COLUMNS.length; i++) {
+                header.createCell(i).setCellValue(COLUMNS[i]);
+            }
+            rowIndex = 1;
+        }
+
+        @Override
+        public void write(Report report) {
+            if (rowIndex >= MAX_ROWS) {
+                newSheet();
+            }
+            Row row = sheet.createRow(rowIndex++);
+            row.createCell(0).setCellValue(report.getId());
+            row.createCell(1).setCellValue(report.getTitle());
+            row.createCell(2).setCellValue(report.getDescription());
+            row.createCell(3).setCellValue(report.getLocation());
+            if (report.getDate() != null) {
+                row.createCell(4).setCellValue(report.getDate());
+                row.getCell(4).setCellStyle(dateStyle);
+            }
+            row.createCell(5).setCellValue(report.getUserId());
+            if (report.getUpdatedAt() != null) {
+                row.createCell(6).setCellValue(report.getUpdatedAt());
+                row.getCell(6).setCellStyle(dateStyle);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (OutputStream out = Files.newOutputStream(file)) {
+                workbook.write(out);
+            } finally {
+                workbook.dispose();
+                workbook.close();
+            }
+        }
+    }
+
+    /**
+     * Parámetros de una exportación: formato y filtros opcionales
+     */
+    public static class ExportRequest {
+        private Format format = Format.CSV;
+        private Long userId;
+        private String location;
+        private LocalDateTime startDate;
+        private LocalDateTime endDate;
+
+        public Format getFormat() { return format; }
+        public void setFormat(Format format) { this.format = format; }
+        public Long getUserId() { return userId; }
+        public void setUserId(Long userId) { this.userId = userId; }
+        public String getLocation() { return location; }
+        public void setLocation(String location) { this.location = location; }
+        public LocalDateTime getStartDate() { return startDate; }
+        public void setStartDate(LocalDateTime startDate) { this.startDate = startDate; }
+        public LocalDateTime getEndDate() { return endDate; }
+        public void setEndDate(LocalDateTime endDate) { this.endDate = endDate; }
+    }
+
+    /**
+     * Estado de un trabajo de exportación
+     */
+    public static class ExportJob {
+        private final String id;
+        private final String owner;
+        private final ExportRequest request;
+        private final LocalDateTime createdAt = LocalDateTime.now();
+        private volatile Status status = Status.QUEUED;
+        private volatile long totalRows;
+        private volatile long processedRows;
+        private volatile long fileSize;
+        private volatile LocalDateTime finishedAt;
+        private volatile String error;
+        private volatile boolean cancelled;
+
+        ExportJob(String id, String owner, ExportRequest request) {
+            this.id = id;
+            this.owner = owner;
+            this.request = request;
+        }
+
+        boolean isFinished() {
+            return status == Status.COMPLETED || status == Status.FAILED || status == Status.CANCELLED;
+        }
+
+        public String getId() { return id; }
+        public Format getFormat() { return request.format; }
+        public Status getStatus() { return status; }
+        public long getTotalRows() { return totalRows; }
+        public long getProcessedRows() { return processedRows; }
+        public int getProgress() {
+            if (status == Status.COMPLETED) {
+                return 100;
+            }
+            return totalRows == 0 ? 0 : (int) Math.min(99, processedRows * 100 / totalRows);
+        }
+        public long getFileSize() { return fileSize; }
+        public LocalDateTime getCreatedAt() { return createdAt; }
+        public LocalDateTime getFinishedAt() { return finishedAt; }
+        public String getError() { return error; }
+    }
+}
@@ -0,0 +1,283 @@
+package com.asist.service;
+
+import com.asist.model.Report;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Consulta de reportes con cualquier combinación de filtros
+ *
+ * Combina usuario, ubicación (por su ID en el diccionario de ubicaciones),
+ * texto del título y rango de fechas, con orden
+ * por fecha o por ID y paginación por cursor (keyset): cada página continúa
+ * tras el último elemento de la anterior, sin OFFSET.
+ *
+ * La consulta JPQL se genera con los filtros siempre en el mismo orden y
+ * solo con parámetros, sin valores literales, por lo que cada combinación de
+ * filtros y orden produce siempre la misma sentencia (como mucho 2^5 x 4
+ * formas). Así se reutilizan el plan de Hibernate y las sentencias
+ * preparadas en lugar de compilar una nueva por petición.
+ */
+@Service
+public class ReportFilterService {
+
+    public enum SortOrder {
+        DATE_ASC("date", true), DATE_DESC("date", false), ID_ASC("id", true), ID_DESC("id", false);
+
+        private final String field;
+        private final boolean ascending;
+
+        SortOrder(String field, boolean ascending) {
+            this.field = field;
+            this.ascending = ascending;
+        }
+
+        /**
+         * Interpreta "date", "-date", "id" o "-id"
+         */
+        public static SortOrder parse(String value) {
+            boolean descending = value.startsWith("-");
+            String field = descending ? value.substring(1) : value;
+            for (SortOrder order : values()) {
+                if (order.field.equals(field) && order.ascending != descending) {
+                    return order;
+                }
+            }
+            throw new IllegalArgumentException("Orden no válido: " + value);
+        }
+
+        boolean byDate() {
+            return field.equals("date");
+        }
+    }
+
+    // Bits de la forma de la consulta, en el orden en que se añaden los filtros
+    private static final int USER = 1;
+    private static final int LOCATION = 2;
+    private static final int TITLE = 4;
+    private static final int FROM = 8;
+    private static final int TO = 16;
+    private static final int AFTER = 32;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private ReportShardRouter shardRouter;
+
+    @Autowired
+    private LocationDictionary locationDictionary;
+
+    private final Map<Integer, String> statements = new ConcurrentHashMap<>();
+
+    /**
+     * Ejecuta la consulta y devuelve como mucho limit reportes
+     *
+     * @throws IllegalArgumentException si el cursor no es válido
+     */
+    public ReportPage query(ReportFilter filter, SortOrder sort, String cursor, int limit) {
+        Cursor after = cursor != null && !cursor.isBlank() ? Cursor.decode(cursor, sort) : null;
+        ReportPage page = new ReportPage();
+        Long locationId = null;
+        if (filter.location != null) {
+            // Ubicación desconocida: ningún reporte puede coincidir
+            locationId = locationDictionary.find(filter.location).orElse(null);
+            if (locationId == null) {
+                page.items = new ArrayList<>();
+                return page;
+            }
+        }
+        Long location = locationId;
+        int shape = shapeOf(filter, after);
+        String jpql = statements.computeIfAbsent(shape * 4 + sort.ordinal(), key -> buildJpql(shape, sort));
+        Comparator<Report> comparator = comparatorFor(sort);
+
+        // Se pide uno más para saber si hay página siguiente
+        List<Report> found = filter.userId != null
+                ? shardRouter.onUserShard(filter.userId, () -> run(jpql, shape, filter, location, after, limit + 1))
+                : shardRouter.scatterMerge(shard -> run(jpql, shape, filter, location, after, limit + 1),
+                        comparator, limit + 1);
+
+        boolean hasMore = found.size() > limit;
+        page.items = hasMore ? new ArrayList<>(found.subList(0, limit)) : found;
+        if (hasMore) {
+            Report last = page.items.get(page.items.size() - 1);
+            page.nextCursor = new Cursor(last.getDate(), last.getId()).encode(sort);
+        }
+        return page;
+    }
+
+    private List<Report> run(String jpql, int shape, ReportFilter filter, Long locationId, Cursor after,
+                             int maxResults) {
+        TypedQuery<Report> query = entityManager.createQuery(jpql, Report.class);
+        if ((shape & USER) != 0) {
+            query.setParameter("userId", filter.userId);
+        }
+        if ((shape & LOCATION) != 0) {
+            query.setParameter("locationId", locationId);
+        }
+        if ((shape & TITLE) != 0) {
+            query.setParameter("title", "%" + escapeLike(filter.title.toLowerCase(Locale.ROOT)) + "%");
+        }
+        if ((shape & FROM) != 0) {
+            query.setParameter("startDate", filter.startDate);
+        }
+        if ((shape & TO) != 0) {
+            query.setParameter("endDate", filter.endDate);
+        }
+        if ((shape & AFTER) != 0) {
+            query.setParameter("afterId", after.id);
+            if (after.date != null) {
+                query.setParameter("afterDate", after.date);
+            }
+        }
+        return query.setMaxResults(maxResults).getResultList();
+    }
+
+    private static int shapeOf(ReportFilter filter, Cursor after) {
+        int shape = 0;
+        if (filter.userId != null) {
+            shape |= USER;
+        }
+        if (filter.location != null) {
+            shape |= LOCATION;
+        }
+        if (filter.title != null) {
+            shape |= TITLE;
+        }
+        if (filter.startDate != null) {
+            shape |= FROM;
+        }
+        if (filter.endDate != null) {
+            shape |= TO;
+        }
+        if (after != null) {
+            shape |= AFTER;
+        }
+        return shape;
+    }
+
+    private static String buildJpql(int shape, SortOrder sort) {
+        List<String> predicates = new ArrayList<>();
+        if ((shape & USER) != 0) {
+            predicates.add("r.userId = :userId");
+        }
+        if ((shape & LOCATION) != 0) {
+            predicates.add("r.locationId = :locationId");
+        }
+        if ((shape & TITLE) != 0) {
+            predicates.add("lower(r.title) like :title escape '!'");
+        }
+        if ((shape & FROM) != 0) {
+            predicates.add("r.date >= :startDate");
+        }
+        if ((shape & TO) != 0) {
+            predicates.add("r.date <= :endDate");
+        }
+        String cmp = sort.ascending ? ">" : "<";
+        String direction = sort.ascending ? "asc" : "desc";
+        if ((shape & AFTER) != 0) {
+            predicates.add(sort.byDate()
+                    ? "(r.date " + cmp + " :afterDate or (r.date = :afterDate and r.id " + cmp + " :afterId))"
+                    : "r.id " + cmp + " :afterId");
+        }
+        StringBuilder jpql = new StringBuilder("select r from Report r");
+        if (!predicates.isEmpty()) {
+            jpql.append(" where ").append(String.join(" and ", predicates));
+        }
+        jpql.append(sort.byDate()
+                ? " order by r.date " + direction + ", r.id " + direction
+                : " order by r.id " + direction);
+        return jpql.toString();
+    }
+
+    private static Comparator<Report> comparatorFor(SortOrder sort) {
+        Comparator<Report> comparator = sort.byDate()
+                ? Comparator.comparing(Report::getDate).thenComparing(Report::getId)
+                : Comparator.comparing(Report::getId);
+        return sort.ascending ? comparator : comparator.reversed();
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+
+    /**
+     * Posición tras el último reporte de una página
+     */
+    private static class Cursor {
+        final LocalDateTime date;
+        final Long id;
+
+        Cursor(LocalDateTime date, Long id) {
+            this.date = date;
+            this.id = id;
+        }
+
+        String encode(SortOrder sort) {
+            String raw = sort.byDate() ? date + "|" + id : String.valueOf(id);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String cursor, SortOrder sort) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                if (!sort.byDate()) {
+                    return new Cursor(null, Long.parseLong(raw));
+                }
+                int separator = raw.indexOf('|');
+                return new Cursor(LocalDateTime.parse(raw.substring(0, separator)),
+                        Long.parseLong(raw.substring(separator + 1)));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Cursor no válido");
+            }
+        }
+    }
+
+    /**
+     * Filtros de la consulta; los que son null no se aplican
+     */
+    public static class ReportFilter {
+        private final Long userId;
+        private final String location;
+        private final String title;
+        private final LocalDateTime startDate;
+        private final LocalDateTime endDate;
+
+        public ReportFilter(Long userId, String location, String title, LocalDateTime startDate, LocalDateTime endDate) {
+            this.userId = userId;
+            this.location = blankToNull(location);
+            this.title = blankToNull(title);
+            this.startDate = startDate;
+            this.endDate = endDate;
+        }
+
+        private static String blankToNull(String value) {
+            return value == null || value.isBlank() ? null : value.trim();
+        }
+    }
+
+    /**
+     * Página de resultados y cursor de la siguiente (null si es la última)
+     */
+    public static class ReportPage {
+        private List<Report> items;
+        private String nextCursor;
+
+        public List<Report> getItems() { return items; }
+        public String getNextCursor() { return nextCursor; }
+    }
+}
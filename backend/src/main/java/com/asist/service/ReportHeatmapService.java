@@ -0,0 +1,324 @@
+package com.asist.service;
+
+import com.asist.repository.ReportRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Mapa de densidad de reportes por ubicación y franja de tiempo
+ *
+ * Mantiene en memoria el número de reportes de cada ubicación por hora y
+ * por día. Lo calcula y lo mantiene el consumidor local del outbox
+ * HeatmapConsumer en cada nodo: al arrancar, con una consulta agrupada por
+ * shard, y después, por cada lote de escrituras, volviendo a contar en la
+ * base de datos las ubicaciones y días afectados.
+ *
+ * Los datos se sirven en teselas de tiempo alineadas: con resolución HOUR
+ * cada tesela es un día (24 franjas) y con DAY un mes natural (una franja
+ * por día). Cada tesela lleva, por ubicación con reportes, un array con el
+ * recuento de cada franja. Las teselas ya generadas se guardan en JSON en
+ * una caché LRU (asist.heatmap.cache-tiles) y solo se regeneran cuando una
+ * escritura de reportes cae dentro de ellas.
+ *
+ * Los recuentos se fijan con lo leído en la base de datos en lugar de
+ * sumarse, así que volver a contar una celda que ya incluía una escritura
+ * no la cuenta dos veces, y cada escritura posterior a una lectura vuelve a
+ * contar su celda con su propio evento. Solo el hilo del consumidor
+ * modifica el mapa.
+ */
+@Service
+public class ReportHeatmapService {
+
+    public enum Resolution { HOUR, DAY }
+
+    private static final int VERSION_STRIPES = 256;
+
+    @Value("${asist.heatmap.cache-tiles:2048}")
+    private int cacheTiles;
+
+    // Máximo de teselas por petición (92 días por horas o ~7 años por días)
+    @Value("${asist.heatmap.max-tiles:92}")
+    private int maxTiles;
+
+    @Autowired
+    private ReportRepository reportRepository;
+
+    @Autowired
+    private ReportShardRouter shardRouter;
+
+    @Autowired
+    private LocationDictionary locationDictionary;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Franja (horas o días desde 1970) -> ubicación -> reportes
+    private volatile Map<Long, Map<Long, Long>> hourly = new ConcurrentHashMap<>();
+    private volatile Map<Long, Map<Long, Long>> daily = new ConcurrentHashMap<>();
+
+    // Versión por grupo de teselas: una tesela generada solo se guarda si no ha cambiado mientras tanto
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+    private final Map<String, byte[]> tileCache = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+            return size() > cacheTiles;
+        }
+    };
+
+    /**
+     * Teselas que cubren el rango [from, to], como un array JSON
+     *
+     * @throws IllegalArgumentException si el rango no es válido o abarca demasiadas teselas
+     */
+    public byte[] getTiles(Resolution resolution, LocalDateTime from, LocalDateTime to) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("Rango de fechas no válido");
+        }
+        List<LocalDateTime> starts = tileStarts(resolution, from, to);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write('[');
+        for (int i = 0; i < starts.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.writeBytes(getTile(resolution, starts.get(i)));
+        }
+        out.write(']');
+        return out.toByteArray();
+    }
+
+    private List<LocalDateTime> tileStarts(Resolution resolution, LocalDateTime from, LocalDateTime to) {
+        List<LocalDateTime> starts = new ArrayList<>();
+        LocalDateTime start = tileStart(resolution, from);
+        while (!start.isAfter(to)) {
+            if (starts.size() == maxTiles) {
+                throw new IllegalArgumentException("El rango abarca más de " + maxTiles + " teselas");
+            }
+            starts.add(start);
+            start = resolution == Resolution.HOUR ? start.plusDays(1) : start.plusMonths(1);
+        }
+        return starts;
+    }
+
+    private byte[] getTile(Resolution resolution, LocalDateTime start) {
+        String key = tileKey(resolution, start);
+        int stripe = stripe(key);
+        long version = versions.get(stripe);
+        synchronized (tileCache) {
+            byte[] cached = tileCache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        byte[] rendered = render(resolution, start);
+        synchronized (tileCache) {
+            if (versions.get(stripe) == version) {
+                tileCache.put(key, rendered);
+            }
+        }
+        return rendered;
+    }
+
+    private byte[] render(Resolution resolution, LocalDateTime start) {
+        int buckets = resolution == Resolution.HOUR ? 24 : YearMonth.from(start).lengthOfMonth();
+        long first = bucketIndex(resolution, start);
+        Map<Long, Map<Long, Long>> counts = resolution == Resolution.HOUR ? hourly : daily;
+
+        Map<Long, long[]> byLocation = new TreeMap<>();
+        long total = 0;
+        for (int b = 0; b < buckets; b++) {
+            Map<Long, Long> cell = counts.get(first + b);
+            if (cell == null) {
+                continue;
+            }
+            for (Map.Entry<Long, Long> entry : cell.entrySet()) {
+                byLocation.computeIfAbsent(entry.getKey(), id -> new long[buckets])[b] = entry.getValue();
+                total += entry.getValue();
+            }
+        }
+
+        HeatmapTile tile = new HeatmapTile(resolution, start, buckets, total);
+        for (Map.Entry<Long, long[]> entry : byLocation.entrySet()) {
+            tile.locations.add(new LocationSeries(entry.getKey(), locationDictionary.nameOf(entry.getKey()),
+                    entry.getValue()));
+        }
+        try {
+            return objectMapper.writeValueAsBytes(tile);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo generar la tesela " + tileKey(resolution, start), e);
+        }
+    }
+
+    /**
+     * Recalcula el mapa desde las tablas de reportes de todos los shards
+     */
+    public void rebuild() {
+        Map<Long, Map<Long, Long>> newHourly = new ConcurrentHashMap<>();
+        Map<Long, Map<Long, Long>> newDaily = new ConcurrentHashMap<>();
+        for (List<Object[]> rows : shardRouter.scatter(shard -> reportRepository.countByLocationAndHour())) {
+            for (Object[] row : rows) {
+                LocalDateTime hour = LocalDateTime.of(((Number) row[1]).intValue(), ((Number) row[2]).intValue(),
+                        ((Number) row[3]).intValue(), ((Number) row[4]).intValue(), 0);
+                long count = (Long) row[5];
+                add(newHourly, bucketIndex(Resolution.HOUR, hour), (Long) row[0], count);
+                add(newDaily, bucketIndex(Resolution.DAY, hour), (Long) row[0], count);
+            }
+        }
+        hourly = newHourly;
+        daily = newDaily;
+        clearTiles();
+        System.out.println("Mapa de densidad calculado: " + newHourly.size() + " horas con reportes");
+    }
+
+    /**
+     * Vuelve a contar en todos los shards las ubicaciones indicadas de cada día y fija sus recuentos
+     */
+    public void recount(Map<LocalDate, Set<Long>> locationsByDay) {
+        for (Map.Entry<LocalDate, Set<Long>> entry : locationsByDay.entrySet()) {
+            recountDay(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void recountDay(LocalDate day, Set<Long> locationIds) {
+        LocalDateTime from = day.atStartOfDay();
+        Map<Long, Map<Long, Long>> dayHours = new HashMap<>();
+        Map<Long, Long> dayTotal = new HashMap<>();
+        for (List<Object[]> rows : shardRouter.scatter(
+                shard -> reportRepository.countByLocationAndHourBetween(locationIds, from, from.plusDays(1)))) {
+            for (Object[] row : rows) {
+                long count = (Long) row[5];
+                long hour = bucketIndex(Resolution.HOUR, from.plusHours(((Number) row[4]).intValue()));
+                dayHours.computeIfAbsent(hour, key -> new HashMap<>()).merge((Long) row[0], count, Long::sum);
+                dayTotal.merge((Long) row[0], count, Long::sum);
+            }
+        }
+        long firstHour = bucketIndex(Resolution.HOUR, from);
+        for (long hour = firstHour; hour < firstHour + 24; hour++) {
+            Map<Long, Long> counts = dayHours.getOrDefault(hour, Map.of());
+            for (Long locationId : locationIds) {
+                set(hourly, hour, locationId, counts.getOrDefault(locationId, 0L));
+            }
+        }
+        long dayIndex = bucketIndex(Resolution.DAY, from);
+        for (Long locationId : locationIds) {
+            set(daily, dayIndex, locationId, dayTotal.getOrDefault(locationId, 0L));
+        }
+        invalidateTile(tileKey(Resolution.HOUR, tileStart(Resolution.HOUR, from)));
+        invalidateTile(tileKey(Resolution.DAY, tileStart(Resolution.DAY, from)));
+    }
+
+    private static void add(Map<Long, Map<Long, Long>> counts, long bucket, Long locationId, long count) {
+        counts.computeIfAbsent(bucket, key -> new ConcurrentHashMap<>()).merge(locationId, count, Long::sum);
+    }
+
+    private static void set(Map<Long, Map<Long, Long>> counts, long bucket, Long locationId, long count) {
+        if (count > 0) {
+            counts.computeIfAbsent(bucket, key -> new ConcurrentHashMap<>()).put(locationId, count);
+            return;
+        }
+        // Sin reportes la ubicación desaparece de la franja, y la franja vacía del mapa
+        counts.computeIfPresent(bucket, (key, cell) -> {
+            cell.remove(locationId);
+            return cell.isEmpty() ? null : cell;
+        });
+    }
+
+    private void invalidateTile(String key) {
+        synchronized (tileCache) {
+            versions.incrementAndGet(stripe(key));
+            tileCache.remove(key);
+        }
+    }
+
+    private void clearTiles() {
+        synchronized (tileCache) {
+            for (int i = 0; i < VERSION_STRIPES; i++) {
+                versions.incrementAndGet(i);
+            }
+            tileCache.clear();
+        }
+    }
+
+    private static LocalDateTime tileStart(Resolution resolution, LocalDateTime date) {
+        return resolution == Resolution.HOUR
+                ? date.truncatedTo(ChronoUnit.DAYS)
+                : date.toLocalDate().withDayOfMonth(1).atStartOfDay();
+    }
+
+    private static long bucketIndex(Resolution resolution, LocalDateTime date) {
+        return resolution == Resolution.HOUR
+                ? date.toEpochSecond(ZoneOffset.UTC) / 3600
+                : date.toLocalDate().toEpochDay();
+    }
+
+    private static String tileKey(Resolution resolution, LocalDateTime start) {
+        return resolution.name().toLowerCase(Locale.ROOT) + ":" + LocalDate.from(start);
+    }
+
+    private static int stripe(String key) {
+        return Math.floorMod(key.hashCode(), VERSION_STRIPES);
+    }
+
+    /**
+     * Tesela del mapa: recuentos por ubicación de cada franja desde start
+     */
+    public static class HeatmapTile {
+        private final Resolution resolution;
+        private final LocalDateTime start;
+        private final int buckets;
+        private final long total;
+        private final List<LocationSeries> locations = new ArrayList<>();
+
+        public HeatmapTile(Resolution resolution, LocalDateTime start, int buckets, long total) {
+            this.resolution = resolution;
+            this.start = start;
+            this.buckets = buckets;
+            this.total = total;
+        }
+
+        public Resolution getResolution() { return resolution; }
+        public LocalDateTime getStart() { return start; }
+        public int getBuckets() { return buckets; }
+        public long getTotal() { return total; }
+        public List<LocationSeries> getLocations() { return locations; }
+    }
+
+    /**
+     * Recuentos de una ubicación en cada franja de una tesela
+     */
+    public static class LocationSeries {
+        private final Long id;
+        private final String name;
+        private final long[] counts;
+
+        public LocationSeries(Long id, String name, long[] counts) {
+            this.id = id;
+            this.name = name;
+            this.counts = counts;
+        }
+
+        public Long getId() { return id; }
+        public String getName() { return name; }
+        public long[] getCounts() { return counts; }
+    }
+}
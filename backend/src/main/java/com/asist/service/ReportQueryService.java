@@ -0,0 +1,143 @@
+package com.asist.service;
+
+import com.asist.model.Report;
+import com.asist.repository.ReportRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Servicio de lectura de reportes
+ *
+ * Las consultas de un usuario o de un ID van a un único shard; las globales
+ * se lanzan en paralelo contra todos los shards y se mezclan por orden.
+ */
+@Service
+public class ReportQueryService {
+
+    private static final Sort ID_ORDER = Sort.by("id");
+    private static final Sort DATE_ORDER = Sort.by("date", "id");
+    private static final Comparator<Report> BY_ID = Comparator.comparing(Report::getId);
+    private static final Comparator<Report> BY_DATE = Comparator.comparing(Report::getDate).thenComparing(Report::getId);
+
+    // Filas que cada shard puede tener que leer para servir una página por desplazamiento
+    static final int MAX_SHARDED_PAGE_END = 10_000;
+
+    @Autowired
+    private ReportRepository reportRepository;
+
+    @Autowired
+    private ReportShardRouter shardRouter;
+
+    @Autowired
+    private LocationDictionary locationDictionary;
+
+    /**
+     * Obtiene todos los reportes ordenados por ID
+     */
+    public List<Report> findAll() {
+        return shardRouter.scatterMerge(shard -> reportRepository.findAll(ID_ORDER), BY_ID, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Obtiene una página de reportes ordenados por ID
+     *
+     * Con un solo shard es una consulta con LIMIT y OFFSET. Con varios, cada
+     * shard devuelve sus (page + 1) * size primeras filas y se mezclan antes
+     * de recortar, por lo que solo se sirven páginas dentro de las primeras
+     * MAX_SHARDED_PAGE_END filas; más allá hay que paginar por cursor
+     * (GET /api/reports/query).
+     *
+     * @throws IllegalArgumentException si la página es demasiado profunda con varios shards
+     */
+    public List<Report> findPage(int page, int size) {
+        if (!shardRouter.isSharded()) {
+            return reportRepository.findAllBy(PageRequest.of(page, size, ID_ORDER));
+        }
+        long pageEnd = ((long) page + 1) * size;
+        if (pageEnd > MAX_SHARDED_PAGE_END) {
+            throw new IllegalArgumentException("Página demasiado profunda con varios shards: usar /api/reports/query");
+        }
+        int needed = (int) pageEnd;
+        List<Report> merged = shardRouter.scatterMerge(
+                shard -> reportRepository.findAllBy(PageRequest.of(0, needed, ID_ORDER)),
+                BY_ID, needed);
+        int from = Math.min(page * size, merged.size());
+        return new ArrayList<>(merged.subList(from, merged.size()));
+    }
+
+    /**
+     * Obtiene un reporte por ID (un único shard)
+     */
+    public Optional<Report> findById(Long id) {
+        return shardRouter.onShard(shardRouter.shardForReport(id), () -> reportRepository.findById(id));
+    }
+
+    /**
+     * Obtiene varios reportes por ID con una consulta IN por shard
+     */
+    public List<Report> findAllById(Collection<Long> ids) {
+        List<List<Long>> idsByShard = new ArrayList<>();
+        for (int i = 0; i < shardRouter.getShardCount(); i++) {
+            idsByShard.add(new ArrayList<>());
+        }
+        for (Long id : ids) {
+            idsByShard.get(shardRouter.shardForReport(id)).add(id);
+        }
+        List<Report> found = new ArrayList<>();
+        shardRouter.scatter(shard -> idsByShard.get(shard).isEmpty()
+                        ? List.<Report>of()
+                        : reportRepository.findAllById(idsByShard.get(shard)))
+                .forEach(found::addAll);
+        return found;
+    }
+
+    public List<Report> findByUserId(Long userId) {
+        return shardRouter.onUserShard(userId, () -> reportRepository.findByUserId(userId));
+    }
+
+    public List<Report> findByUserIdAndDateBetween(Long userId, LocalDateTime startDate, LocalDateTime endDate) {
+        return shardRouter.onUserShard(userId,
+                () -> reportRepository.findByUserIdAndDateBetween(userId, startDate, endDate));
+    }
+
+    /**
+     * Busca por ubicación canonicalizada; una ubicación desconocida no tiene reportes
+     */
+    public List<Report> findByLocation(String location) {
+        Optional<Long> locationId = locationDictionary.find(location);
+        if (locationId.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return shardRouter.scatterMerge(shard -> reportRepository.findByLocationId(locationId.get(), ID_ORDER),
+                BY_ID, Integer.MAX_VALUE);
+    }
+
+    public List<Report> findByTitleContainingIgnoreCase(String title) {
+        return shardRouter.scatterMerge(shard -> reportRepository.findByTitleContainingIgnoreCase(title, ID_ORDER),
+                BY_ID, Integer.MAX_VALUE);
+    }
+
+    public List<Report> findByDateBetween(LocalDateTime startDate, LocalDateTime endDate) {
+        return shardRouter.scatterMerge(shard -> reportRepository.findByDateBetween(startDate, endDate, DATE_ORDER),
+                BY_DATE, Integer.MAX_VALUE);
+    }
+
+    public List<Report> findByLocationAndDateBetween(String location, LocalDateTime startDate, LocalDateTime endDate) {
+        Optional<Long> locationId = locationDictionary.find(location);
+        if (locationId.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return shardRouter.scatterMerge(
+                shard -> reportRepository.findByLocationIdAndDateBetween(locationId.get(), startDate, endDate, DATE_ORDER),
+                BY_DATE, Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,152 @@
+package com.asist.service;
+
+import com.asist.model.OutboxEvent.EventType;
+import com.asist.model.Report;
+import com.asist.repository.ReportRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Servicio de escritura de reportes
+ *
+ * Centraliza las altas, modificaciones y bajas de reportes. Cada escritura
+ * se ejecuta en el shard del usuario (o del ID del reporte) y la transacción
+ * se abre ya dentro de ese shard. En la transacción solo se escriben, además
+ * del reporte, su posición en la secuencia de cambios (la sincronización
+ * delta la necesita al confirmar) y un evento en el outbox (OutboxService).
+ *
+ * El trabajo derivado (agregados por usuario, mapa de densidad,
+ * autocompletado, índice de casi duplicados) lo hacen fuera de la petición
+ * los consumidores del outbox, con el retraso con que procesan los eventos.
+ */
+@Service
+public class ReportService {
+
+    @Autowired
+    private ReportRepository reportRepository;
+
+    @Autowired
+    private ReportSyncService reportSyncService;
+
+    @Autowired
+    private AttachmentService attachmentService;
+
+    @Autowired
+    private ReportDuplicateDetector duplicateDetector;
+
+    @Autowired
+    private LocationDictionary locationDictionary;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private ReportShardRouter shardRouter;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * Crea un reporte, enlazándolo con un reporte anterior casi idéntico si lo hay
+     */
+    public Report createReport(Report report) {
+        // La ubicación se registra en el diccionario antes de abrir la transacción del shard
+        Long locationId = locationDictionary.resolve(report.getLocation());
+        report.setLocationId(locationId);
+        report.setLocation(locationDictionary.nameOf(locationId));
+        report.setDuplicateOf(duplicateDetector.findDuplicate(report).orElse(null));
+        return shardRouter.onUserShard(report.getUserId(), () -> transactionTemplate.execute(status -> {
+            // Desde markChanged las escrituras del shard esperan al commit: solo se guarda y se anota el evento
+            reportSyncService.markChanged(report);
+            Report saved = reportRepository.save(report);
+            outboxService.record(EventType.REPORT_CREATED, saved);
+            return saved;
+        }));
+    }
+
+    /**
+     * Actualiza los campos no vacíos de un reporte existente
+     *
+     * @return el reporte actualizado, o vacío si no existe
+     * @throws IllegalArgumentException si el cambio de usuario movería el reporte a otro shard
+     */
+    public Optional<Report> updateReport(Long id, Report changes) {
+        if (changes.getUserId() != null
+                && shardRouter.shardForUser(changes.getUserId()) != shardRouter.shardForReport(id)) {
+            throw new IllegalArgumentException("El reporte no puede reasignarse a un usuario de otro shard");
+        }
+        Long newLocationId = changes.getLocation() != null && !changes.getLocation().trim().isEmpty()
+                ? locationDictionary.resolve(changes.getLocation())
+                : null;
+        return shardRouter.onShard(shardRouter.shardForReport(id), () -> transactionTemplate.execute(status -> {
+            Optional<Report> reportData = reportRepository.findById(id);
+            if (reportData.isEmpty()) {
+                return Optional.<Report>empty();
+            }
+            Report existingReport = reportData.get();
+            Long oldUserId = existingReport.getUserId();
+            LocalDateTime oldDate = existingReport.getDate();
+            String oldTitle = existingReport.getTitle();
+            Long oldLocationId = existingReport.getLocationId();
+
+            if (changes.getTitle() != null && !changes.getTitle().trim().isEmpty()) {
+                existingReport.setTitle(changes.getTitle().trim());
+            }
+            if (changes.getDescription() != null) {
+                existingReport.setDescription(changes.getDescription());
+            }
+            if (newLocationId != null) {
+                existingReport.setLocationId(newLocationId);
+                existingReport.setLocation(locationDictionary.nameOf(newLocationId));
+            }
+            if (changes.getDate() != null) {
+                existingReport.setDate(changes.getDate());
+            }
+            if (changes.getUserId() != null) {
+                existingReport.setUserId(changes.getUserId());
+            }
+
+            reportSyncService.markChanged(existingReport);
+            Report updatedReport = reportRepository.save(existingReport);
+            outboxService.recordUpdated(updatedReport, oldUserId, oldTitle, oldLocationId, oldDate);
+            return Optional.of(updatedReport);
+        }));
+    }
+
+    /**
+     * Elimina un reporte
+     *
+     * @return true si existía y se ha eliminado
+     */
+    public boolean deleteReport(Long id) {
+        return shardRouter.onShard(shardRouter.shardForReport(id), () -> transactionTemplate.execute(status -> {
+            Optional<Report> reportData = reportRepository.findById(id);
+            if (reportData.isEmpty()) {
+                return false;
+            }
+            Report report = reportData.get();
+            attachmentService.deleteForReport(report.getId());
+            reportRepository.delete(report);
+            reportSyncService.recordDeleted(report.getId());
+            outboxService.record(EventType.REPORT_DELETED, report);
+            return true;
+        }));
+    }
+
+    /**
+     * Elimina todos los reportes con un único DELETE por shard
+     */
+    public void deleteAllReports() {
+        shardRouter.forEachShard(() -> transactionTemplate.executeWithoutResult(status -> {
+            attachmentService.deleteAllInShard();
+            reportRepository.deleteAllInBatch();
+            reportSyncService.recordDeletedAll();
+            outboxService.recordDeletedAll();
+        }));
+        attachmentService.releaseUnreferenced();
+    }
+}
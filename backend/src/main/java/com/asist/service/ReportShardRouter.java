@@ -0,0 +1,212 @@
+package com.asist.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Enrutador de shards de reportes
+ *
+ * Los reportes de un usuario viven en el shard hash(userId) mod N, junto con
+ * sus agregados y marcas de borrado. Las operaciones de un usuario se
+ * ejecutan en un único shard; las consultas globales se lanzan en paralelo
+ * contra todos los shards y sus resultados ordenados se mezclan.
+ *
+ * Los IDs de reporte se reparten por módulo (id mod N = shard), por lo que
+ * una búsqueda por ID también va a un único shard. Los reportes creados
+ * antes de activar el sharding no cumplen ninguna de las dos reglas:
+ * ShardingConfig impide arrancar si encuentra alguno fuera de su shard.
+ *
+ * Las consultas en paralelo se encolan como mucho
+ * asist.sharding.scatter-queue-capacity; con la cola llena se rechazan
+ * (RejectedExecutionException) en lugar de acumular peticiones.
+ *
+ * Con asist.sharding.enabled=false (por defecto) hay un solo shard y todas
+ * las operaciones se ejecutan directamente en el hilo que llama.
+ */
+@Service
+public class ReportShardRouter {
+
+    private static final ThreadLocal<Integer> CURRENT_SHARD = new ThreadLocal<>();
+
+    private final int shardCount;
+    private final ExecutorService scatterExecutor;
+
+    public ReportShardRouter(@Value("${asist.sharding.enabled:false}") boolean enabled,
+                             @Value("${asist.sharding.count:1}") int count,
+                             @Value("${asist.sharding.scatter-queue-capacity:256}") int queueCapacity) {
+        this.shardCount = enabled ? Math.max(1, count) : 1;
+        this.scatterExecutor = shardCount > 1
+                ? new ThreadPoolExecutor(shardCount * 2, shardCount * 2, 0L, TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<>(queueCapacity), r -> {
+                            Thread thread = new Thread(r, "report-shard-scatter");
+                            thread.setDaemon(true);
+                            return thread;
+                        })
+                : null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scatterExecutor != null) {
+            scatterExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Shard activo en el hilo actual (null fuera de una operación enrutada)
+     */
+    public static Integer currentShard() {
+        return CURRENT_SHARD.get();
+    }
+
+    public boolean isSharded() {
+        return shardCount > 1;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * Shard que contiene los reportes de un usuario
+     */
+    public int shardForUser(Long userId) {
+        // Mezcla de bits para repartir IDs consecutivos entre shards
+        long h = userId * 0x9E3779B97F4A7C15L;
+        h ^= (h >>> 32);
+        return Math.floorMod(h, shardCount);
+    }
+
+    /**
+     * Shard que contiene un reporte por su ID
+     */
+    public int shardForReport(Long reportId) {
+        return (int) Math.floorMod(reportId, (long) shardCount);
+    }
+
+    /**
+     * Ejecuta la operación en el shard de un usuario
+     */
+    public <T> T onUserShard(Long userId, Supplier<T> operation) {
+        return onShard(shardForUser(userId), operation);
+    }
+
+    /**
+     * Ejecuta la operación en un shard concreto, en el hilo actual
+     */
+    public <T> T onShard(int shard, Supplier<T> operation) {
+        if (!isSharded()) {
+            return operation.get();
+        }
+        Integer previous = CURRENT_SHARD.get();
+        CURRENT_SHARD.set(shard);
+        try {
+            return operation.get();
+        } finally {
+            if (previous == null) {
+                CURRENT_SHARD.remove();
+            } else {
+                CURRENT_SHARD.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Ejecuta la operación en todos los shards, de uno en uno
+     */
+    public void forEachShard(Runnable operation) {
+        for (int shard = 0; shard < shardCount; shard++) {
+            onShard(shard, () -> {
+                operation.run();
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Lanza la consulta en paralelo contra todos los shards
+     *
+     * @param query consulta a ejecutar; recibe el índice del shard
+     * @return resultados de cada shard, en orden de shard
+     */
+    public <T> List<T> scatter(IntFunction<T> query) {
+        if (!isSharded()) {
+            return List.of(query.apply(0));
+        }
+        List<CompletableFuture<T>> futures = new ArrayList<>(shardCount);
+        // Las sentencias de cada shard cuentan en la petición que lanza la consulta
+        AtomicInteger statements = SqlStatistics.current();
+        for (int shard = 0; shard < shardCount; shard++) {
+            final int target = shard;
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                SqlStatistics.bind(statements);
+                try {
+                    return onShard(target, () -> query.apply(target));
+                } finally {
+                    SqlStatistics.end();
+                }
+            }, scatterExecutor));
+        }
+        List<T> results = new ArrayList<>(shardCount);
+        for (CompletableFuture<T> future : futures) {
+            results.add(future.join());
+        }
+        return results;
+    }
+
+    /**
+     * Lanza una consulta ordenada en todos los shards y mezcla los resultados
+     *
+     * @param query consulta que devuelve resultados ordenados según comparator
+     * @param comparator orden de los resultados
+     * @param limit número máximo de elementos a devolver (Integer.MAX_VALUE para todos)
+     */
+    public <T> List<T> scatterMerge(IntFunction<List<T>> query, Comparator<? super T> comparator, int limit) {
+        List<List<T>> partials = scatter(query);
+        if (partials.size() == 1) {
+            List<T> only = partials.get(0);
+            return only.size() > limit ? new ArrayList<>(only.subList(0, limit)) : only;
+        }
+        return mergeSorted(partials, comparator, limit);
+    }
+
+    /**
+     * Mezcla k listas ordenadas con un montículo
+     */
+    static <T> List<T> mergeSorted(List<List<T>> partials, Comparator<? super T> comparator, int limit) {
+        // Cada entrada del montículo es {índice de lista, posición}
+        PriorityQueue<int[]> heap = new PriorityQueue<>(Math.max(1, partials.size()),
+                (a, b) -> comparator.compare(partials.get(a[0]).get(a[1]), partials.get(b[0]).get(b[1])));
+        int total = 0;
+        for (int i = 0; i < partials.size(); i++) {
+            total += partials.get(i).size();
+            if (!partials.get(i).isEmpty()) {
+                heap.add(new int[]{i, 0});
+            }
+        }
+        List<T> merged = new ArrayList<>(Math.min(total, limit));
+        while (!heap.isEmpty() && merged.size() < limit) {
+            int[] head = heap.poll();
+            List<T> source = partials.get(head[0]);
+            merged.add(source.get(head[1]));
+            if (head[1] + 1 < source.size()) {
+                heap.add(new int[]{head[0], head[1] + 1});
+            }
+        }
+        return merged;
+    }
+}
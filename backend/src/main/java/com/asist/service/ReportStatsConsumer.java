@@ -0,0 +1,52 @@
+package com.asist.service;
+
+import com.asist.model.OutboxEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Mantiene los agregados por usuario (ReportStatsService) a partir de los eventos del outbox
+ *
+ * Es un consumidor compartido: cada lote se aplica en la transacción del
+ * shard de sus eventos, que es también el de los agregados de sus usuarios
+ * (un reporte no cambia de shard), junto con la posición del consumidor.
+ * Por eso puede aplicar los cambios como incrementos sin contarlos dos veces.
+ */
+@Service
+public class ReportStatsConsumer implements OutboxConsumer {
+
+    public static final String NAME = "report-stats";
+
+    @Autowired
+    private ReportStatsService reportStatsService;
+
+    @Autowired
+    private LocationDictionary locationDictionary;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void rebuild() {
+        reportStatsService.rebuildShard();
+    }
+
+    @Override
+    public void handle(List<OutboxEvent> events) {
+        for (OutboxEvent event : events) {
+            String location = locationDictionary.nameOf(event.getLocationId());
+            switch (event.getEventType()) {
+                case REPORT_CREATED -> reportStatsService.recordCreated(event.getUserId(), event.getReportDate(), location);
+                case REPORT_DELETED -> reportStatsService.recordDeleted(event.getUserId(), event.getReportDate(), location);
+                case REPORT_UPDATED -> reportStatsService.recordUpdated(event.getPreviousUserId(),
+                        event.getPreviousReportDate(), locationDictionary.nameOf(event.getPreviousLocationId()),
+                        event.getUserId(), event.getReportDate(), location);
+                case REPORTS_DELETED_ALL -> reportStatsService.clear();
+            }
+        }
+    }
+}
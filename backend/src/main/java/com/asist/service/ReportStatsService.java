@@ -0,0 +1,194 @@
+package com.asist.service;
+
+import com.asist.model.Report;
+import com.asist.model.ReportStat;
+import com.asist.model.ReportStat.Dimension;
+import com.asist.repository.ReportRepository;
+import com.asist.repository.ReportStatRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Servicio de agregados de reportes por usuario
+ *
+ * Mantiene en la tabla report_stats el total, la fecha del último reporte y
+ * los conteos por mes y por ubicación de cada usuario, de modo que el resumen
+ * se lee sin recorrer los reportes del usuario.
+ *
+ * Los agregados no se tocan en la petición: los actualiza el consumidor del
+ * outbox ReportStatsConsumer, en el shard de los eventos y en la misma
+ * transacción que su posición. El resumen refleja las escrituras con el
+ * retraso de ese consumidor (normalmente menos de un segundo).
+ */
+@Service
+public class ReportStatsService {
+
+    private static final String TOTAL_BUCKET = "";
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM");
+
+    @Autowired
+    private ReportStatRepository reportStatRepository;
+
+    @Autowired
+    private ReportRepository reportRepository;
+
+    @Autowired
+    private ReportShardRouter shardRouter;
+
+    @Autowired
+    private LocationDictionary locationDictionary;
+
+    /**
+     * Obtiene el resumen de reportes de un usuario
+     */
+    public ReportSummary getSummary(Long userId) {
+        ReportSummary summary = new ReportSummary(userId);
+        List<ReportStat> stats = shardRouter.onUserShard(userId, () -> reportStatRepository.findByUserId(userId));
+        for (ReportStat stat : stats) {
+            switch (stat.getDimension()) {
+                case TOTAL -> {
+                    summary.totalReports = stat.getReportCount();
+                    summary.lastReportDate = stat.getLastReportDate();
+                }
+                case MONTH -> summary.byMonth.put(stat.getBucket(), stat.getReportCount());
+                case LOCATION -> summary.byLocation.put(stat.getBucket(), stat.getReportCount());
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * Registra un reporte nuevo. Debe llamarse dentro de una transacción en el shard del usuario.
+     */
+    @Transactional
+    public void recordCreated(Long userId, LocalDateTime date, String location) {
+        ReportStat total = lockTotal(userId);
+        total.setReportCount(total.getReportCount() + 1);
+        if (total.getLastReportDate() == null || date.isAfter(total.getLastReportDate())) {
+            total.setLastReportDate(date);
+        }
+        reportStatRepository.save(total);
+        adjust(userId, Dimension.MONTH, monthBucket(date), 1);
+        adjust(userId, Dimension.LOCATION, location, 1);
+    }
+
+    /**
+     * Registra un reporte eliminado. Debe llamarse dentro de una transacción en el shard del usuario.
+     */
+    @Transactional
+    public void recordDeleted(Long userId, LocalDateTime date, String location) {
+        ReportStat total = lockTotal(userId);
+        total.setReportCount(Math.max(0, total.getReportCount() - 1));
+        if (total.getReportCount() == 0) {
+            reportStatRepository.delete(total);
+        } else {
+            if (date.equals(total.getLastReportDate())) {
+                // Solo al borrar el más reciente hay que buscar el siguiente (consulta indexada)
+                total.setLastReportDate(reportRepository.findTopByUserIdOrderByDateDesc(userId)
+                        .map(Report::getDate)
+                        .orElse(null));
+            }
+            reportStatRepository.save(total);
+        }
+        adjust(userId, Dimension.MONTH, monthBucket(date), -1);
+        adjust(userId, Dimension.LOCATION, location, -1);
+    }
+
+    /**
+     * Registra la modificación de un reporte a partir de sus valores anteriores
+     */
+    @Transactional
+    public void recordUpdated(Long oldUserId, LocalDateTime oldDate, String oldLocation,
+                              Long userId, LocalDateTime date, String location) {
+        if (Objects.equals(oldUserId, userId) && Objects.equals(oldDate, date)
+                && Objects.equals(oldLocation, location)) {
+            return;
+        }
+        recordDeleted(oldUserId, oldDate, oldLocation);
+        recordCreated(userId, date, location);
+    }
+
+    /**
+     * Elimina todos los agregados (tras borrar todos los reportes)
+     */
+    @Transactional
+    public void clear() {
+        reportStatRepository.deleteAllInBatch();
+    }
+
+    /**
+     * Reconstruye los agregados del shard actual con tres consultas agrupadas
+     * (la de ubicaciones agrupa por ID y el nombre se toma del diccionario).
+     * Debe llamarse dentro de una transacción en el shard.
+     */
+    @Transactional
+    public void rebuildShard() {
+        reportStatRepository.deleteAllInBatch();
+        for (Object[] row : reportRepository.countByUser()) {
+            ReportStat total = new ReportStat((Long) row[0], Dimension.TOTAL, TOTAL_BUCKET);
+            total.setReportCount((Long) row[1]);
+            total.setLastReportDate((LocalDateTime) row[2]);
+            reportStatRepository.save(total);
+        }
+        for (Object[] row : reportRepository.countByUserAndMonth()) {
+            String bucket = String.format("%04d-%02d", ((Number) row[1]).intValue(), ((Number) row[2]).intValue());
+            ReportStat stat = new ReportStat((Long) row[0], Dimension.MONTH, bucket);
+            stat.setReportCount((Long) row[3]);
+            reportStatRepository.save(stat);
+        }
+        for (Object[] row : reportRepository.countByUserAndLocation()) {
+            ReportStat stat = new ReportStat((Long) row[0], Dimension.LOCATION, locationDictionary.nameOf((Long) row[1]));
+            stat.setReportCount((Long) row[2]);
+            reportStatRepository.save(stat);
+        }
+    }
+
+    private ReportStat lockTotal(Long userId) {
+        return reportStatRepository.findForUpdate(userId, Dimension.TOTAL, TOTAL_BUCKET)
+                .orElseGet(() -> new ReportStat(userId, Dimension.TOTAL, TOTAL_BUCKET));
+    }
+
+    private void adjust(Long userId, Dimension dimension, String bucket, long delta) {
+        ReportStat stat = reportStatRepository.findByUserIdAndDimensionAndBucket(userId, dimension, bucket)
+                .orElseGet(() -> new ReportStat(userId, dimension, bucket));
+        stat.setReportCount(stat.getReportCount() + delta);
+        if (stat.getReportCount() > 0) {
+            reportStatRepository.save(stat);
+        } else if (stat.getId() != null) {
+            reportStatRepository.delete(stat);
+        }
+    }
+
+    private static String monthBucket(LocalDateTime date) {
+        return date.format(MONTH_FORMAT);
+    }
+
+    /**
+     * Resumen de reportes de un usuario
+     */
+    public static class ReportSummary {
+        private final Long userId;
+        private long totalReports;
+        private LocalDateTime lastReportDate;
+        private final Map<String, Long> byMonth = new TreeMap<>();
+        private final Map<String, Long> byLocation = new TreeMap<>();
+
+        public ReportSummary(Long userId) {
+            this.userId = userId;
+        }
+
+        public Long getUserId() { return userId; }
+        public long getTotalReports() { return totalReports; }
+        public LocalDateTime getLastReportDate() { return lastReportDate; }
+        public Map<String, Long> getByMonth() { return byMonth; }
+        public Map<String, Long> getByLocation() { return byLocation; }
+    }
+}
@@ -0,0 +1,584 @@
+package com.asist.service;
+
+import com.asist.repository.ReportRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Autocompletado de ubicaciones y títulos de reportes
+ *
+ * Cada campo tiene un trie comprimido (radix: cada nodo guarda un tramo de
+ * texto, así que hay como mucho dos nodos por término) con los valores
+ * distintos normalizados (minúsculas, sin tildes ni puntuación) y su número
+ * de reportes como peso. Los nodos con muchos términos por debajo guardan
+ * sus mejores términos ya ordenados, de modo que una sugerencia solo baja
+ * por los nodos del prefijo y copia los primeros k.
+ *
+ * Los tries los construye y los mantiene el consumidor local del outbox
+ * SuggestConsumer en cada nodo: al arrancar, con una consulta agrupada por
+ * shard, y después, por cada lote de escrituras, volviendo a contar en
+ * todos los shards los valores afectados y fijando su peso. Para eso cada
+ * término guarda el número de reportes de cada variante que lo forma
+ * (valores que solo difieren en mayúsculas, tildes o puntuación). Como el
+ * peso se fija y no se suma, volver a contar un valor que ya incluía una
+ * escritura no la cuenta dos veces. Para acotar la memoria cada campo
+ * guarda como mucho asist.suggest.max-terms términos (al arrancar, los más
+ * frecuentes).
+ */
+@Service
+public class ReportSuggestService {
+
+    public enum Field { LOCATION, TITLE }
+
+    // Máximo de sugerencias por petición
+    public static final int MAX_LIMIT = 20;
+
+    // Los títulos se indexan hasta esta longitud normalizada
+    private static final int MAX_KEY_LENGTH = 64;
+
+    // Valores por consulta al volver a contarlos
+    private static final int RECOUNT_BATCH = 500;
+
+    @Value("${asist.suggest.max-terms:200000}")
+    private int maxTerms;
+
+    @Autowired
+    private ReportRepository reportRepository;
+
+    @Autowired
+    private ReportShardRouter shardRouter;
+
+    @Autowired
+    private LocationDictionary locationDictionary;
+
+    private final Map<Field, Trie> tries = new EnumMap<>(Field.class);
+    private final Map<Field, ReentrantReadWriteLock> locks = new EnumMap<>(Field.class);
+
+    public ReportSuggestService() {
+        for (Field field : Field.values()) {
+            tries.put(field, new Trie());
+            locks.put(field, new ReentrantReadWriteLock());
+        }
+    }
+
+    /**
+     * Los k valores más frecuentes que empiezan por el prefijo (sin distinguir mayúsculas ni tildes)
+     */
+    public List<Suggestion> suggest(Field field, String prefix, int k) {
+        String key = fold(prefix, true);
+        ReentrantReadWriteLock lock = locks.get(field);
+        lock.readLock().lock();
+        try {
+            List<Suggestion> found = tries.get(field).suggest(key, k, false);
+            if (found != null) {
+                return found;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        // La lista de mejores términos de un nodo se recalcula tras un borrado
+        lock.writeLock().lock();
+        try {
+            return tries.get(field).suggest(key, k, true);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Construye los tries desde las tablas de reportes de todos los shards
+     */
+    public void rebuild() {
+        Trie locations = new Trie();
+        for (List<Object[]> rows : shardRouter.scatter(shard -> reportRepository.countByLocation())) {
+            for (Object[] row : rows) {
+                String name = locationDictionary.nameOf((Long) row[0]);
+                if (name != null) {
+                    addTo(locations, name, (Long) row[1]);
+                }
+            }
+        }
+        Trie titles = new Trie();
+        for (List<Object[]> rows : shardRouter.scatter(
+                shard -> reportRepository.countByTitle(PageRequest.of(0, maxTerms)))) {
+            for (Object[] row : rows) {
+                addTo(titles, (String) row[0], (Long) row[1]);
+            }
+        }
+        replace(Field.LOCATION, locations);
+        replace(Field.TITLE, titles);
+        System.out.println("Autocompletado cargado: " + locations.terms + " ubicaciones, " + titles.terms + " títulos");
+    }
+
+    /**
+     * Fija el peso de cada valor con su número de reportes en todos los shards
+     */
+    public void recount(Map<Field, Set<String>> values) {
+        for (Map.Entry<Field, Set<String>> entry : values.entrySet()) {
+            List<String> texts = new ArrayList<>(entry.getValue());
+            for (int from = 0; from < texts.size(); from += RECOUNT_BATCH) {
+                List<String> batch = texts.subList(from, Math.min(from + RECOUNT_BATCH, texts.size()));
+                Map<String, Long> counts = entry.getKey() == Field.TITLE ? countTitles(batch) : countLocations(batch);
+                for (String value : batch) {
+                    set(entry.getKey(), value, counts.getOrDefault(value, 0L));
+                }
+            }
+        }
+    }
+
+    private Map<String, Long> countTitles(List<String> titles) {
+        Map<String, Long> counts = new HashMap<>();
+        for (List<Object[]> rows : shardRouter.scatter(shard -> reportRepository.countByTitleIn(titles))) {
+            for (Object[] row : rows) {
+                counts.merge((String) row[0], (Long) row[1], Long::sum);
+            }
+        }
+        return counts;
+    }
+
+    private Map<String, Long> countLocations(List<String> names) {
+        Map<Long, String> namesById = new HashMap<>();
+        for (String name : names) {
+            locationDictionary.find(name).ifPresent(id -> namesById.put(id, name));
+        }
+        Map<String, Long> counts = new HashMap<>();
+        if (namesById.isEmpty()) {
+            return counts;
+        }
+        for (List<Object[]> rows : shardRouter.scatter(
+                shard -> reportRepository.countByLocationIdIn(namesById.keySet()))) {
+            for (Object[] row : rows) {
+                counts.merge(namesById.get((Long) row[0]), (Long) row[1], Long::sum);
+            }
+        }
+        return counts;
+    }
+
+    private void set(Field field, String text, long count) {
+        String key = termKey(text);
+        if (key.isEmpty()) {
+            return;
+        }
+        ReentrantReadWriteLock lock = locks.get(field);
+        lock.writeLock().lock();
+        try {
+            tries.get(field).set(key, text, display(text), count, maxTerms);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void addTo(Trie trie, String text, long count) {
+        String key = termKey(text);
+        if (!key.isEmpty()) {
+            trie.add(key, text, display(text), count, maxTerms);
+        }
+    }
+
+    private static String termKey(String text) {
+        String key = fold(text, false);
+        return key.length() > MAX_KEY_LENGTH ? key.substring(0, MAX_KEY_LENGTH).trim() : key;
+    }
+
+    private static String display(String text) {
+        return text.trim().replaceAll("\\s+", " ");
+    }
+
+    private void replace(Field field, Trie trie) {
+        ReentrantReadWriteLock lock = locks.get(field);
+        lock.writeLock().lock();
+        try {
+            tries.put(field, trie);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Minúsculas, sin tildes y solo letras y dígitos separados por un espacio.
+     * En un prefijo se conserva el espacio final ("plaza " no debe sugerir "plazas").
+     */
+    static String fold(String text, boolean prefix) {
+        String stripped = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT);
+        StringBuilder sb = new StringBuilder(stripped.length());
+        boolean space = true;
+        for (int i = 0; i < stripped.length(); i++) {
+            char c = stripped.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(c);
+                space = false;
+            } else if (!space) {
+                sb.append(' ');
+                space = true;
+            }
+        }
+        int end = sb.length();
+        if (!prefix && end > 0 && sb.charAt(end - 1) == ' ') {
+            sb.setLength(end - 1);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Trie comprimido con pesos; no es seguro entre hilos (lo protege el cerrojo del campo)
+     */
+    static final class Trie {
+
+        // Los nodos con más términos que esto guardan sus mejores términos ordenados;
+        // el doble del máximo de sugerencias deja margen para bajas sin recalcular
+        private static final int CACHED = MAX_LIMIT * 2;
+
+        private static final Comparator<Term> ORDER =
+                Comparator.comparingLong((Term t) -> t.weight).reversed().thenComparing(t -> t.key);
+
+        private final Node root = new Node("");
+        private int terms;
+
+        /**
+         * Fija el número de reportes de una variante del término
+         */
+        void set(String key, String variant, String display, long count, int maxTerms) {
+            Term term = find(key);
+            long delta = count - (term != null ? term.variants.getOrDefault(variant, 0L) : 0L);
+            if (delta > 0) {
+                add(key, variant, display, delta, maxTerms);
+            } else if (delta < 0) {
+                subtract(key, variant, -delta);
+            }
+        }
+
+        /**
+         * Suma delta al peso del término y de su variante, creándolo si no existe y cabe
+         */
+        void add(String key, String variant, String display, long delta, int maxTerms) {
+            if (find(key) == null && terms >= maxTerms) {
+                return;
+            }
+            List<Node> path = new ArrayList<>();
+            path.add(root);
+            Node node = root;
+            int i = 0;
+            while (i < key.length()) {
+                Node child = node.child(key.charAt(i));
+                if (child == null) {
+                    child = new Node(key.substring(i));
+                    node.addChild(child);
+                    path.add(child);
+                    node = child;
+                    break;
+                }
+                int common = commonPrefix(child.label, key, i);
+                if (common < child.label.length()) {
+                    // El término se separa a mitad del tramo: se parte el nodo en dos
+                    Node split = new Node(child.label.substring(0, common));
+                    split.size = child.size;
+                    split.top = child.top != null ? new ArrayList<>(child.top) : null;
+                    node.replaceChild(split);
+                    child.label = child.label.substring(common);
+                    split.addChild(child);
+                    child = split;
+                }
+                path.add(child);
+                node = child;
+                i += common;
+            }
+            if (node.term == null) {
+                node.term = new Term(key, display);
+                terms++;
+                for (Node n : path) {
+                    n.size++;
+                }
+            }
+            Term term = node.term;
+            term.weight += delta;
+            term.variants.merge(variant, delta, Long::sum);
+            for (Node n : path) {
+                n.offer(term);
+            }
+        }
+
+        /**
+         * Resta delta al peso del término y de su variante; al llegar a cero desaparece
+         */
+        void subtract(String key, String variant, long delta) {
+            List<Node> path = new ArrayList<>();
+            path.add(root);
+            Node node = root;
+            int i = 0;
+            while (i < key.length()) {
+                Node child = node.child(key.charAt(i));
+                if (child == null || !key.startsWith(child.label, i)) {
+                    return;
+                }
+                path.add(child);
+                node = child;
+                i += child.label.length();
+            }
+            Term term = node.term;
+            if (term == null) {
+                return;
+            }
+            term.weight -= delta;
+            term.variants.computeIfPresent(variant, (text, count) -> count > delta ? count - delta : null);
+            if (term.weight > 0) {
+                for (Node n : path) {
+                    if (n.top == null || !n.top.contains(term)) {
+                        continue;
+                    }
+                    n.top.sort(ORDER);
+                    // El último de la lista puede haber bajado por debajo de términos que no están en ella
+                    if (n.top.get(n.top.size() - 1) == term && n.size > n.top.size()) {
+                        n.top.remove(n.top.size() - 1);
+                        dropIfShort(n);
+                    }
+                }
+                return;
+            }
+            node.term = null;
+            terms--;
+            for (Node n : path) {
+                n.size--;
+                if (n.top != null && n.top.remove(term)) {
+                    dropIfShort(n);
+                }
+            }
+            // Se quitan los nodos que han quedado vacíos y se fusionan los que solo tienen un hijo
+            for (int p = path.size() - 1; p > 0; p--) {
+                Node current = path.get(p);
+                Node parent = path.get(p - 1);
+                if (current.term == null && current.children.length == 0) {
+                    parent.removeChild(current);
+                } else {
+                    if (current.term == null && current.children.length == 1) {
+                        Node only = current.children[0];
+                        current.label = current.label + only.label;
+                        current.term = only.term;
+                        current.children = only.children;
+                    }
+                    break;
+                }
+            }
+        }
+
+        // Sin margen para las sugerencias de una consulta: se recalcula en la próxima
+        private static void dropIfShort(Node n) {
+            if (n.top.size() < MAX_LIMIT) {
+                n.top = null;
+            }
+        }
+
+        /**
+         * Mejores términos bajo el prefijo
+         *
+         * @param refresh si se pueden recalcular las listas en caché (requiere el cerrojo de escritura)
+         * @return null si hace falta recalcular y refresh es false
+         */
+        List<Suggestion> suggest(String prefix, int k, boolean refresh) {
+            Node node = root;
+            int i = 0;
+            while (i < prefix.length()) {
+                Node child = node.child(prefix.charAt(i));
+                if (child == null) {
+                    return List.of();
+                }
+                int common = commonPrefix(child.label, prefix, i);
+                if (common < child.label.length() && i + common < prefix.length()) {
+                    return List.of();
+                }
+                node = child;
+                i += common;
+            }
+            List<Term> best;
+            if (node.size <= CACHED) {
+                best = collect(node, CACHED);
+            } else {
+                if (node.top == null) {
+                    if (!refresh) {
+                        return null;
+                    }
+                    node.top = collect(node, CACHED);
+                }
+                best = node.top;
+            }
+            List<Suggestion> suggestions = new ArrayList<>(Math.min(k, best.size()));
+            for (int j = 0; j < best.size() && j < k; j++) {
+                suggestions.add(new Suggestion(best.get(j).display, best.get(j).weight));
+            }
+            return suggestions;
+        }
+
+        private Term find(String key) {
+            Node node = root;
+            int i = 0;
+            while (i < key.length()) {
+                Node child = node.child(key.charAt(i));
+                if (child == null || !key.startsWith(child.label, i)) {
+                    return null;
+                }
+                node = child;
+                i += child.label.length();
+            }
+            return node.term;
+        }
+
+        /**
+         * Los limit mejores términos del subárbol, recorriéndolo entero
+         */
+        private static List<Term> collect(Node node, int limit) {
+            PriorityQueue<Term> heap = new PriorityQueue<>(limit + 1, ORDER.reversed());
+            List<Node> stack = new ArrayList<>();
+            stack.add(node);
+            while (!stack.isEmpty()) {
+                Node current = stack.remove(stack.size() - 1);
+                if (current.term != null) {
+                    heap.add(current.term);
+                    if (heap.size() > limit) {
+                        heap.poll();
+                    }
+                }
+                for (Node child : current.children) {
+                    stack.add(child);
+                }
+            }
+            List<Term> best = new ArrayList<>(heap);
+            best.sort(ORDER);
+            return best;
+        }
+
+        private static int commonPrefix(String label, String key, int from) {
+            int max = Math.min(label.length(), key.length() - from);
+            int n = 0;
+            while (n < max && label.charAt(n) == key.charAt(from + n)) {
+                n++;
+            }
+            return n;
+        }
+
+        private static final class Node {
+            private static final Node[] NO_CHILDREN = new Node[0];
+
+            private String label;
+            private Node[] children = NO_CHILDREN;
+            private Term term;
+            private int size;
+            private List<Term> top;
+
+            Node(String label) {
+                this.label = label;
+            }
+
+            Node child(char first) {
+                int index = indexOf(first);
+                return index >= 0 ? children[index] : null;
+            }
+
+            // Hijos ordenados por su primer carácter: búsqueda binaria
+            private int indexOf(char first) {
+                int low = 0;
+                int high = children.length - 1;
+                while (low <= high) {
+                    int mid = (low + high) >>> 1;
+                    char c = children[mid].label.charAt(0);
+                    if (c < first) {
+                        low = mid + 1;
+                    } else if (c > first) {
+                        high = mid - 1;
+                    } else {
+                        return mid;
+                    }
+                }
+                return -(low + 1);
+            }
+
+            void addChild(Node child) {
+                int insert = -(indexOf(child.label.charAt(0)) + 1);
+                Node[] grown = new Node[children.length + 1];
+                System.arraycopy(children, 0, grown, 0, insert);
+                grown[insert] = child;
+                System.arraycopy(children, insert, grown, insert + 1, children.length - insert);
+                children = grown;
+            }
+
+            void replaceChild(Node child) {
+                children[indexOf(child.label.charAt(0))] = child;
+            }
+
+            void removeChild(Node child) {
+                int index = indexOf(child.label.charAt(0));
+                Node[] shrunk = new Node[children.length - 1];
+                System.arraycopy(children, 0, shrunk, 0, index);
+                System.arraycopy(children, index + 1, shrunk, index, children.length - index - 1);
+                children = shrunk;
+            }
+
+            /**
+             * Actualiza la lista de mejores términos tras subir el peso de uno
+             */
+            void offer(Term term) {
+                if (size <= CACHED) {
+                    top = null;
+                    return;
+                }
+                if (top == null) {
+                    return;
+                }
+                if (!top.contains(term)) {
+                    // Por detrás del último puede haber términos mejores que no están en la lista
+                    if (ORDER.compare(term, top.get(top.size() - 1)) > 0) {
+                        return;
+                    }
+                    top.add(term);
+                }
+                top.sort(ORDER);
+                if (top.size() > CACHED) {
+                    top.remove(top.size() - 1);
+                }
+            }
+        }
+    }
+
+    private static final class Term {
+        private final String key;
+        private final String display;
+        private long weight;
+        // Reportes de cada valor original que se normaliza a este término
+        private final Map<String, Long> variants = new HashMap<>(2);
+
+        Term(String key, String display) {
+            this.key = key;
+            this.display = display;
+        }
+    }
+
+    /**
+     * Valor sugerido y número de reportes que lo usan
+     */
+    public static class Suggestion {
+        private final String text;
+        private final long count;
+
+        public Suggestion(String text, long count) {
+            this.text = text;
+            this.count = count;
+        }
+
+        public String getText() { return text; }
+        public long getCount() { return count; }
+    }
+}
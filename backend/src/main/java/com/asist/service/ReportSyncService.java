@@ -0,0 +1,224 @@
+package com.asist.service;
+
+import com.asist.model.Report;
+import com.asist.model.ReportTombstone;
+import com.asist.model.SyncCounter;
+import com.asist.repository.ReportRepository;
+import com.asist.repository.ReportTombstoneRepository;
+import com.asist.repository.SyncCounterRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Servicio de sincronización delta de reportes
+ *
+ * Cada escritura de un reporte toma el siguiente valor de una secuencia de
+ * cambios global y lo guarda en el reporte (o en su marca de borrado). El
+ * contador se bloquea hasta el commit, de modo que los cambios se hacen
+ * visibles en orden de secuencia y un cursor nunca salta un cambio.
+ *
+ * Un cliente sin datos empieza con cursor 0. Si su cursor es anterior a un
+ * borrado total o a la purga de marcas de borrado antiguas, se le indica que
+ * descarte sus datos y vuelva a sincronizar desde 0.
+ *
+ * Con varios shards cada uno tiene su propia secuencia; la consulta de
+ * cambios solo está disponible con un único shard.
+ *
+ * Límite de rendimiento: el contador es una sola fila (reports.change-seq)
+ * bloqueada desde nextSeq hasta el commit, así que todas las escrituras de
+ * reportes de un shard se serializan. Como mucho se confirma una escritura
+ * por cada intervalo entre nextSeq y el commit: con 2 ms, unas 500
+ * escrituras por segundo y shard, sea cual sea el tamaño del pool. Por eso
+ * ReportService hace antes todo lo demás (diccionario de ubicaciones,
+ * detección de duplicados, lectura y cambios del reporte, borrado de
+ * adjuntos) y bajo el bloqueo solo quedan el INSERT, UPDATE o DELETE del
+ * reporte, el evento del outbox y el commit; los agregados y demás datos
+ * derivados los actualizan después los consumidores del outbox. El outbox
+ * (OutboxService) depende de este mismo bloqueo para que sus IDs de evento
+ * se hagan visibles en orden; sustituirlo por una secuencia de la base de
+ * datos exigiría una marca de visibilidad (el mayor valor por debajo del
+ * cual ya no quedan transacciones abiertas) tanto aquí como en el outbox.
+ */
+@Service
+public class ReportSyncService {
+
+    private static final String SEQUENCE = "reports.change-seq";
+    private static final String RESET = "reports.reset-seq";
+    private static final String TOMBSTONE_FLOOR = "reports.tombstone-floor";
+
+    @Value("${asist.sync.tombstone-retention-days:30}")
+    private long tombstoneRetentionDays;
+
+    @Autowired
+    private SyncCounterRepository syncCounterRepository;
+
+    @Autowired
+    private ReportRepository reportRepository;
+
+    @Autowired
+    private ReportTombstoneRepository reportTombstoneRepository;
+
+    @Autowired
+    private ReportShardRouter shardRouter;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * Marca un reporte como modificado. Llamar antes de guardarlo, dentro de la transacción de escritura.
+     */
+    @Transactional
+    public void markChanged(Report report) {
+        report.setChangeSeq(nextSeq());
+        report.setUpdatedAt(LocalDateTime.now());
+    }
+
+    /**
+     * Registra el borrado de un reporte
+     */
+    @Transactional
+    public void recordDeleted(Long reportId) {
+        reportTombstoneRepository.save(new ReportTombstone(reportId, nextSeq(), LocalDateTime.now()));
+    }
+
+    /**
+     * Registra el borrado de todos los reportes: en lugar de una marca por
+     * reporte se guarda un único punto de reinicio
+     */
+    @Transactional
+    public void recordDeletedAll() {
+        long seq = nextSeq();
+        setCounter(RESET, seq);
+        reportTombstoneRepository.deleteAllInBatch();
+    }
+
+    /**
+     * Bloquea las escrituras de reportes del shard actual hasta el commit.
+     * Con el bloqueo tomado no queda ninguna escritura a medias: las tablas
+     * de reportes y del outbox se leen en un estado coherente entre sí.
+     */
+    @Transactional
+    public void lockChanges() {
+        syncCounterRepository.save(lockCounter(SEQUENCE));
+    }
+
+    /**
+     * Obtiene los cambios posteriores al cursor, como máximo limit
+     */
+    @Transactional(readOnly = true)
+    public ChangeBatch changesSince(long cursor, int limit) {
+        if (cursor > 0 && (cursor < counterValue(RESET) || cursor < counterValue(TOMBSTONE_FLOOR))) {
+            return ChangeBatch.reset();
+        }
+
+        PageRequest page = PageRequest.of(0, limit);
+        List<Report> reports = reportRepository.findByChangeSeqGreaterThanOrderByChangeSeqAsc(cursor, page);
+        List<ReportTombstone> tombstones = cursor == 0
+                ? List.of()
+                : reportTombstoneRepository.findByChangeSeqGreaterThanOrderByChangeSeqAsc(cursor, page);
+
+        // Mezcla de las dos listas ordenadas por secuencia hasta completar el lote
+        ChangeBatch batch = new ChangeBatch();
+        long nextCursor = cursor;
+        int r = 0;
+        int t = 0;
+        while (r + t < limit && (r < reports.size() || t < tombstones.size())) {
+            boolean takeReport = t >= tombstones.size()
+                    || (r < reports.size() && reports.get(r).getChangeSeq() < tombstones.get(t).getChangeSeq());
+            if (takeReport) {
+                Report report = reports.get(r++);
+                batch.upserts.add(report);
+                nextCursor = report.getChangeSeq();
+            } else {
+                ReportTombstone tombstone = tombstones.get(t++);
+                batch.deletedIds.add(tombstone.getReportId());
+                nextCursor = tombstone.getChangeSeq();
+            }
+        }
+        batch.nextCursor = nextCursor;
+        batch.hasMore = r < reports.size() || t < tombstones.size()
+                || reports.size() == limit || tombstones.size() == limit;
+        return batch;
+    }
+
+    /**
+     * Asigna secuencia a los reportes anteriores a la sincronización delta
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        shardRouter.forEachShard(() -> transactionTemplate.executeWithoutResult(
+                status -> reportRepository.assignMissingChangeSeq(nextSeq())));
+    }
+
+    /**
+     * Purga las marcas de borrado más antiguas que el periodo de retención
+     */
+    @Scheduled(fixedDelayString = "${asist.sync.tombstone-purge-interval-ms:86400000}")
+    public void purgeTombstones() {
+        shardRouter.forEachShard(() -> transactionTemplate.executeWithoutResult(status -> {
+            Long maxSeq = reportTombstoneRepository.findMaxChangeSeqDeletedBefore(
+                    LocalDateTime.now().minusDays(tombstoneRetentionDays));
+            if (maxSeq != null) {
+                reportTombstoneRepository.deleteUpTo(maxSeq);
+                setCounter(TOMBSTONE_FLOOR, maxSeq);
+            }
+        }));
+    }
+
+    // Bloquea la fila del contador hasta el commit: ver el límite de rendimiento en la clase
+    private long nextSeq() {
+        SyncCounter counter = lockCounter(SEQUENCE);
+        counter.setValue(counter.getValue() + 1);
+        syncCounterRepository.save(counter);
+        return counter.getValue();
+    }
+
+    private void setCounter(String name, long value) {
+        SyncCounter counter = lockCounter(name);
+        counter.setValue(Math.max(counter.getValue(), value));
+        syncCounterRepository.save(counter);
+    }
+
+    private SyncCounter lockCounter(String name) {
+        return syncCounterRepository.findForUpdate(name).orElseGet(() -> new SyncCounter(name, 0));
+    }
+
+    private long counterValue(String name) {
+        return syncCounterRepository.findById(name).map(SyncCounter::getValue).orElse(0L);
+    }
+
+    /**
+     * Lote de cambios: reportes nuevos o modificados, IDs borrados y cursor siguiente
+     */
+    public static class ChangeBatch {
+        private final List<Report> upserts = new ArrayList<>();
+        private final List<Long> deletedIds = new ArrayList<>();
+        private long nextCursor;
+        private boolean hasMore;
+        private boolean reset;
+
+        static ChangeBatch reset() {
+            ChangeBatch batch = new ChangeBatch();
+            batch.reset = true;
+            batch.hasMore = true;
+            return batch;
+        }
+
+        public List<Report> getUpserts() { return upserts; }
+        public List<Long> getDeletedIds() { return deletedIds; }
+        public long getNextCursor() { return nextCursor; }
+        public boolean isHasMore() { return hasMore; }
+        public boolean isReset() { return reset; }
+    }
+}
@@ -0,0 +1,241 @@
+package com.asist.service;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Estado de la JVM y de los pools de conexiones para detectar degradación con el tiempo
+ *
+ * La memoria retenida es la ocupación del heap justo después de la última
+ * recolección de cada pool (lo que la GC no ha podido liberar): si crece de
+ * forma sostenida bajo una carga constante hay una fuga, por ejemplo en una
+ * caché o índice en memoria sin límite. Las pausas de GC se miden con las
+ * notificaciones de los recolectores; la pausa máxima se reinicia en cada
+ * muestra.
+ *
+ * Con asist.runtime.sample-file se añade una muestra en formato CSV cada
+ * asist.runtime.sample-interval-ms; es lo que lee scripts/soak-test.sh.
+ */
+@Service
+public class RuntimeMetrics {
+
+    static final String CSV_HEADER = "epoch_seconds,heap_used_mb,heap_after_gc_mb,heap_max_mb,threads,"
+            + "gc_count,gc_time_ms,gc_max_pause_ms,pool_active,pool_idle,pool_total,pool_waiting";
+
+    @Value("${asist.runtime.sample-file:}")
+    private String sampleFile;
+
+    @Autowired
+    private List<DataSource> dataSources;
+
+    private final List<HikariDataSource> pools = new ArrayList<>();
+    private final AtomicLong maxPauseMs = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        Set<DataSource> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (DataSource dataSource : dataSources) {
+            collectPools(dataSource, seen);
+        }
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (collector instanceof NotificationEmitter emitter) {
+                emitter.addNotificationListener((notification, handback) -> {
+                    if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                        GarbageCollectionNotificationInfo info =
+                                GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+                        maxPauseMs.accumulateAndGet(info.getGcInfo().getDuration(), Math::max);
+                    }
+                }, null, null);
+            }
+        }
+    }
+
+    // Los pools Hikari pueden estar detrás de proxies o DataSources de enrutado (réplica, shards)
+    private void collectPools(DataSource dataSource, Set<DataSource> seen) {
+        if (dataSource == null || !seen.add(dataSource)) {
+            return;
+        }
+        if (dataSource instanceof HikariDataSource hikari) {
+            pools.add(hikari);
+        } else if (dataSource instanceof DelegatingDataSource delegating) {
+            collectPools(delegating.getTargetDataSource(), seen);
+        } else if (dataSource instanceof AbstractRoutingDataSource routing) {
+            for (DataSource target : routing.getResolvedDataSources().values()) {
+                collectPools(target, seen);
+            }
+        }
+    }
+
+    /**
+     * Muestra actual; la pausa máxima de GC es la observada desde la muestra anterior
+     */
+    public Snapshot sample() {
+        long heapAfterGc = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage afterGc = pool.getCollectionUsage();
+            if (pool.getType() == MemoryType.HEAP && afterGc != null) {
+                heapAfterGc += afterGc.getUsed();
+            }
+        }
+        long gcCount = 0;
+        long gcTime = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += Math.max(0, collector.getCollectionCount());
+            gcTime += Math.max(0, collector.getCollectionTime());
+        }
+        List<PoolState> poolStates = new ArrayList<>();
+        for (HikariDataSource pool : pools) {
+            HikariPoolMXBean bean = pool.getHikariPoolMXBean();
+            if (bean != null) {
+                poolStates.add(new PoolState(pool.getPoolName(), bean));
+            }
+        }
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        return new Snapshot(heap, heapAfterGc, threads.getThreadCount(), threads.getPeakThreadCount(),
+                gcCount, gcTime, maxPauseMs.getAndSet(0), poolStates);
+    }
+
+    @Scheduled(fixedDelayString = "${asist.runtime.sample-interval-ms:30000}")
+    public void writeSample() {
+        if (sampleFile.isEmpty()) {
+            return;
+        }
+        Snapshot snapshot = sample();
+        int active = 0;
+        int idle = 0;
+        int total = 0;
+        int waiting = 0;
+        for (PoolState pool : snapshot.getPools()) {
+            active += pool.getActive();
+            idle += pool.getIdle();
+            total += pool.getTotal();
+            waiting += pool.getWaiting();
+        }
+        String line = String.join(",",
+                Long.toString(snapshot.getTimestamp().getEpochSecond()),
+                Long.toString(snapshot.getHeapUsedMb()),
+                Long.toString(snapshot.getHeapAfterGcMb()),
+                Long.toString(snapshot.getHeapMaxMb()),
+                Integer.toString(snapshot.getThreads()),
+                Long.toString(snapshot.getGcCount()),
+                Long.toString(snapshot.getGcTimeMs()),
+                Long.toString(snapshot.getGcMaxPauseMs()),
+                Integer.toString(active),
+                Integer.toString(idle),
+                Integer.toString(total),
+                Integer.toString(waiting)) + "\n";
+        try {
+            Path path = Paths.get(sampleFile);
+            if (!Files.exists(path)) {
+                if (path.getParent() != null) {
+                    Files.createDirectories(path.getParent());
+                }
+                Files.writeString(path, CSV_HEADER + "\n", StandardCharsets.UTF_8);
+            }
+            Files.writeString(path, line, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.err.println("No se pudo escribir la muestra de ejecución en " + sampleFile + ": " + e.getMessage());
+        }
+    }
+
+    private static long toMb(long bytes) {
+        return bytes / (1024 * 1024);
+    }
+
+    /**
+     * Muestra del estado de la JVM y de los pools
+     */
+    public static class Snapshot {
+        private final Instant timestamp = Instant.now();
+        private final long heapUsedMb;
+        private final long heapAfterGcMb;
+        private final long heapMaxMb;
+        private final int threads;
+        private final int peakThreads;
+        private final long gcCount;
+        private final long gcTimeMs;
+        private final long gcMaxPauseMs;
+        private final List<PoolState> pools;
+
+        Snapshot(MemoryUsage heap, long heapAfterGc, int threads, int peakThreads,
+                 long gcCount, long gcTimeMs, long gcMaxPauseMs, List<PoolState> pools) {
+            this.heapUsedMb = toMb(heap.getUsed());
+            this.heapAfterGcMb = toMb(heapAfterGc);
+            this.heapMaxMb = toMb(heap.getMax());
+            this.threads = threads;
+            this.peakThreads = peakThreads;
+            this.gcCount = gcCount;
+            this.gcTimeMs = gcTimeMs;
+            this.gcMaxPauseMs = gcMaxPauseMs;
+            this.pools = pools;
+        }
+
+        public Instant getTimestamp() { return timestamp; }
+        public long getHeapUsedMb() { return heapUsedMb; }
+        public long getHeapAfterGcMb() { return heapAfterGcMb; }
+        public long getHeapMaxMb() { return heapMaxMb; }
+        public int getThreads() { return threads; }
+        public int getPeakThreads() { return peakThreads; }
+        public long getGcCount() { return gcCount; }
+        public long getGcTimeMs() { return gcTimeMs; }
+        public long getGcMaxPauseMs() { return gcMaxPauseMs; }
+        public List<PoolState> getPools() { return pools; }
+    }
+
+    /**
+     * Conexiones de un pool Hikari
+     */
+    public static class PoolState {
+        private final String name;
+        private final int active;
+        private final int idle;
+        private final int total;
+        private final int waiting;
+
+        PoolState(String name, HikariPoolMXBean bean) {
+            this.name = name;
+            this.active = bean.getActiveConnections();
+            this.idle = bean.getIdleConnections();
+            this.total = bean.getTotalConnections();
+            this.waiting = bean.getThreadsAwaitingConnection();
+        }
+
+        public String getName() { return name; }
+        public int getActive() { return active; }
+        public int getIdle() { return idle; }
+        public int getTotal() { return total; }
+        public int getWaiting() { return waiting; }
+    }
+}
@@ -0,0 +1,234 @@
+package com.asist.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.hibernate.stat.CollectionStatistics;
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Estadísticas de SQL de Hibernate y sentencias por endpoint
+ *
+ * Cada sentencia que prepara Hibernate se cuenta en la petición en curso
+ * (StatementCounter); al terminar la petición se acumula en su endpoint
+ * (método y patrón de ruta) con el total, la media y el máximo por llamada.
+ * Un endpoint cuyo máximo crece con el tamaño de los datos es un N+1.
+ * Las peticiones que superan asist.sql-stats.warn-statements se registran
+ * en el log con su número de sentencias.
+ *
+ * Además se exponen los contadores globales de Hibernate, las cargas de
+ * colecciones por rol y las consultas cuyo tiempo máximo supera
+ * asist.sql-stats.slow-query-ms.
+ */
+@Service
+public class SqlStatistics {
+
+    private static final ThreadLocal<AtomicInteger> CURRENT = new ThreadLocal<>();
+
+    @Value("${asist.sql-stats.warn-statements:50}")
+    private int warnStatements;
+
+    @Value("${asist.sql-stats.slow-query-ms:200}")
+    private long slowQueryMs;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final Map<String, EndpointStats> endpoints = new ConcurrentHashMap<>();
+
+    /**
+     * Contador de sentencias de la petición en curso en este hilo (null si no hay)
+     */
+    public static AtomicInteger current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Empieza a contar sentencias en este hilo
+     */
+    public static AtomicInteger begin() {
+        AtomicInteger counter = new AtomicInteger();
+        CURRENT.set(counter);
+        return counter;
+    }
+
+    /**
+     * Cuenta las sentencias de este hilo en el contador de otro (p. ej. en los hilos de scatter)
+     */
+    public static void bind(AtomicInteger counter) {
+        if (counter == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(counter);
+        }
+    }
+
+    /**
+     * Deja de contar sentencias en este hilo
+     */
+    public static void end() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Acumula las sentencias de una petición terminada
+     */
+    public void record(String endpoint, int statements) {
+        endpoints.computeIfAbsent(endpoint, EndpointStats::new).add(statements);
+        if (statements > warnStatements) {
+            System.err.println("Petición con " + statements + " sentencias SQL: " + endpoint);
+        }
+    }
+
+    public Map<String, Object> getSummary() {
+        Statistics stats = statistics();
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("enabled", stats.isStatisticsEnabled());
+        summary.put("preparedStatements", stats.getPrepareStatementCount());
+        summary.put("queryExecutions", stats.getQueryExecutionCount());
+        summary.put("queryExecutionMaxTimeMs", stats.getQueryExecutionMaxTime());
+        summary.put("slowestQuery", stats.getQueryExecutionMaxTimeQueryString());
+        summary.put("entityLoads", stats.getEntityLoadCount());
+        summary.put("entityFetches", stats.getEntityFetchCount());
+        summary.put("collectionLoads", stats.getCollectionLoadCount());
+        summary.put("collectionFetches", stats.getCollectionFetchCount());
+        summary.put("flushes", stats.getFlushCount());
+        summary.put("connections", stats.getConnectCount());
+        summary.put("transactions", stats.getTransactionCount());
+        summary.put("optimisticFailures", stats.getOptimisticFailureCount());
+        return summary;
+    }
+
+    /**
+     * Cargas de cada colección: muchas cargas sueltas (fetches) de una colección indican un N+1
+     */
+    public Map<String, Map<String, Long>> getCollections() {
+        Statistics stats = statistics();
+        Map<String, Map<String, Long>> collections = new LinkedHashMap<>();
+        for (String role : stats.getCollectionRoleNames()) {
+            CollectionStatistics collection = stats.getCollectionStatistics(role);
+            Map<String, Long> values = new LinkedHashMap<>();
+            values.put("loads", collection.getLoadCount());
+            values.put("fetches", collection.getFetchCount());
+            collections.put(role, values);
+        }
+        return collections;
+    }
+
+    /**
+     * Consultas cuyo tiempo máximo supera el umbral, de la más lenta a la más rápida
+     */
+    public List<SlowQuery> getSlowQueries() {
+        Statistics stats = statistics();
+        List<SlowQuery> slow = new ArrayList<>();
+        for (String query : stats.getQueries()) {
+            QueryStatistics queryStats = stats.getQueryStatistics(query);
+            if (queryStats.getExecutionMaxTime() >= slowQueryMs) {
+                slow.add(new SlowQuery(query, queryStats));
+            }
+        }
+        slow.sort(Comparator.comparingLong(SlowQuery::getMaxTimeMs).reversed());
+        return slow;
+    }
+
+    public List<EndpointStats> getEndpoints() {
+        List<EndpointStats> list = new ArrayList<>(endpoints.values());
+        list.sort(Comparator.comparingLong(EndpointStats::getMaxStatements).reversed());
+        return list;
+    }
+
+    /**
+     * Pone a cero las estadísticas de Hibernate y las de los endpoints
+     */
+    public void reset() {
+        statistics().clear();
+        endpoints.clear();
+    }
+
+    private Statistics statistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    /**
+     * Cuenta cada sentencia preparada por Hibernate en la petición del hilo actual
+     */
+    public static class StatementCounter implements StatementInspector {
+
+        @Override
+        public String inspect(String sql) {
+            AtomicInteger counter = CURRENT.get();
+            if (counter != null) {
+                counter.incrementAndGet();
+            }
+            return sql;
+        }
+    }
+
+    /**
+     * Sentencias por llamada a un endpoint
+     */
+    public static class EndpointStats {
+        private final String endpoint;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder statements = new LongAdder();
+        private final AtomicLong maxStatements = new AtomicLong();
+
+        public EndpointStats(String endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        void add(int count) {
+            calls.increment();
+            statements.add(count);
+            maxStatements.accumulateAndGet(count, Math::max);
+        }
+
+        public String getEndpoint() { return endpoint; }
+        public long getCalls() { return calls.sum(); }
+        public long getStatements() { return statements.sum(); }
+        public long getMaxStatements() { return maxStatements.get(); }
+        public double getAverageStatements() {
+            long count = calls.sum();
+            return count == 0 ? 0 : (double) statements.sum() / count;
+        }
+    }
+
+    /**
+     * Consulta lenta con sus tiempos
+     */
+    public static class SlowQuery {
+        private final String query;
+        private final long executions;
+        private final long maxTimeMs;
+        private final long averageTimeMs;
+        private final long rows;
+
+        public SlowQuery(String query, QueryStatistics stats) {
+            this.query = query;
+            this.executions = stats.getExecutionCount();
+            this.maxTimeMs = stats.getExecutionMaxTime();
+            this.averageTimeMs = stats.getExecutionAvgTime();
+            this.rows = stats.getExecutionRowCount();
+        }
+
+        public String getQuery() { return query; }
+        public long getExecutions() { return executions; }
+        public long getMaxTimeMs() { return maxTimeMs; }
+        public long getAverageTimeMs() { return averageTimeMs; }
+        public long getRows() { return rows; }
+    }
+}
@@ -0,0 +1,73 @@
+package com.asist.service;
+
+import com.asist.model.OutboxEvent;
+import com.asist.model.OutboxEvent.EventType;
+import com.asist.service.ReportSuggestService.Field;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Mantiene el autocompletado (ReportSuggestService) a partir de los eventos del outbox
+ *
+ * Por cada lote se reúnen los títulos y ubicaciones afectados (los nuevos y,
+ * en una modificación, los anteriores) y se vuelven a contar con consultas
+ * IN. Procesar un lote dos veces deja el mismo resultado. Un borrado total
+ * reconstruye los tries: los eventos posteriores de los demás shards pueden
+ * haberse procesado ya.
+ *
+ * Como el índice de casi duplicados, los tries están en la memoria de cada
+ * nodo y cada nodo lee los eventos de todos los shards con su propia posición.
+ */
+@Service
+public class SuggestConsumer implements OutboxConsumer {
+
+    @Autowired
+    private ReportSuggestService suggestService;
+
+    @Autowired
+    private LocationDictionary locationDictionary;
+
+    @Override
+    public String getName() {
+        return "suggest";
+    }
+
+    @Override
+    public boolean isNodeLocal() {
+        return true;
+    }
+
+    @Override
+    public void rebuild() {
+        suggestService.rebuild();
+    }
+
+    @Override
+    public void handle(List<OutboxEvent> events) {
+        Map<Field, Set<String>> changed = new EnumMap<>(Field.class);
+        for (OutboxEvent event : events) {
+            if (event.getEventType() == EventType.REPORTS_DELETED_ALL) {
+                suggestService.rebuild();
+                changed.clear();
+                continue;
+            }
+            add(changed, Field.TITLE, event.getTitle());
+            add(changed, Field.TITLE, event.getPreviousTitle());
+            add(changed, Field.LOCATION, locationDictionary.nameOf(event.getLocationId()));
+            add(changed, Field.LOCATION, locationDictionary.nameOf(event.getPreviousLocationId()));
+        }
+        suggestService.recount(changed);
+    }
+
+    private static void add(Map<Field, Set<String>> changed, Field field, String value) {
+        if (value != null) {
+            changed.computeIfAbsent(field, key -> new HashSet<>()).add(value);
+        }
+    }
+}
@@ -0,0 +1,443 @@
+package com.asist.service;
+
+import com.asist.model.User;
+import com.asist.repository.UserRepository;
+import com.asist.service.AuditJournal.Action;
+import com.asist.service.AuditJournal.EntityType;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Alta masiva de usuarios desde CSV o NDJSON
+ *
+ * El fichero se lee en streaming por lotes de asist.user-import.batch-size
+ * filas. En cada lote se validan las filas con las mismas reglas que el
+ * registro, se descartan los emails y nombres de usuario repetidos (en el
+ * propio fichero o ya registrados, con una consulta IN por lote), se
+ * calculan los hash BCrypt en paralelo y se insertan usuarios y roles con
+ * dos INSERT por lotes de JDBC.
+ *
+ * Los hash se calculan en un ForkJoinPool compartido por todas las
+ * importaciones con tantos hilos como núcleos (asist.user-import.parallelism),
+ * de modo que varias importaciones a la vez no saturan la CPU del resto del
+ * servidor más allá de ese límite.
+ *
+ * CSV: la primera línea es la cabecera, con las columnas username, email,
+ * password y, opcionalmente, roles (separados por ';'). NDJSON: un objeto
+ * por línea con username, email, password y roles (array).
+ */
+@Service
+public class UserImportService {
+
+    public enum Format { CSV, NDJSON }
+
+    public enum RowStatus { CREATED, INVALID, DUPLICATE, FAILED }
+
+    @Value("${asist.user-import.batch-size:500}")
+    private int batchSize;
+
+    @Value("${asist.user-import.max-rows:100000}")
+    private int maxRows;
+
+    @Value("${asist.user-import.parallelism:0}")
+    private int parallelism;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private UserUniquenessFilter uniquenessFilter;
+
+    @Autowired
+    private AuditJournal auditJournal;
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private ForkJoinPool hashPool;
+
+    @PostConstruct
+    public void init() {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        hashPool = new ForkJoinPool(threads);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hashPool.shutdown();
+    }
+
+    /**
+     * Importa los usuarios del fichero y devuelve el resultado de cada fila
+     *
+     * @throws IllegalArgumentException si la cabecera CSV no tiene las columnas obligatorias
+     */
+    public ImportResult importUsers(InputStream input, Format format) throws IOException {
+        ImportResult result = new ImportResult();
+        Set<String> seenEmails = new HashSet<>();
+        Set<String> seenUsernames = new HashSet<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+
+        int[] columns = null;
+        if (format == Format.CSV) {
+            String header = reader.readLine();
+            columns = csvColumns(header != null ? header.replace("\uFEFF", "") : "");
+        }
+
+        int line = format == Format.CSV ? 1 : 0;
+        List<ImportRow> batch = new ArrayList<>(batchSize);
+        String text;
+        while ((text = reader.readLine()) != null) {
+            line++;
+            if (text.isBlank()) {
+                continue;
+            }
+            if (result.total == maxRows) {
+                result.truncated = true;
+                break;
+            }
+            result.total++;
+            batch.add(parse(text, line, format, columns));
+            if (batch.size() == batchSize) {
+                processBatch(batch, seenEmails, seenUsernames, result);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            processBatch(batch, seenEmails, seenUsernames, result);
+        }
+        result.rows.sort(Comparator.comparingInt(RowResult::getLine));
+        return result;
+    }
+
+    private void processBatch(List<ImportRow> batch, Set<String> seenEmails, Set<String> seenUsernames,
+                              ImportResult result) {
+        // 1. Validación y repetidos dentro del fichero
+        List<ImportRow> candidates = new ArrayList<>();
+        for (ImportRow row : batch) {
+            if (row.error == null) {
+                Set<ConstraintViolation<ImportRow>> violations = validator.validate(row);
+                if (!violations.isEmpty()) {
+                    ConstraintViolation<ImportRow> violation = violations.iterator().next();
+                    row.error = violation.getPropertyPath() + ": " + violation.getMessage();
+                }
+            }
+            if (row.error != null) {
+                result.add(row, RowStatus.INVALID, null, row.error);
+            } else if (!seenEmails.add(row.email)) {
+                result.add(row, RowStatus.DUPLICATE, null, "Email repetido en el fichero");
+            } else if (!seenUsernames.add(row.username)) {
+                result.add(row, RowStatus.DUPLICATE, null, "Nombre de usuario repetido en el fichero");
+            } else {
+                candidates.add(row);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return;
+        }
+
+        // 2. Ya registrados: una consulta por columna para todo el lote
+        Set<String> existingEmails = existing("email", candidates.stream().map(r -> r.email).toList());
+        Set<String> existingUsernames = existing("username", candidates.stream().map(r -> r.username).toList());
+        List<ImportRow> rows = new ArrayList<>(candidates.size());
+        for (ImportRow row : candidates) {
+            if (existingEmails.contains(row.email)) {
+                result.add(row, RowStatus.DUPLICATE, null, "El email ya está registrado");
+            } else if (existingUsernames.contains(row.username)) {
+                result.add(row, RowStatus.DUPLICATE, null, "El nombre de usuario ya está en uso");
+            } else {
+                rows.add(row);
+            }
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        // 3. Hash de las contraseñas en paralelo
+        try {
+            hashPool.submit(() -> rows.parallelStream()
+                    .forEach(row -> row.passwordHash = passwordEncoder.encode(row.password))).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Importación interrumpida", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error al calcular los hash de las contraseñas", e.getCause());
+        }
+
+        // 4. Inserción por lotes; si alguien registra uno de los usuarios a la vez, fila a fila
+        Map<String, Long> ids;
+        try {
+            ids = transactionTemplate.execute(status -> insertBatch(rows));
+        } catch (DataIntegrityViolationException e) {
+            ids = new HashMap<>();
+            for (ImportRow row : rows) {
+                try {
+                    User saved = userRepository.save(new User(row.username, row.passwordHash, row.email, row.roles));
+                    ids.put(row.email, saved.getId());
+                } catch (DataIntegrityViolationException duplicate) {
+                    result.add(row, RowStatus.DUPLICATE, null, "El email o el nombre de usuario ya están registrados");
+                } catch (RuntimeException failure) {
+                    result.add(row, RowStatus.FAILED, null, failure.getMessage());
+                }
+            }
+        }
+        for (ImportRow row : rows) {
+            Long id = ids.get(row.email);
+            if (id != null) {
+                uniquenessFilter.add(row.email, row.username);
+                auditJournal.record(EntityType.USER, id, Action.CREATE, "import");
+                result.add(row, RowStatus.CREATED, id, null);
+            }
+        }
+    }
+
+    private Map<String, Long> insertBatch(List<ImportRow> rows) {
+        SqlParameterSource[] users = new SqlParameterSource[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            ImportRow row = rows.get(i);
+            users[i] = new MapSqlParameterSource()
+                    .addValue("username", row.username)
+                    .addValue("password", row.passwordHash)
+                    .addValue("email", row.email);
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO users (username, password, email) VALUES (:username, :password, :email)",
+                users);
+
+        Map<String, Long> ids = new HashMap<>();
+        jdbcTemplate.query("SELECT id, email FROM users WHERE email IN (:emails)",
+                new MapSqlParameterSource("emails", rows.stream().map(r -> r.email).toList()),
+                rs -> {
+                    ids.put(rs.getString("email"), rs.getLong("id"));
+                });
+
+        List<SqlParameterSource> roles = new ArrayList<>();
+        for (ImportRow row : rows) {
+            for (String role : row.roles) {
+                roles.add(new MapSqlParameterSource()
+                        .addValue("userId", ids.get(row.email))
+                        .addValue("role", role));
+            }
+        }
+        if (!roles.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO user_roles (user_id, role) VALUES (:userId, :role)",
+                    roles.toArray(new SqlParameterSource[0]));
+        }
+        return ids;
+    }
+
+    private Set<String> existing(String column, List<String> values) {
+        return new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT " + column + " FROM users WHERE " + column + " IN (:values)",
+                new MapSqlParameterSource("values", values), String.class));
+    }
+
+    private ImportRow parse(String text, int line, Format format, int[] columns) {
+        ImportRow row;
+        try {
+            if (format == Format.NDJSON) {
+                row = objectMapper.readValue(text, ImportRow.class);
+            } else {
+                List<String> fields = parseCsvLine(text);
+                row = new ImportRow();
+                row.username = field(fields, columns[0]);
+                row.email = field(fields, columns[1]);
+                row.password = field(fields, columns[2]);
+                String roles = field(fields, columns[3]);
+                if (roles != null && !roles.isBlank()) {
+                    row.roles = new LinkedHashSet<>(Arrays.asList(roles.trim().split("\\s*;\\s*")));
+                }
+            }
+        } catch (Exception e) {
+            row = new ImportRow();
+            row.error = "Fila mal formada";
+        }
+        row.line = line;
+        if (row.username != null) {
+            row.username = row.username.trim();
+        }
+        if (row.email != null) {
+            row.email = row.email.trim();
+        }
+        if (row.roles == null) {
+            row.roles = new LinkedHashSet<>();
+        }
+        return row;
+    }
+
+    private static int[] csvColumns(String header) {
+        List<String> names = parseCsvLine(header);
+        int[] columns = new int[4];
+        String[] wanted = {"username", "email", "password", "roles"};
+        for (int i = 0; i < wanted.length; i++) {
+            columns[i] = -1;
+            for (int j = 0; j < names.size(); j++) {
+                if (names.get(j).trim().toLowerCase(Locale.ROOT).equals(wanted[i])) {
+                    columns[i] = j;
+                }
+            }
+            if (columns[i] < 0 && i < 3) {
+                throw new IllegalArgumentException("Falta la columna " + wanted[i] + " en la cabecera");
+            }
+        }
+        return columns;
+    }
+
+    private static String field(List<String> fields, int index) {
+        return index >= 0 && index < fields.size() ? fields.get(index) : null;
+    }
+
+    /**
+     * Separa una línea CSV (RFC 4180, comillas dobles con "" como escape)
+     */
+    static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Comillas sin cerrar");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * Fila del fichero, con las mismas reglas de validación que el registro
+     */
+    public static class ImportRow {
+        @NotBlank(message = "El username es obligatorio")
+        @Size(min = 3, max = 50)
+        private String username;
+        @NotBlank(message = "El email es obligatorio")
+        @Email(message = "Email no válido")
+        private String email;
+        @NotBlank(message = "La contraseña es obligatoria")
+        @Size(min = 8, max = 128, message = "La contraseña debe tener entre 8 y 128 caracteres")
+        private String password;
+        private Set<String> roles;
+
+        private int line;
+        private String error;
+        private String passwordHash;
+
+        public void setUsername(String username) { this.username = username; }
+        public void setEmail(String email) { this.email = email; }
+        public void setPassword(String password) { this.password = password; }
+        public void setRoles(Set<String> roles) { this.roles = roles; }
+    }
+
+    /**
+     * Resultado de una fila importada
+     */
+    public static class RowResult {
+        private final int line;
+        private final String email;
+        private final RowStatus status;
+        private final Long userId;
+        private final String message;
+
+        public RowResult(int line, String email, RowStatus status, Long userId, String message) {
+            this.line = line;
+            this.email = email;
+            this.status = status;
+            this.userId = userId;
+            this.message = message;
+        }
+
+        public int getLine() { return line; }
+        public String getEmail() { return email; }
+        public RowStatus getStatus() { return status; }
+        public Long getUserId() { return userId; }
+        public String getMessage() { return message; }
+    }
+
+    /**
+     * Resultado de la importación: totales y resultado de cada fila, por número de línea
+     */
+    public static class ImportResult {
+        private int total;
+        private int created;
+        private int rejected;
+        private boolean truncated;
+        private final List<RowResult> rows = new ArrayList<>();
+
+        void add(ImportRow row, RowStatus status, Long userId, String message) {
+            rows.add(new RowResult(row.line, row.email, status, userId, message));
+            if (status == RowStatus.CREATED) {
+                created++;
+            } else {
+                rejected++;
+            }
+        }
+
+        public int getTotal() { return total; }
+        public int getCreated() { return created; }
+        public int getRejected() { return rejected; }
+        public boolean isTruncated() { return truncated; }
+        public List<RowResult> getRows() { return rows; }
+    }
+}
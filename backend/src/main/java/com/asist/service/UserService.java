@@ -2,11 +2,18 @@ package com.asist.service;
 
 import com.asist.model.User;
 import com.asist.repository.UserRepository;
+import com.asist.service.AuditJournal.Action;
+import com.asist.service.AuditJournal.EntityType;
+import org.hibernate.Hibernate;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 @Service
@@ -16,7 +23,16 @@ public class UserService {
     private UserRepository userRepository;
 
     @Autowired
-    private BCryptPasswordEncoder passwordEncoder;
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private RefreshTokenStore refreshTokenStore;
+
+    @Autowired
+    private AuditJournal auditJournal;
+
+    @Autowired
+    private UserUniquenessFilter uniquenessFilter;
 
     /**
      * Registra un nuevo usuario con contraseña hasheada
@@ -24,7 +40,10 @@ public class UserService {
     public User registerUser(User user) {
         // Hashear la contraseña antes de guardar
         user.setPassword(passwordEncoder.encode(user.getPassword()));
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        uniquenessFilter.add(saved.getEmail(), saved.getUsername());
+        auditJournal.record(EntityType.USER, saved.getId(), Action.CREATE, "register");
+        return saved;
     }
 
     /**
@@ -41,6 +60,27 @@ public class UserService {
         return userRepository.findById(id);
     }
 
+    /**
+     * Busca usuario por ID con sus roles cargados, para devolverlo en una respuesta
+     * (sin open-in-view la sesión se cierra antes de serializarlo)
+     */
+    @Transactional(readOnly = true)
+    public Optional<User> findByIdWithRoles(Long id) {
+        Optional<User> user = userRepository.findById(id);
+        user.ifPresent(found -> Hibernate.initialize(found.getRoles()));
+        return user;
+    }
+
+    /**
+     * Página de usuarios con sus roles cargados (una consulta IN para toda la página)
+     */
+    @Transactional(readOnly = true)
+    public Page<User> findPage(Pageable pageable) {
+        Page<User> page = userRepository.findAll(pageable);
+        page.forEach(user -> Hibernate.initialize(user.getRoles()));
+        return page;
+    }
+
     /**
      * Obtiene todos los usuarios
      */
@@ -52,21 +92,45 @@ public class UserService {
      * Actualiza información del usuario
      */
     public User updateUser(User user) {
-        return userRepository.save(user);
+        // Email y contraseña guardados antes del cambio (sin transacción, la entidad recibida está separada)
+        Optional<User> previous = user.getId() == null ? Optional.empty() : userRepository.findById(user.getId());
+        String oldEmail = previous.map(User::getEmail).orElse(null);
+        String oldPassword = previous.map(User::getPassword).orElse(null);
+        User saved = userRepository.save(user);
+        // Los valores anteriores quedan en el filtro como falsos positivos
+        uniquenessFilter.add(saved.getEmail(), saved.getUsername());
+        if (oldEmail != null && (!oldEmail.equals(saved.getEmail()) || !Objects.equals(oldPassword, saved.getPassword()))) {
+            // Las familias van por email: se cierran las sesiones de la cuenta anterior
+            refreshTokenStore.revokeAllForUser(oldEmail);
+        }
+        auditJournal.record(EntityType.USER, saved.getId(), Action.UPDATE, null);
+        return saved;
     }
 
     /**
      * Elimina usuario por ID
      */
     public void deleteUser(Long id) {
+        Optional<User> user = userRepository.findById(id);
         userRepository.deleteById(id);
+        // El email y el nombre de usuario quedan en el filtro como falsos positivos
+        user.ifPresent(deleted -> refreshTokenStore.revokeAllForUser(deleted.getEmail()));
+        auditJournal.record(EntityType.USER, id, Action.DELETE, null);
     }
 
     /**
      * Verifica si existe un usuario con el email dado
+     * (sin consultar la base de datos si el filtro indica que no existe)
      */
     public boolean existsByEmail(String email) {
-        return userRepository.existsByEmail(email);
+        return uniquenessFilter.mightContainEmail(email) && userRepository.existsByEmail(email);
+    }
+
+    /**
+     * Verifica si existe un usuario con el nombre de usuario dado
+     */
+    public boolean existsByUsername(String username) {
+        return uniquenessFilter.mightContainUsername(username) && userRepository.existsByUsername(username);
     }
 
     /**
@@ -91,6 +155,9 @@ public class UserService {
             if (passwordEncoder.matches(oldPassword, user.getPassword())) {
                 user.setPassword(passwordEncoder.encode(newPassword));
                 userRepository.save(user);
+                // Las sesiones abiertas con la contraseña anterior dejan de poder refrescarse
+                refreshTokenStore.revokeAllForUser(user.getEmail());
+                auditJournal.record(EntityType.USER, userId, Action.PASSWORD_CHANGE, null);
                 return true;
             }
         }
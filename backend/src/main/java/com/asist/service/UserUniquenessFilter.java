@@ -0,0 +1,198 @@
+package com.asist.service;
+
+import com.asist.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Filtro de Bloom de los emails y nombres de usuario registrados
+ *
+ * Permite responder "seguro que no existe" sin consultar la base de datos en
+ * el registro. Un "puede que exista" se confirma con la consulta habitual, y
+ * las restricciones unique de la tabla siguen siendo la garantía final.
+ *
+ * Solo se añaden valores: los usuarios borrados y los emails y nombres
+ * anteriores de un usuario modificado quedan como falsos positivos. Quitarlos
+ * podría dar falsos negativos, porque varios valores comparten posiciones y
+ * una baja puede cruzarse con un alta del mismo valor (en este nodo o
+ * recibida de otro). Los valores se comparan en minúsculas y sin espacios,
+ * lo que también solo añade falsos positivos.
+ *
+ * Hasta que termina la carga inicial todas las consultas se tratan como
+ * "puede que exista".
+ *
+ * Los usuarios añadidos se publican a los demás nodos (CacheInvalidationBus)
+ * para que sus filtros no den falsos negativos.
+ */
+@Service
+public class UserUniquenessFilter implements CacheInvalidationListener {
+
+    private static final String CACHE_NAME = "user-filter";
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CacheInvalidationBus cacheBus;
+
+    @Value("${asist.user-filter.load-batch-size:5000}")
+    private int loadBatchSize;
+
+    private final long[] bits;
+    private final int size;
+    private final int hashes;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean loaded;
+
+    public UserUniquenessFilter(@Value("${asist.user-filter.expected-users:500000}") long expectedUsers,
+                                @Value("${asist.user-filter.false-positive-rate:0.01}") double falsePositiveRate) {
+        // Dos claves por usuario (email y nombre de usuario)
+        long keys = Math.max(1, expectedUsers * 2);
+        long size = (long) Math.ceil(-keys * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.size = (int) Math.min(Integer.MAX_VALUE - 64, Math.max(64, size));
+        this.bits = new long[(this.size + 63) / 64];
+        this.hashes = Math.max(1, (int) Math.round((double) this.size / keys * Math.log(2)));
+    }
+
+    /**
+     * Carga los usuarios existentes por bloques
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long afterId = 0;
+        long count = 0;
+        while (true) {
+            List<Object[]> rows = userRepository.findIdentities(afterId, PageRequest.of(0, loadBatchSize));
+            for (Object[] row : rows) {
+                update("e:", (String) row[1]);
+                update("u:", (String) row[2]);
+            }
+            count += rows.size();
+            if (rows.size() < loadBatchSize) {
+                break;
+            }
+            afterId = (Long) rows.get(rows.size() - 1)[0];
+        }
+        loaded = true;
+        System.out.println("Filtro de usuarios cargado: " + count + " usuarios");
+    }
+
+    public boolean mightContainEmail(String email) {
+        return mightContain("e:", email);
+    }
+
+    public boolean mightContainUsername(String username) {
+        return mightContain("u:", username);
+    }
+
+    /**
+     * Añade un usuario registrado
+     */
+    public void add(String email, String username) {
+        update("e:", email);
+        update("u:", username);
+        if (email != null) {
+            cacheBus.publish(CACHE_NAME, "e:" + email);
+        }
+        if (username != null) {
+            cacheBus.publish(CACHE_NAME, "u:" + username);
+        }
+    }
+
+    @Override
+    public String getCacheName() {
+        return CACHE_NAME;
+    }
+
+    /**
+     * Usuarios añadidos en otro nodo (claves "e:email" y "u:nombre")
+     */
+    @Override
+    public void invalidate(Set<String> keys) {
+        for (String key : keys) {
+            update(key.substring(0, 2), key.substring(2));
+        }
+    }
+
+    /**
+     * Se han perdido altas de otros nodos: hasta recargar, todo "puede que exista"
+     */
+    @Override
+    public void invalidateAll() {
+        loaded = false;
+        lock.writeLock().lock();
+        try {
+            Arrays.fill(bits, 0L);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        load();
+    }
+
+    private boolean mightContain(String prefix, String value) {
+        if (!loaded || value == null) {
+            return true;
+        }
+        long hash = hash(prefix, value);
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < hashes; i++) {
+                int index = index(hash, i);
+                if ((bits[index >>> 6] & (1L << index)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void update(String prefix, String value) {
+        if (value == null) {
+            return;
+        }
+        long hash = hash(prefix, value);
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < hashes; i++) {
+                int index = index(hash, i);
+                bits[index >>> 6] |= 1L << index;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Posición i-ésima por doble hashing a partir de las dos mitades del hash
+     */
+    private int index(long hash, int i) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        return Math.floorMod(h1 + i * h2, size);
+    }
+
+    private static long hash(String prefix, String value) {
+        byte[] bytes = (prefix + value.trim().toLowerCase(Locale.ROOT)).getBytes(StandardCharsets.UTF_8);
+        long h = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            h = (h ^ (b & 0xFF)) * 0x100000001b3L;
+        }
+        // Mezcla final para repartir bien los bits altos y bajos
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+    }
+}
@@ -0,0 +1,70 @@
+package com.asist;
+
+import com.asist.service.SqlStatistics;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+
+/**
+ * Presupuesto de sentencias SQL por llamada a un endpoint
+ *
+ * Cuenta con SqlStatistics.StatementCounter las sentencias que prepara
+ * Hibernate durante una llamada MockMvc, incluidas las de autenticación y
+ * las de los hilos de scatter, y falla si superan el presupuesto. Un
+ * endpoint que pasa a hacer una consulta por elemento (N+1) lo rompe.
+ */
+public final class StatementBudget {
+
+    private StatementBudget() {
+    }
+
+    /**
+     * MockMvc con la cadena de seguridad pero sin el filtro de
+     * SqlStatisticsConfig, que abriría su propio contador
+     */
+    public static MockMvc mockMvc(WebApplicationContext context) {
+        return MockMvcBuilders.webAppContextSetup(context).apply(springSecurity()).build();
+    }
+
+    /**
+     * Sentencias SQL que ejecuta la petición
+     */
+    public static int count(MockMvc mockMvc, RequestBuilder request) throws Exception {
+        AtomicInteger statements = SqlStatistics.begin();
+        try {
+            mockMvc.perform(request);
+        } finally {
+            SqlStatistics.end();
+        }
+        return statements.get();
+    }
+
+    /**
+     * Ejecuta la petición y falla si supera el presupuesto de sentencias
+     *
+     * @param endpoint nombre del endpoint para el mensaje de error
+     * @param budget máximo de sentencias permitidas
+     * @return el resultado, para comprobar la respuesta
+     */
+    public static ResultActions assertWithin(String endpoint, int budget, MockMvc mockMvc, RequestBuilder request)
+            throws Exception {
+        AtomicInteger statements = SqlStatistics.begin();
+        ResultActions result;
+        try {
+            result = mockMvc.perform(request);
+        } finally {
+            SqlStatistics.end();
+        }
+        int count = statements.get();
+        assertTrue(count <= budget,
+                () -> endpoint + ": " + count + " sentencias SQL, el presupuesto es " + budget);
+        return result;
+    }
+}
@@ -0,0 +1,59 @@
+package com.asist.config;
+
+import com.asist.model.Report;
+import com.asist.repository.ReportRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Con una réplica H2 distinta de la primaria, la réplica recibe el esquema al
+ * arrancar y las lecturas de los repositorios se sirven desde ella
+ */
+@SpringBootTest(properties = {
+        "asist.datasource.routing.enabled=true",
+        "asist.datasource.primary.jdbc-url=jdbc:h2:mem:routing_primary;DB_CLOSE_DELAY=-1",
+        "asist.datasource.replica.jdbc-url=jdbc:h2:mem:routing_replica;DB_CLOSE_DELAY=-1"
+})
+@ActiveProfiles("test")
+class DataSourceRoutingConfigTest {
+
+    @Autowired
+    @Qualifier("replicaDataSource")
+    private HikariDataSource replica;
+
+    @Autowired
+    private ReportRepository reportRepository;
+
+    @Test
+    void replicaGetsTheSchemaAndServesReads() throws Exception {
+        assertTrue(H2Schema.hasTable(replica, "reports"), "La réplica no tiene el esquema");
+
+        // Un reporte que solo existe en la réplica
+        try (Connection connection = replica.getConnection()) {
+            connection.setReadOnly(false);
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO reports (title, date, user_id) VALUES (?, ?, ?)")) {
+                insert.setString(1, "Solo en la réplica");
+                insert.setTimestamp(2, Timestamp.valueOf(LocalDateTime.of(2025, 1, 1, 12, 0)));
+                insert.setLong(3, 1L);
+                insert.executeUpdate();
+            }
+        }
+
+        List<Report> reports = reportRepository.findAll();
+        assertTrue(reports.stream().anyMatch(report -> "Solo en la réplica".equals(report.getTitle())),
+                "findAll no se ha servido desde la réplica");
+    }
+}
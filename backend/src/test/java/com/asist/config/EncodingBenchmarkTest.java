@@ -0,0 +1,136 @@
+package com.asist.config;
+
+import com.asist.model.Report;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tiempo de codificación y bytes transferidos de listas de reportes en JSON,
+ * CBOR y Smile, sin comprimir y con gzip (como los sirve WebConfig)
+ *
+ * No se ejecuta con mvn test: mvn -Pbenchmark test. Los mapeadores se
+ * construyen como en WebConfig, a partir de Jackson2ObjectMapperBuilder.
+ * Los resultados se escriben en target/benchmarks/encoding.csv.
+ */
+@Tag("benchmark")
+class EncodingBenchmarkTest {
+
+    private static final int[] SIZES = {1_000, 100_000};
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+
+    private static final String[] LOCATIONS = {
+            "Calle Mayor", "Plaza de España", "Avenida de la Constitución", "Parque del Oeste", "Estación Norte"
+    };
+    private static final String[] TITLES = {
+            "Farola fundida", "Bache en la calzada", "Contenedor desbordado", "Semáforo averiado", "Pintada en fachada"
+    };
+
+    @Test
+    void encodeReportLists() throws IOException {
+        Map<String, ObjectMapper> mappers = new LinkedHashMap<>();
+        mappers.put("json", mapper(null));
+        mappers.put("cbor", mapper(new CBORFactory()));
+        mappers.put("smile", mapper(new SmileFactory()));
+
+        StringBuilder csv = new StringBuilder("format,reports,median_encode_ms,bytes,gzip_bytes\n");
+        for (int size : SIZES) {
+            List<Report> reports = reports(size);
+            for (Map.Entry<String, ObjectMapper> entry : mappers.entrySet()) {
+                ObjectMapper mapper = entry.getValue();
+                byte[] encoded = null;
+                for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                    encoded = mapper.writeValueAsBytes(reports);
+                }
+                long[] nanos = new long[MEASURED_ROUNDS];
+                for (int i = 0; i < MEASURED_ROUNDS; i++) {
+                    long start = System.nanoTime();
+                    encoded = mapper.writeValueAsBytes(reports);
+                    nanos[i] = System.nanoTime() - start;
+                }
+                Arrays.sort(nanos);
+                double medianMs = nanos[MEASURED_ROUNDS / 2] / 1_000_000.0;
+                int gzipBytes = gzip(encoded).length;
+
+                // Lo codificado se puede leer de nuevo en el mismo formato
+                JsonNode decoded = mapper.readTree(encoded);
+                assertEquals(size, decoded.size(), entry.getKey());
+
+                System.out.printf("%-6s %,8d reportes: %9.2f ms  %,12d bytes  %,12d bytes gzip%n",
+                        entry.getKey(), size, medianMs, encoded.length, gzipBytes);
+                csv.append(String.join(",", entry.getKey(), Integer.toString(size),
+                        String.format(Locale.ROOT, "%.3f", medianMs),
+                        Integer.toString(encoded.length), Integer.toString(gzipBytes))).append('\n');
+            }
+        }
+        Path out = Paths.get("target", "benchmarks", "encoding.csv");
+        Files.createDirectories(out.getParent());
+        Files.writeString(out, csv, StandardCharsets.UTF_8);
+    }
+
+    private static ObjectMapper mapper(JsonFactory factory) {
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        if (factory != null) {
+            builder.factory(factory);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Reportes con la forma de los reales: pocas ubicaciones y títulos repetidos
+     */
+    private static List<Report> reports(int count) {
+        Random random = new Random(42);
+        LocalDateTime base = LocalDateTime.of(2025, 1, 1, 0, 0);
+        List<Report> reports = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int location = random.nextInt(LOCATIONS.length);
+            Report report = new Report(TITLES[random.nextInt(TITLES.length)] + " " + i,
+                    "Descripción del reporte " + i + ": " + "incidencia comunicada por un vecino. ".repeat(1 + random.nextInt(3)),
+                    LOCATIONS[location], base.plusMinutes(i * 7L), 1L + random.nextInt(5_000));
+            report.setId((long) i + 1);
+            report.setLocationId((long) location + 1);
+            report.setChangeSeq((long) i + 1);
+            report.setUpdatedAt(report.getDate());
+            reports.add(report);
+        }
+        return reports;
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 4);
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
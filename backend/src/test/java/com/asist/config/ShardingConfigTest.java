@@ -0,0 +1,95 @@
+package com.asist.config;
+
+import com.asist.service.ReportShardRouter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Con dos shards H2, los reportes creados por la API se guardan en el shard
+ * de su usuario aunque la petición haya usado antes el shard 0 (diccionario
+ * de ubicaciones). Las páginas por desplazamiento demasiado profundas se
+ * rechazan.
+ */
+@SpringBootTest(properties = {"asist.sharding.enabled=true", "asist.sharding.count=2"})
+@ActiveProfiles("test")
+class ShardingConfigTest {
+
+    @Autowired
+    private WebApplicationContext context;
+
+    @Autowired
+    private ReportShardRouter shardRouter;
+
+    @Autowired
+    private ShardingConfig.ShardRoutingDataSource routing;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void createdReportsLandOnTheirUsersShard() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(context).apply(springSecurity()).build();
+
+        // Primero un usuario del shard 1: con open-in-view su reporte acabaría en el shard 0
+        Map<Integer, Long> userByShard = new LinkedHashMap<>();
+        for (long userId = 1; userByShard.size() < 2; userId++) {
+            int shard = shardRouter.shardForUser(userId);
+            if (userByShard.isEmpty() ? shard == 1 : shard == 0) {
+                userByShard.put(shard, userId);
+            }
+        }
+
+        for (Map.Entry<Integer, Long> entry : userByShard.entrySet()) {
+            int shard = entry.getKey();
+            String body = "{\"title\":\"Bache\",\"location\":\"Calle Mayor\","
+                    + "\"date\":\"2025-03-01T10:00:00\",\"userId\":" + entry.getValue() + "}";
+            String response = mockMvc.perform(post("/api/reports")
+                            .contentType(MediaType.APPLICATION_JSON).content(body)
+                            .with(user("user-" + entry.getValue())))
+                    .andExpect(status().isCreated())
+                    .andReturn().getResponse().getContentAsString();
+            long id = objectMapper.readTree(response).get("id").asLong();
+
+            assertEquals(shard, shardRouter.shardForReport(id), "ID de reporte fuera de su shard");
+            assertEquals(1, countReport(shard, id), "El reporte no está en el shard de su usuario");
+            assertEquals(0, countReport(1 - shard, id), "El reporte está en otro shard");
+        }
+    }
+
+    @Test
+    void deepPagesAreRejectedWhenSharded() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(context).apply(springSecurity()).build();
+
+        // (page + 1) * size por encima del límite: cada shard tendría que leer todas esas filas
+        mockMvc.perform(get("/api/reports").param("page", "100").param("size", "500")
+                        .with(user("admin").roles("ADMIN")))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/reports").param("page", "0").param("size", "20")
+                        .with(user("admin").roles("ADMIN")))
+                .andExpect(status().is2xxSuccessful());
+    }
+
+    private int countReport(int shard, long id) {
+        Integer count = new JdbcTemplate(routing.shard(shard))
+                .queryForObject("SELECT COUNT(*) FROM reports WHERE id = ?", Integer.class, id);
+        return count != null ? count : 0;
+    }
+}
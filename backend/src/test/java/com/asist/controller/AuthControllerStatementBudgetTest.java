@@ -0,0 +1,94 @@
+package com.asist.controller;
+
+import com.asist.StatementBudget;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.UUID;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Presupuestos de sentencias SQL de AuthController
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class AuthControllerStatementBudgetTest {
+
+    private static final String PASSWORD = "contraseña-segura";
+
+    @Autowired
+    private WebApplicationContext context;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private MockMvc mockMvc;
+    private String email;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = StatementBudget.mockMvc(context);
+        email = "auth-" + UUID.randomUUID() + "@asist.test";
+    }
+
+    @Test
+    void register() throws Exception {
+        // Alta del usuario y carga del usuario y sus roles al autenticarlo
+        StatementBudget.assertWithin("POST /api/auth/register", 5, mockMvc, register(email))
+                .andExpect(status().isCreated());
+    }
+
+    @Test
+    void login() throws Exception {
+        mockMvc.perform(register(email)).andExpect(status().isCreated());
+        // Usuario y roles al autenticar y de nuevo al construir la respuesta
+        StatementBudget.assertWithin("POST /api/auth/login", 4, mockMvc,
+                        post("/api/auth/login").contentType(MediaType.APPLICATION_JSON)
+                                .content(json("email", email, "password", PASSWORD)))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void refreshToken() throws Exception {
+        String body = mockMvc.perform(register(email)).andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        String refreshToken = objectMapper.readTree(body).get("refreshToken").asText();
+        // La rotación es en memoria: ninguna sentencia
+        StatementBudget.assertWithin("POST /api/auth/refresh-token", 0, mockMvc,
+                        post("/api/auth/refresh-token").contentType(MediaType.APPLICATION_JSON)
+                                .content(json("refreshToken", refreshToken)))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void rejectedLoginForUnknownUser() throws Exception {
+        StatementBudget.assertWithin("POST /api/auth/login", 2, mockMvc,
+                        post("/api/auth/login").contentType(MediaType.APPLICATION_JSON)
+                                .content(json("email", email, "password", PASSWORD)))
+                .andExpect(status().isUnauthorized());
+    }
+
+    private RequestBuilder register(String email) throws Exception {
+        String username = email.substring(0, email.indexOf('@'));
+        return post("/api/auth/register").contentType(MediaType.APPLICATION_JSON)
+                .content(json("username", username, "email", email, "password", PASSWORD));
+    }
+
+    private String json(String... fields) throws Exception {
+        var node = objectMapper.createObjectNode();
+        for (int i = 0; i < fields.length; i += 2) {
+            node.put(fields[i], fields[i + 1]);
+        }
+        return objectMapper.writeValueAsString(node);
+    }
+}
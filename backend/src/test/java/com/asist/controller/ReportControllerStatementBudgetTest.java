@@ -0,0 +1,143 @@
+package com.asist.controller;
+
+import com.asist.StatementBudget;
+import com.asist.model.Report;
+import com.asist.model.User;
+import com.asist.repository.UserRepository;
+import com.asist.service.JwtService;
+import com.asist.service.ReportService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Presupuestos de sentencias SQL de ReportController
+ *
+ * Los listados se miden con pocos y con muchos reportes: el número de
+ * sentencias no debe depender del tamaño de la página ni de los datos.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class ReportControllerStatementBudgetTest {
+
+    // Autenticación JWT: carga del usuario y de sus roles
+    private static final int AUTH = 2;
+
+    @Autowired
+    private WebApplicationContext context;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private ReportService reportService;
+
+    private MockMvc mockMvc;
+    private User user;
+    private String authorization;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = StatementBudget.mockMvc(context);
+        String name = "budget-" + UUID.randomUUID();
+        user = userRepository.save(new User(name, "-", name + "@asist.test", Set.of("USER")));
+        authorization = "Bearer " + jwtService.generateToken(
+                org.springframework.security.core.userdetails.User.withUsername(user.getEmail())
+                        .password("").authorities("ROLE_USER").build());
+    }
+
+    @Test
+    void getReportById() throws Exception {
+        Report report = seed(1).get(0);
+        StatementBudget.assertWithin("GET /api/reports/{id}", AUTH + 1, mockMvc,
+                        get("/api/reports/{id}", report.getId()).header(HttpHeaders.AUTHORIZATION, authorization))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void getPageDoesNotDependOnPageSize() throws Exception {
+        seed(40);
+        int small = StatementBudget.count(mockMvc,
+                get("/api/reports").param("page", "0").param("size", "5")
+                        .header(HttpHeaders.AUTHORIZATION, authorization));
+        int large = StatementBudget.count(mockMvc,
+                get("/api/reports").param("page", "0").param("size", "40")
+                        .header(HttpHeaders.AUTHORIZATION, authorization));
+        assertEquals(small, large, "GET /api/reports?page= depende del tamaño de página");
+        StatementBudget.assertWithin("GET /api/reports?page=", AUTH + 2, mockMvc,
+                        get("/api/reports").param("page", "1").param("size", "20")
+                                .header(HttpHeaders.AUTHORIZATION, authorization))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void getReportsByIds() throws Exception {
+        String ids = seed(30).stream().map(r -> r.getId().toString()).collect(Collectors.joining(","));
+        StatementBudget.assertWithin("GET /api/reports?ids=", AUTH + 1, mockMvc,
+                        get("/api/reports").param("ids", ids).header(HttpHeaders.AUTHORIZATION, authorization))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void queryByUser() throws Exception {
+        seed(30);
+        StatementBudget.assertWithin("GET /api/reports/query", AUTH + 1, mockMvc,
+                        get("/api/reports/query").param("userId", user.getId().toString()).param("limit", "25")
+                                .header(HttpHeaders.AUTHORIZATION, authorization))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void getChanges() throws Exception {
+        List<Report> reports = seed(30);
+        // Con cursor: contadores de reinicio y de marcas, reportes y marcas de borrado
+        StatementBudget.assertWithin("GET /api/reports/changes", AUTH + 4, mockMvc,
+                        get("/api/reports/changes").param("since", reports.get(0).getChangeSeq().toString())
+                                .header(HttpHeaders.AUTHORIZATION, authorization))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void createReport() throws Exception {
+        seed(1);
+        String body = "{\"title\":\"Farola fundida\",\"description\":\"Sin luz desde ayer\","
+                + "\"location\":\"Calle Mayor\",\"date\":\"2025-03-01T20:00:00\",\"userId\":" + user.getId() + "}";
+        // Secuencia de cambios (bloqueo y actualización), alta y evento de outbox;
+        // agregados, mapa de densidad y autocompletado los actualizan los consumidores del outbox
+        StatementBudget.assertWithin("POST /api/reports", AUTH + 4, mockMvc,
+                        post("/api/reports").contentType(MediaType.APPLICATION_JSON).content(body)
+                                .header(HttpHeaders.AUTHORIZATION, authorization))
+                .andExpect(status().isCreated());
+    }
+
+    private List<Report> seed(int count) {
+        List<Report> reports = new ArrayList<>(count);
+        LocalDateTime date = LocalDateTime.of(2025, 1, 1, 9, 0);
+        for (int i = 0; i < count; i++) {
+            reports.add(reportService.createReport(new Report("Bache " + i, "Reporte de prueba",
+                    "Calle Mayor", date.plusHours(i), user.getId())));
+        }
+        return reports;
+    }
+}
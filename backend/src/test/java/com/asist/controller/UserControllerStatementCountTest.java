@@ -0,0 +1,65 @@
+package com.asist.controller;
+
+import com.asist.StatementBudget;
+import com.asist.model.User;
+import com.asist.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * El listado paginado de usuarios carga los roles de toda la página en una
+ * sola consulta: el número de sentencias no crece con los usuarios de la página
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class UserControllerStatementCountTest {
+
+    // Con 2N usuarios la página sigue por debajo del @BatchSize de User.roles
+    private static final int N = 25;
+
+    @Autowired
+    private WebApplicationContext context;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void pageOfUsersCostsTheSameForNAnd2NUsers() throws Exception {
+        MockMvc mockMvc = StatementBudget.mockMvc(context);
+
+        seedUsers(N);
+        int withN = StatementBudget.count(mockMvc, get("/api/users")
+                .param("page", "0").param("size", Integer.toString(N))
+                .with(user("admin").roles("ADMIN")));
+
+        seedUsers(N);
+        int with2N = StatementBudget.count(mockMvc, get("/api/users")
+                .param("page", "0").param("size", Integer.toString(2 * N))
+                .with(user("admin").roles("ADMIN")));
+
+        assertEquals(withN, with2N, "GET /api/users: las sentencias crecen con los usuarios de la página");
+    }
+
+    private void seedUsers(int count) {
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String name = "roles-" + UUID.randomUUID();
+            Set<String> roles = i % 2 == 0 ? Set.of("USER") : Set.of("USER", "ADMIN");
+            users.add(new User(name, "-", name + "@asist.test", roles));
+        }
+        userRepository.saveAll(users);
+    }
+}
@@ -0,0 +1,63 @@
+package com.asist.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Sobre una tabla con la columna de texto antigua, la migración rellena
+ * location_id (las variantes comparten ID), deja sin ubicación los reportes
+ * con location NULL y elimina la columna
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class LocationMigrationTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private LocationMigration locationMigration;
+
+    @Autowired
+    private LocationDictionary locationDictionary;
+
+    @Test
+    void backfillsLocationIdsBeforeDroppingTheColumn() {
+        jdbcTemplate.execute("ALTER TABLE reports ADD COLUMN location VARCHAR(255)");
+        String prefix = "migracion-" + UUID.randomUUID();
+        insertLegacy(prefix + "-1", "Plaza  Mayor.");
+        insertLegacy(prefix + "-2", "plaza mayor");
+        insertLegacy(prefix + "-3", null);
+
+        locationMigration.migrate();
+
+        Long plazaMayor = locationDictionary.find("Plaza Mayor").orElseThrow();
+        assertEquals(plazaMayor, locationIdOf(prefix + "-1"));
+        assertEquals(plazaMayor, locationIdOf(prefix + "-2"));
+        assertNull(locationIdOf(prefix + "-3"), "Un reporte sin ubicación no debe recibir una");
+        Integer legacyColumns = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS WHERE UPPER(TABLE_NAME) = 'REPORTS'"
+                        + " AND UPPER(COLUMN_NAME) = 'LOCATION'", Integer.class);
+        assertTrue(legacyColumns != null && legacyColumns == 0, "La columna location no se ha eliminado");
+    }
+
+    private void insertLegacy(String title, String location) {
+        jdbcTemplate.update("INSERT INTO reports (title, date, user_id, location) VALUES (?, ?, ?, ?)",
+                title, Timestamp.valueOf(LocalDateTime.of(2024, 6, 1, 9, 0)), 1L, location);
+    }
+
+    private Long locationIdOf(String title) {
+        return jdbcTemplate.queryForObject("SELECT location_id FROM reports WHERE title = ?", Long.class, title);
+    }
+}
@@ -0,0 +1,160 @@
+package com.asist.service;
+
+import com.asist.service.ReportSuggestService.Suggestion;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Trie del autocompletado: altas, partición y fusión de nodos, bajas y
+ * consultas por prefijo, también cuando la respuesta sale de la lista de
+ * mejores términos guardada en un nodo
+ */
+class ReportSuggestServiceTrieTest {
+
+    private static final int MAX_TERMS = 1000;
+
+    @Test
+    void ranksTermsUnderThePrefixByWeight() {
+        ReportSuggestService.Trie trie = new ReportSuggestService.Trie();
+        add(trie, "plaza mayor", 3);
+        add(trie, "plaza espana", 5);
+        add(trie, "calle mayor", 1);
+
+        assertEquals(List.of("plaza espana=5", "plaza mayor=3"), lookup(trie, "plaza", 10));
+        assertEquals(List.of("plaza espana=5"), lookup(trie, "plaza", 1));
+        assertEquals(List.of("plaza espana=5", "plaza mayor=3", "calle mayor=1"), lookup(trie, "", 10));
+        assertEquals(List.of(), lookup(trie, "plazas", 10));
+        assertEquals(List.of(), lookup(trie, "x", 10));
+    }
+
+    @Test
+    void splitsANodeWhenATermDivergesInsideItsLabel() {
+        ReportSuggestService.Trie trie = new ReportSuggestService.Trie();
+        add(trie, "plazuela", 1);
+        add(trie, "plaza", 2);
+        add(trie, "plazas", 4);
+        add(trie, "pla", 3);
+
+        assertEquals(List.of("plazas=4", "pla=3", "plaza=2", "plazuela=1"), lookup(trie, "pl", 10));
+        assertEquals(List.of("plazas=4", "plaza=2", "plazuela=1"), lookup(trie, "plaz", 10));
+        assertEquals(List.of("plazas=4", "plaza=2"), lookup(trie, "plaza", 10));
+        assertEquals(List.of("plazuela=1"), lookup(trie, "plazu", 10));
+    }
+
+    @Test
+    void subtractRemovesTermsAtZeroAndMergesTheNodesLeft() {
+        ReportSuggestService.Trie trie = new ReportSuggestService.Trie();
+        add(trie, "ab", 2);
+        add(trie, "abc", 1);
+        add(trie, "abd", 5);
+
+        trie.subtract("abd", "abd", 2);
+        assertEquals(List.of("abd=3", "ab=2", "abc=1"), lookup(trie, "a", 10));
+
+        trie.subtract("abc", "abc", 1);
+        assertEquals(List.of("abd=3", "ab=2"), lookup(trie, "ab", 10));
+
+        // "ab" se queda sin término y con un solo hijo: se fusiona con "d"
+        trie.subtract("ab", "ab", 2);
+        assertEquals(List.of("abd=3"), lookup(trie, "ab", 10));
+        assertEquals(List.of("abd=3"), lookup(trie, "abd", 10));
+
+        // El nodo fusionado se vuelve a partir
+        add(trie, "abe", 4);
+        assertEquals(List.of("abe=4", "abd=3"), lookup(trie, "ab", 10));
+
+        trie.subtract("abd", "abd", 3);
+        trie.subtract("abe", "abe", 4);
+        assertEquals(List.of(), lookup(trie, "", 10));
+        trie.subtract("zz", "zz", 1);
+        assertEquals(List.of(), lookup(trie, "", 10));
+    }
+
+    @Test
+    void setFixesTheCountOfEachVariant() {
+        ReportSuggestService.Trie trie = new ReportSuggestService.Trie();
+        trie.set("plaza mayor", "Plaza Mayor", "Plaza Mayor", 3, MAX_TERMS);
+        trie.set("plaza mayor", "plaza mayor.", "plaza mayor.", 2, MAX_TERMS);
+        assertEquals(List.of("Plaza Mayor=5"), lookup(trie, "plaza", 10));
+
+        trie.set("plaza mayor", "Plaza Mayor", "Plaza Mayor", 1, MAX_TERMS);
+        assertEquals(List.of("Plaza Mayor=3"), lookup(trie, "plaza", 10));
+
+        trie.set("plaza mayor", "Plaza Mayor", "Plaza Mayor", 0, MAX_TERMS);
+        trie.set("plaza mayor", "plaza mayor.", "plaza mayor.", 0, MAX_TERMS);
+        assertEquals(List.of(), lookup(trie, "plaza", 10));
+    }
+
+    @Test
+    void cachedTopListFollowsDecrementsAndIncrements() {
+        ReportSuggestService.Trie trie = new ReportSuggestService.Trie();
+        Map<String, Long> weights = new TreeMap<>();
+        for (int i = 0; i < 100; i++) {
+            String key = String.format("t%02d", i);
+            add(trie, key, 100 + i);
+            weights.put(key, 100L + i);
+        }
+        // Se guarda la lista de mejores términos del nodo "t"
+        assertEquals(expected(weights, "t"), lookup(trie, "t", ReportSuggestService.MAX_LIMIT));
+
+        // Los mejores bajan uno a uno por debajo de los que no están en la lista
+        for (int i = 99; i >= 60; i--) {
+            String key = String.format("t%02d", i);
+            trie.subtract(key, key, 100);
+            weights.put(key, (long) i);
+            assertEquals(expected(weights, "t"), lookup(trie, "t", ReportSuggestService.MAX_LIMIT), key);
+        }
+
+        // Uno que no estaba en la lista sube por encima de todos
+        add(trie, "t05", 1000);
+        weights.merge("t05", 1000L, Long::sum);
+        assertEquals(expected(weights, "t"), lookup(trie, "t", ReportSuggestService.MAX_LIMIT));
+
+        // Bajas hasta cero de los que están en la lista
+        for (int i = 59; i >= 30; i--) {
+            String key = String.format("t%02d", i);
+            trie.subtract(key, key, 100 + i);
+            weights.remove(key);
+            assertEquals(expected(weights, "t"), lookup(trie, "t", ReportSuggestService.MAX_LIMIT), key);
+        }
+        assertTrue(lookup(trie, "t9", ReportSuggestService.MAX_LIMIT).contains("t99=99"));
+    }
+
+    private static void add(ReportSuggestService.Trie trie, String key, long delta) {
+        trie.add(key, key, key, delta, MAX_TERMS);
+    }
+
+    /**
+     * Como ReportSuggestService.suggest: con la lista guardada y, si hay que recalcularla, sin ella
+     */
+    private static List<String> lookup(ReportSuggestService.Trie trie, String prefix, int k) {
+        List<Suggestion> found = trie.suggest(prefix, k, false);
+        if (found == null) {
+            found = trie.suggest(prefix, k, true);
+        }
+        List<String> result = new ArrayList<>();
+        for (Suggestion suggestion : found) {
+            result.add(suggestion.getText() + "=" + suggestion.getCount());
+        }
+        return result;
+    }
+
+    private static List<String> expected(Map<String, Long> weights, String prefix) {
+        return weights.entrySet().stream()
+                .filter(e -> e.getKey().startsWith(prefix))
+                .sorted(Comparator.comparing((Map.Entry<String, Long> e) -> e.getValue()).reversed()
+                        .thenComparing(Map.Entry::getKey))
+                .limit(ReportSuggestService.MAX_LIMIT)
+                .map(e -> e.getKey() + "=" + e.getValue())
+                .collect(Collectors.toList());
+    }
+}